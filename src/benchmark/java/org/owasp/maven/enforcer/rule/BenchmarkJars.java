@@ -0,0 +1,238 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Generates the jar files used by the benchmarks.
+ *
+ * @author Jeremy Long
+ */
+public final class BenchmarkJars {
+
+    /**
+     * The major version of the generated classes.
+     */
+    public static final int CLASS_VERSION = ClassFileFormatRule.JAVA_8;
+    /**
+     * The major version of the class that violates the rule.
+     */
+    public static final int VIOLATING_VERSION = 55;
+
+    /**
+     * The shapes of the generated jars.
+     */
+    public enum Shape {
+        /**
+         * A small jar with deflated entries.
+         */
+        SMALL(50, false),
+        /**
+         * A large jar with deflated entries.
+         */
+        HUGE(20000, false),
+        /**
+         * A jar with stored entries.
+         */
+        STORED(2000, true),
+        /**
+         * A signed jar with deflated entries.
+         */
+        SIGNED(2000, false),
+        /**
+         * A multi-release jar with deflated entries.
+         */
+        MULTI_RELEASE(2000, false),
+        /**
+         * A jar whose first class violates the rule.
+         */
+        VIOLATION_FIRST(2000, false),
+        /**
+         * A jar whose last class violates the rule.
+         */
+        VIOLATION_LAST(2000, false);
+
+        /**
+         * The number of classes in the jar.
+         */
+        private final int classes;
+        /**
+         * Whether or not the entries are stored.
+         */
+        private final boolean stored;
+
+        /**
+         * Constructs a new shape.
+         *
+         * @param classes the number of classes in the jar
+         * @param stored whether or not the entries are stored
+         */
+        Shape(final int classes, final boolean stored) {
+            this.classes = classes;
+            this.stored = stored;
+        }
+    }
+
+    /**
+     * Private constructor for a utility class.
+     */
+    private BenchmarkJars() {
+    }
+
+    /**
+     * Creates a jar of the given shape.
+     *
+     * @param shape the shape of the jar
+     * @param directory the directory to create the jar in
+     * @return the jar file
+     * @throws IOException thrown if the jar cannot be created
+     * @throws InterruptedException thrown if interrupted while signing the
+     * jar
+     */
+    public static File create(final Shape shape, final File directory) throws IOException, InterruptedException {
+        final File jar = new File(directory, shape.name().toLowerCase() + ".jar");
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (shape == Shape.MULTI_RELEASE) {
+            manifest.getMainAttributes().putValue("Multi-Release", "true");
+        }
+        final Random random = new Random(shape.ordinal());
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            for (int i = 0; i < shape.classes; i++) {
+                int version = CLASS_VERSION;
+                if ((shape == Shape.VIOLATION_FIRST && i == 0)
+                        || (shape == Shape.VIOLATION_LAST && i == shape.classes - 1)) {
+                    version = VIOLATING_VERSION;
+                }
+                final String name = String.format("org/example/p%d/Class%d.class", i % 50, i);
+                add(out, name, classBytes(random, version), shape.stored);
+                if (shape == Shape.MULTI_RELEASE && i % 10 == 0) {
+                    add(out, "META-INF/versions/11/" + name, classBytes(random, VIOLATING_VERSION), false);
+                }
+            }
+        }
+        if (shape == Shape.SIGNED) {
+            sign(jar, directory);
+        }
+        return jar;
+    }
+
+    /**
+     * Creates the bytes of a class file; the body is filler resembling the
+     * compressibility of a real class file.
+     *
+     * @param random the random number generator
+     * @param major the major version
+     * @return the class file bytes
+     */
+    private static byte[] classBytes(final Random random, final int major) {
+        final byte[] data = new byte[1024 + random.nextInt(4096)];
+        for (int i = 8; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(random.nextBoolean() ? 4 : 26));
+        }
+        data[0] = (byte) 0xCA;
+        data[1] = (byte) 0xFE;
+        data[2] = (byte) 0xBA;
+        data[3] = (byte) 0xBE;
+        data[6] = (byte) (major >> 8);
+        data[7] = (byte) major;
+        return data;
+    }
+
+    /**
+     * Adds an entry to the jar.
+     *
+     * @param out the jar output stream
+     * @param name the entry name
+     * @param data the entry data
+     * @param stored whether or not the entry is stored
+     * @throws IOException thrown if the entry cannot be written
+     */
+    private static void add(final JarOutputStream out, final String name, final byte[] data,
+            final boolean stored) throws IOException {
+        final JarEntry entry = new JarEntry(name);
+        if (stored) {
+            final CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    /**
+     * Signs the jar using the JDK's keytool and jarsigner.
+     *
+     * @param jar the jar to sign
+     * @param directory the directory to create the key store in
+     * @throws IOException thrown if the jar cannot be signed
+     * @throws InterruptedException thrown if interrupted while signing the
+     * jar
+     */
+    private static void sign(final File jar, final File directory) throws IOException, InterruptedException {
+        final File keystore = new File(directory, "benchmark.jks");
+        if (!keystore.isFile()) {
+            run(tool("keytool"), "-genkeypair", "-alias", "benchmark", "-keyalg", "RSA", "-keysize", "2048",
+                    "-dname", "CN=benchmark", "-validity", "1", "-storetype", "JKS", "-keystore", keystore.getPath(),
+                    "-storepass", "benchmark", "-keypass", "benchmark");
+        }
+        run(tool("jarsigner"), "-keystore", keystore.getPath(), "-storepass", "benchmark", "-keypass", "benchmark",
+                jar.getPath(), "benchmark");
+    }
+
+    /**
+     * Returns the path to a JDK tool.
+     *
+     * @param name the name of the tool
+     * @return the path to the tool
+     */
+    private static String tool(final String name) {
+        final File home = new File(System.getProperty("java.home"));
+        File bin = new File(home, "bin");
+        if (!new File(bin, name).isFile() && !new File(bin, name + ".exe").isFile()) {
+            //Java 8 JRE within a JDK
+            bin = new File(home.getParentFile(), "bin");
+        }
+        return new File(bin, name).getPath();
+    }
+
+    /**
+     * Runs the command and waits for it to complete successfully.
+     *
+     * @param command the command to run
+     * @throws IOException thrown if the command fails
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    private static void run(final String... command) throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new IOException("Command failed: " + String.join(" ", command));
+        }
+    }
+}
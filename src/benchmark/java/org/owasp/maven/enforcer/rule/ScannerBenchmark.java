@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the class file scanning hot path across jar shapes. Each
+ * benchmark reports throughput and sampled latency; run with
+ * <code>-prof gc</code> (the default of the benchmark profile) to report the
+ * allocation rate.
+ *
+ * @author Jeremy Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScannerBenchmark {
+
+    /**
+     * The shape of the jar scanned.
+     */
+    @Param({"SMALL", "HUGE", "STORED", "SIGNED", "MULTI_RELEASE", "VIOLATION_FIRST", "VIOLATION_LAST"})
+    private BenchmarkJars.Shape shape;
+    /**
+     * The temporary directory containing the jar.
+     */
+    private File directory;
+    /**
+     * The dependency being scanned.
+     */
+    private DependencyReference dependency;
+    /**
+     * The rule being benchmarked.
+     */
+    private ClassFileFormatRule rule;
+    /**
+     * The scanner being benchmarked.
+     */
+    private JarScanner scanner;
+
+    /**
+     * Creates the jar for the shape being benchmarked.
+     *
+     * @throws IOException thrown if the jar cannot be created
+     * @throws InterruptedException thrown if interrupted while signing the
+     * jar
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("class-file-format-benchmark").toFile();
+        final File jar = BenchmarkJars.create(shape, directory);
+        dependency = new DependencyReference("org.example", shape.name().toLowerCase(), "1.0", jar, null, null);
+        rule = new ClassFileFormatRule();
+        rule.setSupportedClassFileFormat(BenchmarkJars.CLASS_VERSION);
+        scanner = new JarScanner();
+    }
+
+    /**
+     * Removes the temporary directory.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Benchmarks the rule's hasInvalidClassFileFormat method.
+     *
+     * @return whether the jar is invalid
+     */
+    @Benchmark
+    public boolean hasInvalidClassFileFormat() {
+        return rule.hasInvalidClassFileFormat(dependency);
+    }
+
+    /**
+     * Benchmarks the central directory scanner.
+     *
+     * @return the scan result
+     * @throws IOException thrown if the jar cannot be read
+     */
+    @Benchmark
+    public ScanResult centralDirectory() throws IOException {
+        return scanner.scan(dependency.getPath(), BenchmarkJars.CLASS_VERSION);
+    }
+
+    /**
+     * Benchmarks the streaming scanner.
+     *
+     * @return the scan result
+     * @throws IOException thrown if the jar cannot be read
+     */
+    @Benchmark
+    public ScanResult streaming() throws IOException {
+        return scanner.scanStreaming(dependency.getPath(), BenchmarkJars.CLASS_VERSION);
+    }
+}
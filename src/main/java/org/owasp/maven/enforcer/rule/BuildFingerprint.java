@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+/**
+ * The fingerprint of a successfully verified dependency set, written to the
+ * build directory so that an incremental build whose dependencies have not
+ * changed skips the rule without building the dependency graph.
+ * <p>
+ * The fingerprint holds a key computed from the rule configuration, the
+ * project's POM and those of its parents (path, size, and modification time),
+ * and the project's declared and managed dependencies, followed by the path,
+ * size, and modification time of every resolved dependency and of its POM in
+ * the local repository. It matches when the key is unchanged and every
+ * recorded file still has the same size and modification time; checking it
+ * takes a few file system calls per dependency.</p>
+ * <p>
+ * A graph containing version ranges or SNAPSHOT versions may resolve to
+ * different artifacts without any recorded file changing, so no fingerprint
+ * is written for it.</p>
+ *
+ * @author Jeremy Long
+ */
+final class BuildFingerprint {
+
+    /**
+     * The name of the fingerprint file in the build directory.
+     */
+    static final String FILE_NAME = "class-file-format-rule.fingerprint";
+    /**
+     * The first line of a fingerprint file.
+     */
+    private static final String HEADER = "class-file-format-rule fingerprint 1";
+
+    /**
+     * Private constructor for a utility class.
+     */
+    private BuildFingerprint() {
+    }
+
+    /**
+     * Computes the key of the project from the inputs that determine its
+     * dependency set.
+     *
+     * @param project the project
+     * @param configuration the id of the rule configuration
+     * @return the key
+     */
+    static String projectKey(final MavenProject project, final String configuration) {
+        final StringBuilder sb = new StringBuilder(configuration);
+        for (MavenProject p = project; p != null; p = p.getParent()) {
+            final File pom = p.getFile();
+            if (pom != null) {
+                sb.append("|pom:").append(stat(pom));
+            }
+        }
+        for (Object dependency : project.getDependencies()) {
+            sb.append("|dependency:");
+            append(sb, (Dependency) dependency);
+        }
+        if (project.getDependencyManagement() != null) {
+            for (Dependency d : project.getDependencyManagement().getDependencies()) {
+                sb.append("|managed:");
+                append(sb, d);
+            }
+        }
+        return Digests.sha1Hex(sb.toString());
+    }
+
+    /**
+     * Determines whether or not the dependency graph contains a version range
+     * or a SNAPSHOT version; the resolution of such a graph depends on the
+     * remote repositories rather then only on the recorded files. The root,
+     * i.e. the project being built, is not a dependency and is not checked.
+     *
+     * @param root the root of the dependency graph
+     * @return <code>true</code> if a dependency has a version range or is a
+     * SNAPSHOT
+     */
+    static boolean hasDynamicVersions(final DependencyNode root) {
+        final Deque<DependencyNode> stack = new ArrayDeque<>();
+        for (DependencyNode child : root.getChildren()) {
+            stack.push(child);
+        }
+        while (!stack.isEmpty()) {
+            final DependencyNode node = stack.pop();
+            final String constraint = node.getVersionConstraint();
+            if (node.getArtifact().isSnapshot()
+                    || (constraint != null && (constraint.startsWith("[") || constraint.startsWith("(")))) {
+                return true;
+            }
+            for (DependencyNode child : node.getChildren()) {
+                stack.push(child);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether or not the fingerprint file matches the project and
+     * its previously resolved dependencies.
+     *
+     * @param file the fingerprint file
+     * @param projectKey the key of the project
+     * @return <code>true</code> if the file exists, has the same key, and
+     * none of the recorded dependencies changed
+     */
+    static boolean matches(final File file, final String projectKey) {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine()) || !projectKey.equals(reader.readLine())) {
+                return false;
+            }
+            String line = reader.readLine();
+            while (line != null) {
+                //each line is the size and modification time followed by the path
+                final int second = line.indexOf(' ', line.indexOf(' ') + 1);
+                if (second < 0 || !line.equals(stat(new File(line.substring(second + 1))))) {
+                    return false;
+                }
+                line = reader.readLine();
+            }
+            return true;
+        } catch (IOException ex) {
+            //a missing or unreadable fingerprint never matches
+            return false;
+        }
+    }
+
+    /**
+     * Writes the fingerprint file. The file is written to a temporary file
+     * and then moved into place.
+     *
+     * @param file the fingerprint file
+     * @param projectKey the key of the project
+     * @param dependencies the verified dependencies
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void write(final File file, final String projectKey, final Collection<DependencyReference> dependencies)
+            throws IOException {
+        final List<String> lines = new ArrayList<>(dependencies.size() * 2);
+        for (DependencyReference d : dependencies) {
+            lines.add(stat(d.getPath()));
+            if (d.getPath().isFile() && d.getVersion() != null) {
+                //a changed POM may change the dependencies of the artifact without changing the artifact
+                lines.add(stat(new File(d.getPath().getParentFile(), d.getArtifactId() + '-' + d.getVersion() + ".pom")));
+            }
+        }
+        Collections.sort(lines);
+        final Path target = file.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                writer.write(projectKey);
+                writer.newLine();
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Formats the size, modification time, and path of a file; a missing
+     * file has a size and modification time of zero.
+     *
+     * @param file the file
+     * @return the formatted file state
+     */
+    private static String stat(final File file) {
+        return file.length() + " " + file.lastModified() + " " + file.getAbsolutePath();
+    }
+
+    /**
+     * Appends the coordinates, scope, and exclusions of the dependency.
+     *
+     * @param sb the string builder
+     * @param d the dependency
+     */
+    private static void append(final StringBuilder sb, final Dependency d) {
+        sb.append(d.getGroupId()).append(':').append(d.getArtifactId()).append(':').append(d.getType())
+                .append(':').append(d.getClassifier()).append(':').append(d.getVersion()).append(':')
+                .append(d.getScope()).append(':').append(d.getSystemPath()).append(':').append(d.isOptional());
+        for (Exclusion e : d.getExclusions()) {
+            sb.append(":!").append(e.getGroupId()).append(':').append(e.getArtifactId());
+        }
+    }
+}
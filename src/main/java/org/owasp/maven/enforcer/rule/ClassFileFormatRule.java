@@ -15,16 +15,27 @@
  */
 package org.owasp.maven.enforcer.rule;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
@@ -34,6 +45,7 @@ import org.apache.maven.enforcer.rule.api.EnforcerRuleHelper;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.project.DefaultProjectBuildingRequest;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuildingRequest;
@@ -93,9 +105,26 @@ public class ClassFileFormatRule implements EnforcerRule {
      */
     public static final int JDK_1_1 = 45; //(0x2D hex)
     /**
-     * The java class file header.
+     * The name of the metrics report written to the build directory.
      */
-    private static final int JAVA_CLASS_HEADER = 0xCAFEBABE;
+    private static final String METRICS_FILE = "class-file-format-rule-metrics.json";
+    /**
+     * The name of the class cache file in the cache directory.
+     */
+    private static final String CLASS_CACHE_FILE = "class-versions.bin";
+    /**
+     * The name of the directory, within the build directory, holding the
+     * indexes of the scanned reactor sibling output directories.
+     */
+    private static final String DIRECTORY_INDEX = "class-file-format-rule-index";
+    /**
+     * Orders dependencies by their coordinates and path.
+     */
+    private static final Comparator<DependencyReference> DEPENDENCY_ORDER
+            = Comparator.comparing(DependencyReference::getGroupId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(DependencyReference::getArtifactId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(DependencyReference::getVersion, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(DependencyReference::getPath, Comparator.nullsFirst(Comparator.naturalOrder()));
     /**
      * The supported class file format; defaults to Java 7.
      */
@@ -109,9 +138,156 @@ public class ClassFileFormatRule implements EnforcerRule {
      */
     private boolean excludeScopeProvided = true;
     /**
-     * The logger.
+     * The number of threads used to scan the dependencies; a value less than
+     * one uses the number of available processors.
+     */
+    private int scanThreads = 1;
+    /**
+     * The number of threads used to resolve the dependencies; a value less
+     * than one uses the number of available processors.
+     */
+    private int resolveThreads = 1;
+    /**
+     * Whether or not the file of an artifact already resolved by the
+     * dependency graph builder is used without resolving the artifact again.
+     */
+    private boolean trustResolvedArtifacts = true;
+    /**
+     * Whether or not archives nested within a dependency (i.e. the libraries
+     * of a WAR or a Spring Boot executable jar) are scanned.
+     */
+    private boolean scanNestedArchives = false;
+    /**
+     * Whether or not the cheap evidence in a jar (the manifest and the first
+     * class files) is checked before the entire jar is scanned.
+     */
+    private boolean tieredScan = false;
+    /**
+     * The number of class files read from a jar before escalating to a full
+     * scan when the tiered scan is enabled.
+     */
+    private int tieredSampleSize = 16;
+    /**
+     * Whether or not, when the tiered scan is enabled, a manifest recording a
+     * JDK (<code>Build-Jdk-Spec</code>) that cannot produce class files newer
+     * than the supported format is accepted without a full scan.
+     */
+    private boolean trustManifest = false;
+    /**
+     * Whether or not the timing and I/O metrics are logged at the info level
+     * and written to <code>target/class-file-format-rule-metrics.json</code>.
+     */
+    private boolean reportMetrics = false;
+    /**
+     * Whether or not each dependency is scanned as soon as it is resolved,
+     * overlapping the resolution of the dependency graph with the scans.
+     */
+    private boolean pipelineScan = false;
+    /**
+     * Whether or not jars with the same content, identified by the fingerprint
+     * of their central directory, share a single scan result.
+     */
+    private boolean deduplicateContent = false;
+    /**
+     * Whether or not the rule stops at the first dependency found to violate
+     * the supported class file format rather then reporting every violation.
+     */
+    private boolean failFast = false;
+    /**
+     * Whether or not the rule is skipped when the project and its resolved
+     * dependencies are unchanged since they were last verified. A project
+     * whose dependency graph contains version ranges or SNAPSHOT versions is
+     * always verified.
+     */
+    private boolean skipUnchanged = false;
+    /**
+     * The maximum number of class files whose version is cached by their
+     * entry in the central directory; zero disables the class cache.
+     */
+    private int classCacheSize = 0;
+    /**
+     * Whether or not the persistent version cache is used.
+     */
+    private boolean useCache = false;
+    /**
+     * The directory of the persistent version cache; defaults to
+     * <code>~/.m2/class-file-format-rule</code>.
+     */
+    private File cacheDirectory;
+    /**
+     * The maximum number of entries retained in the persistent version cache.
+     */
+    private int cacheMaxEntries = 10000;
+    /**
+     * Whether or not the SHA-1 checksum of an artifact is included in the
+     * persistent version cache fingerprint.
+     */
+    private boolean cacheChecksum = false;
+    /**
+     * Whether or not the artifacts are scanned by the scan daemon, when one
+     * is running, before falling back to scanning them in process.
+     */
+    private boolean useDaemon = false;
+    /**
+     * The precomputed version index of the local repository, built by the
+     * {@link VersionIndexBuilder}; indexed artifacts are not scanned.
+     */
+    private File versionIndex;
+    /**
+     * The logger; the scanning threads may read this field.
+     */
+    private volatile Log log = new SystemStreamLog();
+    /**
+     * The persistent version cache used during the current execution.
+     */
+    private volatile VersionCache cache;
+    /**
+     * The scan results shared by the modules of the current build.
+     */
+    private volatile ScanMemo memo;
+    /**
+     * The metrics of the current execution.
+     */
+    private volatile ScanMetrics metrics;
+    /**
+     * The client of the scan daemon; <code>null</code> if the daemon is not
+     * used or cannot be reached.
+     */
+    private volatile DaemonClient daemon;
+    /**
+     * The version index used during the current execution; <code>null</code>
+     * if no index is used.
+     */
+    private volatile VersionIndex index;
+    /**
+     * The class cache shared by the modules of the current build;
+     * <code>null</code> if class files are not cached.
+     */
+    private volatile ClassVersionCache classCache;
+    /**
+     * Whether or not the dependency graph of the current execution contains
+     * version ranges or SNAPSHOT versions.
+     */
+    private boolean dynamicVersions;
+    /**
+     * The directory the indexes of scanned directories are stored in during
+     * the current execution; <code>null</code> if they are not persisted.
+     */
+    private volatile File directoryIndex;
+    /**
+     * The pool shared by the directory scans of the current execution;
+     * created when the first directory is scanned.
+     */
+    private ForkJoinPool directoryPool;
+    /**
+     * The ids of the dependency sets verified in this session; shared between
+     * rules with the same configuration.
      */
-    private Log log;
+    private Set<String> verifiedDependencySets = ConcurrentHashMap.newKeySet();
+    /**
+     * The scanner used to read the class file versions from the dependencies.
+     */
+    private final JarScanner scanner = new JarScanner();
 
     /**
      * Executes the class file format rule. Examines the class files contained
@@ -124,50 +300,223 @@ public class ClassFileFormatRule implements EnforcerRule {
     @Override
     public void execute(final EnforcerRuleHelper helper) throws EnforcerRuleException {
         log = helper.getLog();
+        metrics = new ScanMetrics();
         try {
             MavenProject project = (MavenProject) helper.evaluate("${project}");
+            //the indexes of reactor siblings are kept in this project's build directory, which it owns
+            directoryIndex = new File(project.getBuild().getDirectory(), DIRECTORY_INDEX);
+            //a dependency set that passed the previous build is not resolved or scanned again
+            final File fingerprint = skipUnchanged
+                    ? new File(project.getBuild().getDirectory(), BuildFingerprint.FILE_NAME) : null;
+            final String projectKey = fingerprint == null ? null : BuildFingerprint.projectKey(project, getCacheId());
+            if (fingerprint != null && BuildFingerprint.matches(fingerprint, projectKey)) {
+                log.debug("The dependencies of " + project.getName() + " are unchanged since they were last verified");
+                return;
+            }
             MavenSession session = (MavenSession) helper.evaluate("${session}");
-            List<ArtifactRepository> remoteRepositories = (List<ArtifactRepository>) helper.evaluate("${project.remoteArtifactRepositories}");
-            ArtifactResolver artifactResolver = (ArtifactResolver) helper.getComponent(ArtifactResolver.class);
-            DependencyGraphBuilder dependencyGraphBuilder = (DependencyGraphBuilder) helper.getComponent(DependencyGraphBuilder.class);
+            List<ArtifactRepository> remoteRepositories = new ArrayList<>();
+            for (Object repository : (List<?>) helper.evaluate("${project.remoteArtifactRepositories}")) {
+                remoteRepositories.add((ArtifactRepository) repository);
+            }
+            ArtifactResolver artifactResolver = helper.getComponent(ArtifactResolver.class);
+            DependencyGraphBuilder dependencyGraphBuilder = helper.getComponent(DependencyGraphBuilder.class);
 
-            Set<DependencyReference> dependencies = getProjectDependencies(project, session, dependencyGraphBuilder, remoteRepositories, artifactResolver);
-            boolean failBuild = false;
+            final List<DependencyReference> invalid;
+            final Set<DependencyReference> dependencies;
+            final String dependencySetId;
+            //when pipelined the dependencies are scanned while the graph is resolved
+            final ScanPipeline pipeline;
+            if (pipelineScan) {
+                prepareScan(session);
+                pipeline = new ScanPipeline(scanThreads < 1 ? Runtime.getRuntime().availableProcessors() : scanThreads,
+                        this::hasInvalidClassFileFormat, failFast);
+            } else {
+                pipeline = null;
+            }
+            final long pipelineStart = System.nanoTime();
+            try {
+                dependencies = getProjectDependencies(project, session, dependencyGraphBuilder,
+                        remoteRepositories, artifactResolver, pipeline);
+                dependencySetId = getDependencySetId(dependencies);
+                if (isVerified(dependencySetId)) {
+                    log.debug("The dependencies of " + project.getName() + " were already verified in this session");
+                    writeFingerprint(fingerprint, projectKey, dependencySetId, dependencies);
+                    return;
+                }
+                if (pipeline == null) {
+                    prepareScan(session);
+                }
+                final long scanStart = pipeline == null ? System.nanoTime() : pipelineStart;
+                try {
+                    invalid = pipeline == null ? findInvalidDependencies(dependencies) : finishPipeline(pipeline);
+                } finally {
+                    metrics.setScanNanos(System.nanoTime() - scanStart);
+                    pruneCache();
+                    log.debug("Scan memo: " + memo);
+                    reportMetrics(project);
+                }
+            } finally {
+                if (pipeline != null) {
+                    pipeline.close();
+                }
+            }
+            final boolean failBuild = !invalid.isEmpty();
             StringBuilder sb = new StringBuilder();
 
-            for (DependencyReference d : dependencies) {
-                final boolean result = hasInvalidClassFileFormat(d);
-                failBuild |= result;
-                if (result) {
-                    sb.append(String.format("%n%s:%s:%s", d.getGroupId(), d.getArtifactId(), d.getVersion()));
-                    if (d.getDependencyTrail() != null && !d.getDependencyTrail().isEmpty()) {
-                        if (d.getDependencyTrail().size() == 1) {
-                            sb.append(String.format("%n - project path: %s", d.getDependencyTrail().get(0)));
-                        } else {
-                            sb.append(String.format("%n - project paths:"));
-                            for (int x = 0; x < d.getDependencyTrail().size(); x++) {
-                                sb.append(String.format(" %s,", d.getDependencyTrail().get(x)));
-                            }
-                            sb.setLength(sb.length() - 1);
+            for (DependencyReference d : invalid) {
+                sb.append(String.format("%n%s:%s:%s", d.getGroupId(), d.getArtifactId(), d.getVersion()));
+                final String versionEntry = d.getVersionEntry();
+                if (versionEntry != null) {
+                    sb.append(String.format("%n - class: %s", versionEntry));
+                }
+                if (d.getDependencyTrail() != null && !d.getDependencyTrail().isEmpty()) {
+                    if (d.getDependencyTrail().size() == 1) {
+                        sb.append(String.format("%n - project path: %s", d.getDependencyTrail().get(0)));
+                    } else {
+                        sb.append(String.format("%n - project paths:"));
+                        for (int x = 0; x < d.getDependencyTrail().size(); x++) {
+                            sb.append(String.format(" %s,", d.getDependencyTrail().get(x)));
                         }
+                        sb.setLength(sb.length() - 1);
                     }
+                }
 //                  if (d.getAvailableVersions()!=null && !d.getAvailableVersions().isEmpty()) {
 //                      List<ArtifactVersion> versions = d.getAvailableVersions();
 //                      Collections.sort(versions);
 //                      //TODO only display the max top 5?  some deps have huge lists - go look it up...
 //                  }
-                }
             }
 
             if (failBuild) {
                 sb.insert(0, "The following dependencies exceed the maximum supported JVM class file format (i.e. they were compiled for a newer JVM then this project supports):");
+                if (failFast) {
+                    sb.append(String.format("%nThe remaining dependencies were not checked as failFast is enabled"));
+                }
                 throw new EnforcerRuleException(sb.toString());
             }
+            markVerified(dependencySetId);
+            writeFingerprint(fingerprint, projectKey, dependencySetId, dependencies);
 
         } catch (ExpressionEvaluationException e) {
             throw new EnforcerRuleException("Unable to lookup an expression " + e.getLocalizedMessage(), e);
         } catch (ComponentLookupException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            //the build thread may have scanned inline; free its inflater and buffers
+            JarScanner.releaseBuffers();
+            shutdownDirectoryPool();
+        }
+    }
+
+    /**
+     * Prepares the persistent version cache, scan daemon, version index, and
+     * scan memo used by the scans of the current execution.
+     *
+     * @param session the maven session
+     */
+    private void prepareScan(final MavenSession session) {
+        if (useCache) {
+            //results that include nested archives are kept apart from those that do not
+            final File directory = scanNestedArchives ? new File(getCacheDirectory(), "nested") : getCacheDirectory();
+            cache = new VersionCache(directory, cacheMaxEntries, cacheChecksum);
+        } else {
+            cache = null;
+        }
+        if (useDaemon) {
+            daemon = DaemonClient.connect(getCacheDirectory());
+            if (daemon == null) {
+                log.debug("The class file format scan daemon is not running; scanning in process");
+            }
+        } else {
+            daemon = null;
+        }
+        index = openVersionIndex();
+        memo = ScanMemo.forSession(session.getRequest());
+        if (classCacheSize > 0) {
+            //the class cache is saved alongside the version cache when it is used
+            classCache = ClassVersionCache.forSession(session.getRequest(), classCacheSize,
+                    useCache ? new File(getCacheDirectory(), CLASS_CACHE_FILE) : null);
+        } else {
+            classCache = null;
+        }
+        scanner.setClassCache(classCache);
+    }
+
+    /**
+     * Writes the fingerprint of the verified dependency set to the build
+     * directory. Dependency sets containing a directory, i.e. the output
+     * directory of a reactor sibling, are not fingerprinted as the contents
+     * of the directory may change, and neither are graphs containing version
+     * ranges or SNAPSHOT versions.
+     *
+     * @param fingerprint the fingerprint file; <code>null</code> if unchanged
+     * dependency sets are not skipped
+     * @param projectKey the key of the project
+     * @param dependencySetId the id of the dependency set
+     * @param dependencies the verified dependencies
+     */
+    private void writeFingerprint(final File fingerprint, final String projectKey, final String dependencySetId,
+            final Collection<DependencyReference> dependencies) {
+        if (fingerprint == null || dependencySetId == null) {
+            return;
+        }
+        if (dynamicVersions) {
+            //ranges and snapshots may resolve differently without any recorded file changing
+            log.debug("The dependency graph contains version ranges or SNAPSHOT versions; no fingerprint is written");
+            return;
+        }
+        try {
+            BuildFingerprint.write(fingerprint, projectKey, dependencies);
+        } catch (IOException ex) {
+            log.debug("Unable to write the dependency set fingerprint to " + fingerprint, ex);
+        }
+    }
+
+    /**
+     * Waits for the dependencies submitted to the pipeline to be scanned.
+     *
+     * @param pipeline the pipeline
+     * @return the sorted list of dependencies that have an invalid class file
+     * format
+     * @throws EnforcerRuleException thrown if the scan is interrupted
+     */
+    private static List<DependencyReference> finishPipeline(final ScanPipeline pipeline) throws EnforcerRuleException {
+        try {
+            final List<DependencyReference> sorted = pipeline.finish();
+            sorted.sort(DEPENDENCY_ORDER);
+            return sorted;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EnforcerRuleException("Interrupted while scanning the dependencies", ex);
+        }
+    }
+
+    /**
+     * Scans the dependencies and returns those with an invalid class file
+     * format. When more then one scan thread is configured the dependencies
+     * are scanned concurrently; the returned list is always sorted by the
+     * dependency coordinates so that the failure message is deterministic.
+     *
+     * @param dependencies the dependencies to scan
+     * @return the sorted list of dependencies that have an invalid class file
+     * format
+     * @throws EnforcerRuleException thrown if the scan is interrupted
+     */
+    List<DependencyReference> findInvalidDependencies(final Collection<DependencyReference> dependencies)
+            throws EnforcerRuleException {
+        final int threads = Math.min(scanThreads < 1 ? Runtime.getRuntime().availableProcessors() : scanThreads,
+                dependencies.size());
+        try (ScanPipeline pipeline = new ScanPipeline(threads, this::hasInvalidClassFileFormat, failFast)) {
+            for (DependencyReference d : dependencies) {
+                if (pipeline.isCancelled()) {
+                    break;
+                }
+                pipeline.submit(d);
+            }
+            return finishPipeline(pipeline);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EnforcerRuleException("Interrupted while scanning the dependencies", ex);
         }
     }
 
@@ -179,228 +528,1262 @@ public class ClassFileFormatRule implements EnforcerRule {
      * @return true if the class file format is greater then expected
      */
     protected boolean hasInvalidClassFileFormat(final DependencyReference dependency) {
-
-        try (FileInputStream fis = new FileInputStream(dependency.getPath());
-                BufferedInputStream bis = new BufferedInputStream(fis);
-                JarInputStream jarInput = new JarInputStream(bis);
-                DataInputStream in = new DataInputStream(jarInput)) {
-
-            JarEntry entry = jarInput.getNextJarEntry();
-            while (entry != null) {
-                if (!entry.isDirectory() && entry.getName().endsWith(".class")
-                        //skip module info per issue #1
-                        && !entry.getName().endsWith("module-info.class")
-                        && !entry.getName().startsWith("META-INF/versions")) {
-                    int magic = in.readInt();
-                    if (magic != JAVA_CLASS_HEADER) {
-                        log.debug(String.format("%s contains an invalid class", dependency.toString()));
-                    } else {
-                        int minor = in.readUnsignedShort();
-                        int major = in.readUnsignedShort();
-                        if (major > supportedClassFileFormat) {
-                            return true;
-                        }
-                    }
-                }
-                entry = jarInput.getNextJarEntry();
+        final ScanMetrics scanMetrics = metrics;
+        if (scanMetrics != null) {
+            scanMetrics.recordRequest();
+        }
+        try {
+            final ScanResult result = scan(dependency);
+            if (result.getInvalidClassCount() > 0) {
+                log.debug(String.format("%s contains an invalid class", dependency.toString()));
             }
-
+            if (result.getInvalidArchiveCount() > 0) {
+                log.debug(String.format("%s contains a nested archive that could not be read", dependency.toString()));
+            }
+            if (result.getMajorVersion() > supportedClassFileFormat) {
+                //kept for the failure message so the dependency is not scanned again
+                dependency.setVersionEntry(result.getVersionEntry());
+                return true;
+            }
+            return false;
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
-        return false;
     }
 
     /**
-     * Scans the project's artifacts and adds them to the engine's dependency
-     * list.
+     * Returns the pool shared by the directory scans, creating it on first
+     * use; the scanning threads wait on the pool rather then each directory
+     * scan starting threads of its own.
      *
-     * @param project the project to scan the dependencies
-     * @param session the maven session
-     * @param dependencyGraphBuilder the maven dependency graph builder
-     * @param remoteRepositories the list of remote repositories
-     * @param artifactResolver the maven artifact resolver
-     * @return a collection of exceptions that may have occurred while resolving
-     * and scanning the dependencies
-     * @throws EnforcerRuleException thrown if there is an exception resolving the dependency tree
+     * @return the pool
      */
-    private Set<DependencyReference> getProjectDependencies(final MavenProject project, final MavenSession session,
-            final DependencyGraphBuilder dependencyGraphBuilder,
-            final List<ArtifactRepository> remoteRepositories, final ArtifactResolver artifactResolver)
-            throws EnforcerRuleException {
-        final Set<DependencyReference> references = new HashSet<>();
-        try {
-            final ProjectBuildingRequest buildingRequest = newResolveArtifactProjectBuildingRequest(session, remoteRepositories);
-            buildingRequest.setProject(project);
-            final DependencyNode dn = dependencyGraphBuilder.buildDependencyGraph(buildingRequest, null);
-            if (collectDependencies(references, project, dn.getChildren(), buildingRequest, artifactResolver)) {
-                throw new EnforcerRuleException("Unable to resolve the projects dependencies");
-            }
-        } catch (DependencyGraphBuilderException ex) {
-            final String msg = String.format("Unable to build dependency graph on project %s", project.getName());
-            throw new EnforcerRuleException(msg, ex);
+    private synchronized ForkJoinPool directoryPool() {
+        if (directoryPool == null) {
+            directoryPool = new ForkJoinPool(scanThreads < 1 ? Runtime.getRuntime().availableProcessors() : scanThreads);
         }
-        return references;
+        return directoryPool;
     }
 
     /**
-     * Resolves the projects artifacts using Aether and scans the resulting
-     * dependencies.
+     * Stops the threads of the directory scan pool, if it was created.
+     */
+    private synchronized void shutdownDirectoryPool() {
+        if (directoryPool != null) {
+            directoryPool.shutdownNow();
+            directoryPool = null;
+        }
+    }
+
+    /**
+     * Scans the dependency. During an execution the results are shared with
+     * the other modules of the build through the session's scan memo, in which
+     * case the entire dependency is scanned. Directories, such as the output
+     * directory of a reactor sibling, are scanned using their index instead.
      *
-     * @param references the set to which dependencies will be added
-     * @param project the project being scanned
-     * @param nodes the list of dependency nodes, generally obtained via the
-     * DependencyGraphBuilder
-     * @param buildingRequest the Maven project building request
-     * @param artifactResolver the maven artifact resolver
-     * @return true if the collection of dependencies failed
+     * @param dependency the dependency to scan
+     * @return the result of the scan
+     * @throws IOException thrown if the dependency cannot be read
      */
-    private boolean collectDependencies(final Set<DependencyReference> references,
-            final MavenProject project, final List<DependencyNode> nodes,
-            final ProjectBuildingRequest buildingRequest, final ArtifactResolver artifactResolver) {
-        boolean collectionFailed = false;
-        for (DependencyNode dependencyNode : nodes) {
-            if ((excludeScopeTest
-                    && org.apache.maven.artifact.Artifact.SCOPE_TEST.equals(dependencyNode.getArtifact().getScope()))
-                    || (excludeScopeProvided
-                    && org.apache.maven.artifact.Artifact.SCOPE_PROVIDED.equals(dependencyNode.getArtifact().getScope()))) {
-                continue;
+    private ScanResult scan(final DependencyReference dependency) throws IOException {
+        if (dependency.getPath().isDirectory()) {
+            //the contents of a directory may change during the build; the directory index avoids re-reading it
+            final Recorder.ScanSpan span = Recorder.get().startScan(dependency);
+            final long start = System.nanoTime();
+            try {
+                return record(dependency, new DirectoryScanner(directoryPool(), directoryIndex)
+                        .scan(dependency.getPath()), start, ScanMetrics.SOURCE_DIRECTORY, span);
+            } catch (IOException | RuntimeException ex) {
+                span.end(null, ScanMetrics.SOURCE_DIRECTORY, "error");
+                throw ex;
             }
-            collectionFailed |= collectDependencies(references, project, dependencyNode.getChildren(), buildingRequest, artifactResolver);
-
-            boolean isResolved = false;
-            File artifactFile = null;
-            String artifactId = null;
-            String groupId = null;
-            String version = null;
-            List<ArtifactVersion> availableVersions = null;
-            if (org.apache.maven.artifact.Artifact.SCOPE_SYSTEM.equals(dependencyNode.getArtifact().getScope())) {
-                List<Dependency> dependencies = (List<Dependency>) project.getDependencies();
-                for (Dependency d : dependencies) {
-                    final Artifact a = dependencyNode.getArtifact();
-                    if (d.getSystemPath() != null && artifactsMatch(d, a)) {
-                        artifactFile = new File(d.getSystemPath());
-                        isResolved = artifactFile.isFile();
-                        groupId = a.getGroupId();
-                        artifactId = a.getArtifactId();
-                        version = a.getVersion();
-                        availableVersions = a.getAvailableVersions();
-                        break;
-                    }
-                }
-                if (!isResolved) {
-                    log.error("Unable to resolve system scoped dependency: " + dependencyNode.toNodeString());
-                    collectionFailed = true;
-                    continue;
-                }
-            } else {
-                final ArtifactCoordinate coordinate = TransferUtils.toArtifactCoordinate(dependencyNode.getArtifact());
-                final Artifact result;
-                try {
-                    result = artifactResolver.resolveArtifact(buildingRequest, coordinate).getArtifact();
-                } catch (ArtifactResolverException ex) {
-                    log.debug("Collection failed", ex);
-                    final String msg = String.format("Error resolving '%s' in project %s",
-                            dependencyNode.getArtifact().getId(), project.getName());
-                    log.error(msg);
-                    collectionFailed = true;
-                    continue;
-                }
-                isResolved = result.isResolved();
-                artifactFile = result.getFile();
-                groupId = result.getGroupId();
-                artifactId = result.getArtifactId();
-                version = result.getVersion();
-                availableVersions = result.getAvailableVersions();
-            }
-            if (isResolved && artifactFile != null && artifactFile.isFile()) {
-                DependencyReference dep = new DependencyReference(groupId, artifactId, version, artifactFile,
-                        availableVersions, dependencyNode.getArtifact().getDependencyTrail());
-                references.add(dep);
-            } else {
-                final String msg = String.format("Unable to resolve '%s' in project %s",
-                        dependencyNode.getArtifact().getId(), project.getName());
-                log.error(msg);
-                collectionFailed = true;
+        }
+        final String content = deduplicateContent ? fingerprint(dependency) : null;
+        final ScanMemo scanMemo = memo;
+        if (tieredScan) {
+            if (scanMemo == null) {
+                return loadTiered(dependency, content);
             }
+            //tiered results stop at the first violation so they are only shared with the same configuration
+            final String variant = String.format("%s|tiered|%d|%s", scanNestedArchives ? "nested" : "",
+                    supportedClassFileFormat, trustManifest);
+            return memoize(scanMemo, dependency, content, variant, () -> loadTiered(dependency, content));
+        }
+        if (scanMemo == null) {
+            return load(dependency, supportedClassFileFormat, content);
+        }
+        return memoize(scanMemo, dependency, content, scanNestedArchives ? "nested" : "",
+                () -> load(dependency, Integer.MAX_VALUE, content));
+    }
 
+    /**
+     * Returns the result memoized for the dependency, keyed by its content
+     * fingerprint when known and otherwise by its file.
+     *
+     * @param scanMemo the scan memo
+     * @param dependency the dependency
+     * @param content the content fingerprint; may be <code>null</code>
+     * @param variant identifies the options the dependency is scanned with
+     * @param loader the callable used to scan the dependency
+     * @return the result of the scan
+     * @throws IOException thrown if the dependency cannot be read
+     */
+    private static ScanResult memoize(final ScanMemo scanMemo, final DependencyReference dependency,
+            final String content, final String variant, final Callable<ScanResult> loader) throws IOException {
+        if (content == null) {
+            return scanMemo.get(dependency.getPath(), variant, loader);
         }
-        return collectionFailed;
+        return scanMemo.getContent(content, variant, loader);
     }
 
     /**
-     * Determines if the groupId, artifactId, and version of the Maven
-     * dependency and artifact match.
+     * Computes the content fingerprint of the dependency from its central
+     * directory.
      *
-     * @param d the Maven dependency
-     * @param a the Maven artifact
-     * @return true if the groupId, artifactId, and version match
+     * @param dependency the dependency
+     * @return the fingerprint; or <code>null</code> if it cannot be computed
      */
-    private static boolean artifactsMatch(final Dependency d, final Artifact a) {
-        return (isEqualOrNull(a.getArtifactId(), d.getArtifactId()))
-                && (isEqualOrNull(a.getGroupId(), d.getGroupId()))
-                && (isEqualOrNull(a.getVersion(), d.getVersion()));
+    private String fingerprint(final DependencyReference dependency) {
+        try {
+            return scanner.fingerprint(dependency.getPath());
+        } catch (IOException ex) {
+            log.debug("Unable to fingerprint " + dependency, ex);
+            return null;
+        }
     }
 
     /**
-     * Compares two strings for equality; if both strings are null they are
-     * considered equal.
+     * Scans the dependency. When the persistent version cache is enabled the
+     * cached result is used if available; otherwise the entire dependency is
+     * scanned so that the result can be cached.
      *
-     * @param left the first string to compare
-     * @param right the second string to compare
-     * @return true if the strings are equal or if they are both null; otherwise
-     * false.
+     * @param dependency the dependency to scan
+     * @param limit the maximum major version allowed before the scan stops
+     * @param content the content fingerprint of the dependency; may be
+     * <code>null</code>
+     * @return the result of the scan
+     * @throws IOException thrown if the dependency cannot be read
      */
-    private static boolean isEqualOrNull(final String left, final String right) {
-        return (left != null && left.equals(right)) || (left == null && right == null);
+    private ScanResult load(final DependencyReference dependency, final int limit, final String content)
+            throws IOException {
+        final VersionCache versionCache = cache;
+        final Recorder.ScanSpan span = Recorder.get().startScan(dependency);
+        final long start = System.nanoTime();
+        try {
+            final ScanResult indexed = lookup(dependency);
+            if (indexed != null) {
+                return record(dependency, indexed, start, ScanMetrics.SOURCE_INDEX, span);
+            }
+            final ScanResult remote = scanRemotely(dependency);
+            if (remote != null) {
+                return record(dependency, remote, start, ScanMetrics.SOURCE_DAEMON, span);
+            }
+            if (versionCache == null) {
+                return record(dependency, scanner.scan(dependency.getPath(), limit), start, ScanMetrics.SOURCE_JAR,
+                        span);
+            }
+            final ScanResult cached = getCached(versionCache, dependency, content);
+            if (cached != null) {
+                return record(dependency, cached, start, ScanMetrics.SOURCE_CACHE, span);
+            }
+            final ScanResult result = record(dependency, scanner.scan(dependency.getPath(), Integer.MAX_VALUE),
+                    start, ScanMetrics.SOURCE_JAR, span);
+            putCached(versionCache, dependency, content, result);
+            return result;
+        } catch (IOException | RuntimeException ex) {
+            span.end(null, ScanMetrics.SOURCE_JAR, "error");
+            throw ex;
+        }
     }
 
     /**
-     * Builds a Project Building Request.
+     * Scans the dependency in tiers, stopping as soon as the answer is known.
+     * The persistent version cache, when enabled, is checked first. Then the
+     * cheap evidence is gathered from the jar: a sampled class file newer
+     * than the supported format proves the violation, and a sample that
+     * covered every class file is the full result. Otherwise, when
+     * <code>trustManifest</code> is set, a manifest recording a JDK that
+     * cannot produce newer class files is accepted; failing that the
+     * dependency is scanned in full.
      *
-     * @param session the Maven session
-     * @param remoteRepositories the remote repository
-     * @return Returns a new ProjectBuildingRequest populated from the current
-     * session and the current project remote repositories, used to resolve
-     * artifacts.
+     * @param dependency the dependency to scan
+     * @param content the content fingerprint of the dependency; may be
+     * <code>null</code>
+     * @return the result of the scan
+     * @throws IOException thrown if the dependency cannot be read
      */
-    private ProjectBuildingRequest newResolveArtifactProjectBuildingRequest(final MavenSession session,
-            final List<ArtifactRepository> remoteRepositories) {
-        final ProjectBuildingRequest buildingRequest = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
-        buildingRequest.setRemoteRepositories(remoteRepositories);
-        return buildingRequest;
+    private ScanResult loadTiered(final DependencyReference dependency, final String content) throws IOException {
+        final VersionCache versionCache = cache;
+        final Recorder.ScanSpan span = Recorder.get().startScan(dependency);
+        final long start = System.nanoTime();
+        try {
+            final ScanResult indexed = lookup(dependency);
+            if (indexed != null) {
+                return record(dependency, indexed, start, ScanMetrics.SOURCE_INDEX, span);
+            }
+            final ScanResult remote = scanRemotely(dependency);
+            if (remote != null) {
+                return record(dependency, remote, start, ScanMetrics.SOURCE_DAEMON, span);
+            }
+            if (versionCache != null) {
+                final ScanResult cached = getCached(versionCache, dependency, content);
+                if (cached != null) {
+                    return record(dependency, cached, start, ScanMetrics.SOURCE_CACHE, span);
+                }
+            }
+            final JarEvidence evidence = scanner.inspect(dependency.getPath(), supportedClassFileFormat,
+                    tieredSampleSize);
+            final ScanResult sample = evidence.getSample();
+            if (sample.getMajorVersion() > supportedClassFileFormat) {
+                return record(dependency, sample, start, ScanMetrics.SOURCE_SAMPLE, span);
+            }
+            if (sample.isComplete()) {
+                if (versionCache != null) {
+                    putCached(versionCache, dependency, content, sample);
+                }
+                return record(dependency, sample, start, ScanMetrics.SOURCE_SAMPLE, span);
+            }
+            if (trustManifest && isTrustedManifest(evidence)) {
+                log.debug(String.format("%s was built with a supported JDK; skipping the full scan", dependency));
+                return record(dependency, sample, start, ScanMetrics.SOURCE_MANIFEST, span);
+            }
+            //only a complete result can be stored in the persistent version cache
+            final ScanResult result = scanner.scan(dependency.getPath(),
+                    versionCache == null ? supportedClassFileFormat : Integer.MAX_VALUE);
+            result.addBytesRead(sample.getBytesRead());
+            if (versionCache != null) {
+                putCached(versionCache, dependency, content, result);
+            }
+            return record(dependency, result, start, ScanMetrics.SOURCE_JAR, span);
+        } catch (IOException | RuntimeException ex) {
+            span.end(null, ScanMetrics.SOURCE_JAR, "error");
+            throw ex;
+        }
     }
 
     /**
-     * Returns <code>false</code> as the results are not cacheable.
+     * Opens the version index, when one is configured. The index is not used
+     * if it cannot be read or was built with a different
+     * <code>scanNestedArchives</code> setting.
      *
-     * @return <code>false</code>
+     * @return the version index; or <code>null</code> if no index is used
      */
-    @Override
-    public boolean isCacheable() {
-        return false;
+    private VersionIndex openVersionIndex() {
+        if (versionIndex == null) {
+            return null;
+        }
+        if (!versionIndex.isFile()) {
+            log.debug("The version index " + versionIndex + " does not exist");
+            return null;
+        }
+        try {
+            final VersionIndex opened = VersionIndex.open(versionIndex);
+            if (opened.isNestedArchives() != scanNestedArchives) {
+                log.debug("The version index " + versionIndex + " was built with a different scanNestedArchives setting");
+                return null;
+            }
+            return opened;
+        } catch (IOException ex) {
+            log.warn("Unable to read the version index " + versionIndex + ": " + ex.getMessage());
+            return null;
+        }
     }
 
     /**
-     * As the results are not cacheable this returns <code>false</code>.
+     * Looks up the dependency in the version index, when one is used.
      *
-     * @param cachedRule the cached rule
-     * @return <code>false</code>
+     * @param dependency the dependency
+     * @return the indexed result; or <code>null</code> if the dependency must
+     * be scanned
      */
-    @Override
-    public boolean isResultValid(final EnforcerRule cachedRule) {
-        return false;
+    private ScanResult lookup(final DependencyReference dependency) {
+        final VersionIndex versionIndexUsed = index;
+        if (versionIndexUsed == null || dependency.getGroupId() == null || dependency.getVersion() == null) {
+            return null;
+        }
+        final File file = dependency.getPath();
+        final String name = file.getName();
+        return versionIndexUsed.get(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(),
+                dependency.getClassifier(), name.substring(name.lastIndexOf('.') + 1), file.length(),
+                file.lastModified());
     }
 
     /**
-     * Returns the cache id; since we do not have cacheable results this returns
-     * <code>null</code>.
+     * Asks the scan daemon, when one is used, to scan the dependency. If the
+     * daemon fails it is not used for the rest of the execution.
      *
-     * @return <code>null</code>
+     * @param dependency the dependency to scan
+     * @return the result of the scan; or <code>null</code> if the dependency
+     * must be scanned in process
      */
-    @Override
-    public String getCacheId() {
-        return null;
+    private ScanResult scanRemotely(final DependencyReference dependency) {
+        final DaemonClient client = daemon;
+        if (client == null) {
+            return null;
+        }
+        try {
+            return client.scan(dependency.getPath(), scanNestedArchives);
+        } catch (IOException ex) {
+            daemon = null;
+            log.debug("Unable to scan " + dependency + " using the daemon; scanning in process", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Determines whether or not the manifest of the jar shows that it cannot
+     * contain class files newer than the supported format: the JDK that built
+     * the jar is recorded and supported, and the jar is neither a
+     * multi-release jar nor a module. The manifest is never trusted when
+     * nested archives are scanned as they may have been built elsewhere.
+     *
+     * @param evidence the evidence gathered from the jar
+     * @return <code>true</code> if the manifest is trusted
+     */
+    private boolean isTrustedManifest(final JarEvidence evidence) {
+        final int buildMajorVersion = evidence.getBuildJdkMajorVersion();
+        return !scanNestedArchives && !evidence.isMultiRelease() && !evidence.hasModuleInfo()
+                && buildMajorVersion > 0 && buildMajorVersion <= supportedClassFileFormat;
+    }
+
+    /**
+     * Reads the result for the dependency from the persistent version cache;
+     * when the content fingerprint is known the result is shared by every
+     * dependency with the same content.
+     *
+     * @param versionCache the persistent version cache
+     * @param dependency the dependency
+     * @param content the content fingerprint; may be <code>null</code>
+     * @return the cached result; or <code>null</code> if there is none
+     */
+    private ScanResult getCached(final VersionCache versionCache, final DependencyReference dependency,
+            final String content) {
+        try {
+            return content == null ? versionCache.get(dependency.getPath()) : versionCache.getContent(content);
+        } catch (IOException ex) {
+            log.debug("Unable to read the version cache for " + dependency, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result for the dependency in the persistent version cache.
+     *
+     * @param versionCache the persistent version cache
+     * @param dependency the dependency
+     * @param content the content fingerprint; may be <code>null</code>
+     * @param result the result of the scan
+     */
+    private void putCached(final VersionCache versionCache, final DependencyReference dependency,
+            final String content, final ScanResult result) {
+        try {
+            if (content == null) {
+                versionCache.put(dependency.getPath(), result);
+            } else {
+                versionCache.putContent(content, result);
+            }
+        } catch (IOException ex) {
+            log.debug("Unable to update the version cache for " + dependency, ex);
+        }
+    }
+
+    /**
+     * Records the scan of the dependency in the metrics of the current
+     * execution and ends the scan's profiling span.
+     *
+     * @param dependency the dependency
+     * @param result the result of the scan
+     * @param start the value of <code>System.nanoTime()</code> when the scan
+     * started
+     * @param source where the result came from
+     * @param span the profiling span of the scan
+     * @return the result of the scan
+     */
+    private ScanResult record(final DependencyReference dependency, final ScanResult result, final long start,
+            final String source, final Recorder.ScanSpan span) {
+        final ScanMetrics scanMetrics = metrics;
+        if (scanMetrics != null) {
+            scanMetrics.recordArtifact(dependency, result, System.nanoTime() - start, source);
+        }
+        span.end(result, source, result.getMajorVersion() > supportedClassFileFormat ? "invalid" : "valid");
+        return result;
+    }
+
+    /**
+     * Logs the metrics of the current execution. When the report is enabled
+     * the summary is logged at the info level and the metrics are written as
+     * JSON to the project's build directory; otherwise they are only logged
+     * at the debug level.
+     *
+     * @param project the project being scanned
+     */
+    private void reportMetrics(final MavenProject project) {
+        final ScanMetrics scanMetrics = metrics;
+        if (reportMetrics) {
+            log.info("Class file format rule: " + scanMetrics.getSummary());
+        } else {
+            log.debug("Class file format rule: " + scanMetrics.getSummary());
+        }
+        if (log.isDebugEnabled()) {
+            for (String line : scanMetrics.getArtifactLines()) {
+                log.debug("  " + line);
+            }
+        }
+        if (reportMetrics && project.getBuild() != null && project.getBuild().getDirectory() != null) {
+            final File file = new File(project.getBuild().getDirectory(), METRICS_FILE);
+            try {
+                scanMetrics.writeJson(file, project.getId());
+            } catch (IOException ex) {
+                log.warn("Unable to write the class file format rule metrics to " + file, ex);
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries from the persistent version
+     * cache if it has grown beyond the configured maximum, and saves the class
+     * cache if it is persisted.
+     */
+    private void pruneCache() {
+        final VersionCache versionCache = cache;
+        if (versionCache != null) {
+            try {
+                final int removed = versionCache.prune();
+                if (removed > 0) {
+                    log.debug(String.format("Removed %d entries from the version cache", removed));
+                }
+            } catch (IOException ex) {
+                log.debug("Unable to prune the version cache", ex);
+            }
+        }
+        final ClassVersionCache classVersionCache = classCache;
+        if (classVersionCache != null) {
+            log.debug("Class cache: " + classVersionCache);
+            try {
+                classVersionCache.save();
+            } catch (IOException ex) {
+                log.debug("Unable to save the class cache", ex);
+            }
+        }
+    }
+
+    /**
+     * Scans the project's artifacts and adds them to the engine's dependency
+     * list.
+     *
+     * @param project the project to scan the dependencies
+     * @param session the maven session
+     * @param dependencyGraphBuilder the maven dependency graph builder
+     * @param remoteRepositories the list of remote repositories
+     * @param artifactResolver the maven artifact resolver
+     * @param pipeline the pipeline to which each dependency is submitted as
+     * soon as it is resolved; may be <code>null</code>
+     * @return a collection of exceptions that may have occurred while resolving
+     * and scanning the dependencies
+     * @throws EnforcerRuleException thrown if there is an exception resolving the dependency tree
+     */
+    private Set<DependencyReference> getProjectDependencies(final MavenProject project, final MavenSession session,
+            final DependencyGraphBuilder dependencyGraphBuilder,
+            final List<ArtifactRepository> remoteRepositories, final ArtifactResolver artifactResolver,
+            final ScanPipeline pipeline) throws EnforcerRuleException {
+        final Set<DependencyReference> references = new HashSet<>();
+        try {
+            final ProjectBuildingRequest buildingRequest = newResolveArtifactProjectBuildingRequest(session, remoteRepositories);
+            buildingRequest.setProject(project);
+            final long graphStart = System.nanoTime();
+            final Recorder.Span span = Recorder.get().startGraphBuild(project.getId());
+            final DependencyNode dn;
+            try {
+                dn = dependencyGraphBuilder.buildDependencyGraph(buildingRequest, null);
+                span.end("built");
+            } catch (DependencyGraphBuilderException | RuntimeException ex) {
+                span.end("failed");
+                throw ex;
+            }
+            final long resolveStart = System.nanoTime();
+            metrics.setGraphNanos(resolveStart - graphStart);
+            dynamicVersions = BuildFingerprint.hasDynamicVersions(dn);
+            final boolean collectionFailed = collectDependencies(references, project, dn.getChildren(),
+                    buildingRequest, artifactResolver, pipeline);
+            metrics.setResolveNanos(System.nanoTime() - resolveStart);
+            if (collectionFailed) {
+                throw new EnforcerRuleException("Unable to resolve the projects dependencies");
+            }
+        } catch (DependencyGraphBuilderException ex) {
+            final String msg = String.format("Unable to build dependency graph on project %s", project.getName());
+            throw new EnforcerRuleException(msg, ex);
+        }
+        return references;
+    }
+
+    /**
+     * Resolves the projects artifacts using Aether and scans the resulting
+     * dependencies. Each distinct artifact coordinate is resolved once; when
+     * more then one resolve thread is configured the coordinates are resolved
+     * concurrently.
+     *
+     * @param references the set to which dependencies will be added
+     * @param project the project being scanned
+     * @param nodes the list of dependency nodes, generally obtained via the
+     * DependencyGraphBuilder
+     * @param buildingRequest the Maven project building request
+     * @param artifactResolver the maven artifact resolver
+     * @return true if the collection of dependencies failed
+     */
+    boolean collectDependencies(final Set<DependencyReference> references,
+            final MavenProject project, final List<DependencyNode> nodes,
+            final ProjectBuildingRequest buildingRequest, final ArtifactResolver artifactResolver) {
+        return collectDependencies(references, project, nodes, buildingRequest, artifactResolver, null);
+    }
+
+    /**
+     * Resolves the projects artifacts using Aether, submitting each
+     * dependency to the pipeline as soon as it is resolved so that it is
+     * scanned while the remaining artifacts are resolved.
+     *
+     * @param references the set to which dependencies will be added
+     * @param project the project being scanned
+     * @param nodes the list of dependency nodes, generally obtained via the
+     * DependencyGraphBuilder
+     * @param buildingRequest the Maven project building request
+     * @param artifactResolver the maven artifact resolver
+     * @param pipeline the pipeline to which each dependency is submitted; may
+     * be <code>null</code>
+     * @return true if the collection of dependencies failed
+     */
+    boolean collectDependencies(final Set<DependencyReference> references,
+            final MavenProject project, final List<DependencyNode> nodes,
+            final ProjectBuildingRequest buildingRequest, final ArtifactResolver artifactResolver,
+            final ScanPipeline pipeline) {
+        final List<DependencyNode> included = new ArrayList<>();
+        collectNodes(nodes, included);
+        final DependencyPath.Builder paths = new DependencyPath.Builder();
+        final int threads = resolveThreads < 1 ? Runtime.getRuntime().availableProcessors() : resolveThreads;
+        final ExecutorService executor = threads > 1
+                ? Executors.newFixedThreadPool(threads, new WorkerThreadFactory("class-file-format-resolve-")) : null;
+        try {
+            final Map<String, FutureTask<Artifact>> resolutions = new HashMap<>();
+            for (DependencyNode dependencyNode : included) {
+                if (!org.apache.maven.artifact.Artifact.SCOPE_SYSTEM.equals(dependencyNode.getArtifact().getScope())
+                        && getResolvedFile(dependencyNode) == null) {
+                    final ArtifactCoordinate coordinate = TransferUtils.toArtifactCoordinate(dependencyNode.getArtifact());
+                    final String key = coordinateKey(coordinate);
+                    if (!resolutions.containsKey(key)) {
+                        final FutureTask<Artifact> task = new FutureTask<>(
+                                () -> resolve(artifactResolver, buildingRequest, coordinate, key));
+                        resolutions.put(key, task);
+                        //without resolve threads each artifact is resolved when collected, so that a
+                        //pipeline scans the resolved dependencies while the remaining ones are resolved
+                        if (executor != null) {
+                            executor.execute(task);
+                        }
+                    }
+                }
+            }
+            boolean collectionFailed = false;
+            for (DependencyNode dependencyNode : included) {
+                if (pipeline != null && pipeline.isCancelled()) {
+                    //a violation was found; the outstanding resolutions are interrupted below
+                    break;
+                }
+                collectionFailed |= collectDependency(references, project, dependencyNode, resolutions, paths,
+                        pipeline);
+            }
+            return collectionFailed;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Resolves the artifact, recording the resolution as a profiling span.
+     *
+     * @param artifactResolver the maven artifact resolver
+     * @param buildingRequest the Maven project building request
+     * @param coordinate the coordinate of the artifact
+     * @param key the key identifying the coordinate
+     * @return the resolved artifact
+     * @throws ArtifactResolverException thrown if the artifact cannot be
+     * resolved
+     */
+    private static Artifact resolve(final ArtifactResolver artifactResolver,
+            final ProjectBuildingRequest buildingRequest, final ArtifactCoordinate coordinate, final String key)
+            throws ArtifactResolverException {
+        final Recorder.Span span = Recorder.get().startResolution(key);
+        try {
+            final Artifact artifact = artifactResolver.resolveArtifact(buildingRequest, coordinate).getArtifact();
+            span.end(artifact.isResolved() ? "resolved" : "unresolved");
+            return artifact;
+        } catch (ArtifactResolverException | RuntimeException ex) {
+            span.end("failed");
+            throw ex;
+        }
+    }
+
+    /**
+     * Adds the dependency nodes that are not excluded by scope to the list;
+     * the children of a node are added before the node itself. A node
+     * excluded by scope is skipped along with its children. The graph is
+     * walked with an explicit stack, so deep graphs cannot overflow the
+     * thread's stack. Each coordinate and scope is visited once, so subtrees
+     * shared by several nodes are not walked again.
+     *
+     * @param nodes the list of dependency nodes
+     * @param included the list to add the included nodes to
+     */
+    private void collectNodes(final List<DependencyNode> nodes, final List<DependencyNode> included) {
+        final Set<String> visited = new HashSet<>();
+        //the nodes being walked, and the remaining siblings of each of them
+        final Deque<DependencyNode> path = new ArrayDeque<>();
+        final Deque<Iterator<DependencyNode>> siblings = new ArrayDeque<>();
+        Iterator<DependencyNode> current = nodes.iterator();
+        while (current.hasNext() || !path.isEmpty()) {
+            if (!current.hasNext()) {
+                included.add(path.pop());
+                current = siblings.pop();
+                continue;
+            }
+            final DependencyNode dependencyNode = current.next();
+            final org.apache.maven.artifact.Artifact artifact = dependencyNode.getArtifact();
+            if ((excludeScopeTest && org.apache.maven.artifact.Artifact.SCOPE_TEST.equals(artifact.getScope()))
+                    || (excludeScopeProvided
+                    && org.apache.maven.artifact.Artifact.SCOPE_PROVIDED.equals(artifact.getScope()))
+                    || !visited.add(artifact.getId() + '|' + artifact.getScope())) {
+                continue;
+            }
+            path.push(dependencyNode);
+            siblings.push(current);
+            current = dependencyNode.getChildren().iterator();
+        }
+    }
+
+    /**
+     * Returns the file of the node's artifact if it was already resolved by
+     * the dependency graph builder and resolved artifacts are trusted.
+     *
+     * @param dependencyNode the dependency node
+     * @return the artifact file; or <code>null</code> if the artifact must be
+     * resolved
+     */
+    private File getResolvedFile(final DependencyNode dependencyNode) {
+        if (trustResolvedArtifacts) {
+            final File file = dependencyNode.getArtifact().getFile();
+            if (file != null && (file.isFile() || file.isDirectory())) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key used to identify distinct artifact coordinates.
+     *
+     * @param coordinate the artifact coordinate
+     * @return the key
+     */
+    private static String coordinateKey(final ArtifactCoordinate coordinate) {
+        return String.format("%s:%s:%s:%s:%s", coordinate.getGroupId(), coordinate.getArtifactId(),
+                coordinate.getExtension(), coordinate.getClassifier(), coordinate.getVersion());
+    }
+
+    /**
+     * Adds the resolved dependency node to the set of references.
+     *
+     * @param references the set to which dependencies will be added
+     * @param project the project being scanned
+     * @param dependencyNode the dependency node
+     * @param resolutions the artifact resolutions keyed by coordinate; a
+     * resolution not yet started by a resolve thread is run on the calling
+     * thread
+     * @param paths the builder of the paths to the dependencies, which also
+     * interns the coordinates
+     * @param pipeline the pipeline to which the dependency is submitted; may
+     * be <code>null</code>
+     * @return true if the collection of the dependency failed
+     */
+    private boolean collectDependency(final Set<DependencyReference> references, final MavenProject project,
+            final DependencyNode dependencyNode, final Map<String, FutureTask<Artifact>> resolutions,
+            final DependencyPath.Builder paths, final ScanPipeline pipeline) {
+        boolean isResolved = false;
+        File artifactFile = null;
+        String artifactId = null;
+        String groupId = null;
+        String version = null;
+        List<ArtifactVersion> availableVersions = null;
+        if (org.apache.maven.artifact.Artifact.SCOPE_SYSTEM.equals(dependencyNode.getArtifact().getScope())) {
+            for (Object dependency : project.getDependencies()) {
+                final Dependency d = (Dependency) dependency;
+                final Artifact a = dependencyNode.getArtifact();
+                if (d.getSystemPath() != null && artifactsMatch(d, a)) {
+                    artifactFile = new File(d.getSystemPath());
+                    isResolved = artifactFile.isFile();
+                    groupId = a.getGroupId();
+                    artifactId = a.getArtifactId();
+                    version = a.getVersion();
+                    availableVersions = a.getAvailableVersions();
+                    break;
+                }
+            }
+            if (!isResolved) {
+                log.error("Unable to resolve system scoped dependency: " + dependencyNode.toNodeString());
+                return true;
+            }
+        } else if (getResolvedFile(dependencyNode) != null) {
+            final Artifact a = dependencyNode.getArtifact();
+            isResolved = true;
+            artifactFile = a.getFile();
+            groupId = a.getGroupId();
+            artifactId = a.getArtifactId();
+            version = a.getVersion();
+            availableVersions = a.getAvailableVersions();
+        } else {
+            final ArtifactCoordinate coordinate = TransferUtils.toArtifactCoordinate(dependencyNode.getArtifact());
+            final Artifact result;
+            try {
+                final FutureTask<Artifact> resolution = resolutions.get(coordinateKey(coordinate));
+                //does nothing if the resolution was already started
+                resolution.run();
+                result = resolution.get();
+            } catch (ExecutionException ex) {
+                if (!(ex.getCause() instanceof ArtifactResolverException)) {
+                    if (ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) ex.getCause();
+                    }
+                    throw new RuntimeException(ex.getCause());
+                }
+                log.debug("Collection failed", ex.getCause());
+                final String msg = String.format("Error resolving '%s' in project %s",
+                        dependencyNode.getArtifact().getId(), project.getName());
+                log.error(msg);
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                final String msg = String.format("Interrupted resolving '%s' in project %s",
+                        dependencyNode.getArtifact().getId(), project.getName());
+                log.error(msg);
+                return true;
+            }
+            isResolved = result.isResolved();
+            artifactFile = result.getFile();
+            groupId = result.getGroupId();
+            artifactId = result.getArtifactId();
+            version = result.getVersion();
+            availableVersions = result.getAvailableVersions();
+        }
+        //reactor siblings may resolve to their output directory rather then a jar
+        if (isResolved && artifactFile != null && (artifactFile.isFile() || artifactFile.isDirectory())) {
+            //the trail is derived from the parent pointers only if the dependency violates the rule
+            DependencyReference dep = new DependencyReference(paths.intern(groupId), paths.intern(artifactId),
+                    paths.intern(version), artifactFile, availableVersions, null);
+            dep.setClassifier(paths.intern(dependencyNode.getArtifact().getClassifier()));
+            dep.setDependencyPath(paths.pathOf(dependencyNode));
+            references.add(dep);
+            if (pipeline != null) {
+                try {
+                    pipeline.submit(dep);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    log.error(String.format("Interrupted scanning '%s' in project %s",
+                            dependencyNode.getArtifact().getId(), project.getName()));
+                    return true;
+                }
+            }
+        } else {
+            final String msg = String.format("Unable to resolve '%s' in project %s",
+                    dependencyNode.getArtifact().getId(), project.getName());
+            log.error(msg);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determines if the groupId, artifactId, and version of the Maven
+     * dependency and artifact match.
+     *
+     * @param d the Maven dependency
+     * @param a the Maven artifact
+     * @return true if the groupId, artifactId, and version match
+     */
+    private static boolean artifactsMatch(final Dependency d, final Artifact a) {
+        return (isEqualOrNull(a.getArtifactId(), d.getArtifactId()))
+                && (isEqualOrNull(a.getGroupId(), d.getGroupId()))
+                && (isEqualOrNull(a.getVersion(), d.getVersion()));
+    }
+
+    /**
+     * Compares two strings for equality; if both strings are null they are
+     * considered equal.
+     *
+     * @param left the first string to compare
+     * @param right the second string to compare
+     * @return true if the strings are equal or if they are both null; otherwise
+     * false.
+     */
+    private static boolean isEqualOrNull(final String left, final String right) {
+        return (left != null && left.equals(right)) || (left == null && right == null);
+    }
+
+    /**
+     * Builds a Project Building Request.
+     *
+     * @param session the Maven session
+     * @param remoteRepositories the remote repository
+     * @return Returns a new ProjectBuildingRequest populated from the current
+     * session and the current project remote repositories, used to resolve
+     * artifacts.
+     */
+    private ProjectBuildingRequest newResolveArtifactProjectBuildingRequest(final MavenSession session,
+            final List<ArtifactRepository> remoteRepositories) {
+        final ProjectBuildingRequest buildingRequest = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+        buildingRequest.setRemoteRepositories(remoteRepositories);
+        return buildingRequest;
+    }
+
+    /**
+     * Returns <code>true</code>; the dependency sets verified by a rule are
+     * shared with the next rule that has the same configuration.
+     *
+     * @return <code>true</code>
+     */
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * The enforcer calls this method before the rule is executed, at which
+     * point the project's dependencies are not yet known. If the cached rule
+     * has the same configuration its verified dependency sets are adopted so
+     * that the execution of this rule can skip scanning a dependency set that
+     * has already been verified in this session; the rule itself must still
+     * execute, so this always returns <code>false</code>.
+     *
+     * @param cachedRule the cached rule
+     * @return <code>false</code>
+     */
+    @Override
+    public boolean isResultValid(final EnforcerRule cachedRule) {
+        if (cachedRule instanceof ClassFileFormatRule) {
+            final ClassFileFormatRule other = (ClassFileFormatRule) cachedRule;
+            if (getCacheId().equals(other.getCacheId())) {
+                verifiedDependencySets = other.verifiedDependencySets;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cache id, computed from the configuration of the rule.
+     *
+     * @return the cache id
+     */
+    @Override
+    public String getCacheId() {
+        return Digests.sha1Hex(String.format("%d|%s|%s|%s|%s", supportedClassFileFormat, excludeScopeTest,
+                excludeScopeProvided, scanNestedArchives, tieredScan && trustManifest));
+    }
+
+    /**
+     * Computes the id of a resolved dependency set from the dependency
+     * coordinates, the dependency files along with their size and
+     * modification time, and the rule configuration. The size and
+     * modification time ensure a jar rebuilt at the same path, i.e. a
+     * snapshot, is verified again.
+     *
+     * @param dependencies the resolved dependencies
+     * @return the dependency set id; or <code>null</code> if the set contains
+     * a directory whose contents may change
+     */
+    String getDependencySetId(final Collection<DependencyReference> dependencies) {
+        final List<String> coordinates = new ArrayList<>(dependencies.size());
+        for (DependencyReference d : dependencies) {
+            if (d.getPath() != null && d.getPath().isDirectory()) {
+                return null;
+            }
+            final File file = d.getPath();
+            coordinates.add(String.format("%s:%s:%s:%s:%d:%d", d.getGroupId(), d.getArtifactId(), d.getVersion(),
+                    file, file == null ? 0 : file.length(), file == null ? 0 : file.lastModified()));
+        }
+        Collections.sort(coordinates);
+        final StringBuilder sb = new StringBuilder(getCacheId());
+        for (String c : coordinates) {
+            sb.append('|').append(c);
+        }
+        return Digests.sha1Hex(sb.toString());
+    }
+
+    /**
+     * Returns whether or not the dependency set was already verified by this
+     * rule or a previously executed rule with the same configuration.
+     *
+     * @param dependencySetId the dependency set id
+     * @return <code>true</code> if the dependency set was already verified
+     */
+    boolean isVerified(final String dependencySetId) {
+        return dependencySetId != null && verifiedDependencySets.contains(dependencySetId);
+    }
+
+    /**
+     * Records that the dependency set was verified.
+     *
+     * @param dependencySetId the dependency set id
+     */
+    void markVerified(final String dependencySetId) {
+        if (dependencySetId != null) {
+            verifiedDependencySets.add(dependencySetId);
+        }
+    }
+
+    /**
+     * Get the value of scanThreads.
+     *
+     * @return the value of scanThreads
+     */
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    /**
+     * Set the value of scanThreads.
+     *
+     * @param scanThreads new value of scanThreads
+     */
+    public void setScanThreads(final int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
+    /**
+     * Get the value of resolveThreads.
+     *
+     * @return the value of resolveThreads
+     */
+    public int getResolveThreads() {
+        return resolveThreads;
+    }
+
+    /**
+     * Set the value of resolveThreads.
+     *
+     * @param resolveThreads new value of resolveThreads
+     */
+    public void setResolveThreads(final int resolveThreads) {
+        this.resolveThreads = resolveThreads;
+    }
+
+    /**
+     * Get the value of trustResolvedArtifacts.
+     *
+     * @return the value of trustResolvedArtifacts
+     */
+    public boolean isTrustResolvedArtifacts() {
+        return trustResolvedArtifacts;
+    }
+
+    /**
+     * Set the value of trustResolvedArtifacts.
+     *
+     * @param trustResolvedArtifacts new value of trustResolvedArtifacts
+     */
+    public void setTrustResolvedArtifacts(final boolean trustResolvedArtifacts) {
+        this.trustResolvedArtifacts = trustResolvedArtifacts;
+    }
+
+    /**
+     * Get the value of scanNestedArchives.
+     *
+     * @return the value of scanNestedArchives
+     */
+    public boolean isScanNestedArchives() {
+        return scanNestedArchives;
+    }
+
+    /**
+     * Set the value of scanNestedArchives.
+     *
+     * @param scanNestedArchives new value of scanNestedArchives
+     */
+    public void setScanNestedArchives(final boolean scanNestedArchives) {
+        this.scanNestedArchives = scanNestedArchives;
+        scanner.setScanNestedArchives(scanNestedArchives);
+    }
+
+    /**
+     * Get the value of tieredScan.
+     *
+     * @return the value of tieredScan
+     */
+    public boolean isTieredScan() {
+        return tieredScan;
+    }
+
+    /**
+     * Set the value of tieredScan.
+     *
+     * @param tieredScan new value of tieredScan
+     */
+    public void setTieredScan(final boolean tieredScan) {
+        this.tieredScan = tieredScan;
+    }
+
+    /**
+     * Get the value of tieredSampleSize.
+     *
+     * @return the value of tieredSampleSize
+     */
+    public int getTieredSampleSize() {
+        return tieredSampleSize;
+    }
+
+    /**
+     * Set the value of tieredSampleSize.
+     *
+     * @param tieredSampleSize new value of tieredSampleSize
+     */
+    public void setTieredSampleSize(final int tieredSampleSize) {
+        this.tieredSampleSize = tieredSampleSize;
+    }
+
+    /**
+     * Get the value of trustManifest.
+     *
+     * @return the value of trustManifest
+     */
+    public boolean isTrustManifest() {
+        return trustManifest;
+    }
+
+    /**
+     * Set the value of trustManifest.
+     *
+     * @param trustManifest new value of trustManifest
+     */
+    public void setTrustManifest(final boolean trustManifest) {
+        this.trustManifest = trustManifest;
+    }
+
+    /**
+     * Get the value of reportMetrics.
+     *
+     * @return the value of reportMetrics
+     */
+    public boolean isReportMetrics() {
+        return reportMetrics;
+    }
+
+    /**
+     * Set the value of reportMetrics.
+     *
+     * @param reportMetrics new value of reportMetrics
+     */
+    public void setReportMetrics(final boolean reportMetrics) {
+        this.reportMetrics = reportMetrics;
+    }
+
+    /**
+     * Get the value of pipelineScan.
+     *
+     * @return the value of pipelineScan
+     */
+    public boolean isPipelineScan() {
+        return pipelineScan;
+    }
+
+    /**
+     * Set the value of pipelineScan.
+     *
+     * @param pipelineScan new value of pipelineScan
+     */
+    public void setPipelineScan(final boolean pipelineScan) {
+        this.pipelineScan = pipelineScan;
+    }
+
+    /**
+     * Get the value of deduplicateContent.
+     *
+     * @return the value of deduplicateContent
+     */
+    public boolean isDeduplicateContent() {
+        return deduplicateContent;
+    }
+
+    /**
+     * Set the value of deduplicateContent.
+     *
+     * @param deduplicateContent new value of deduplicateContent
+     */
+    public void setDeduplicateContent(final boolean deduplicateContent) {
+        this.deduplicateContent = deduplicateContent;
+    }
+
+    /**
+     * Get the value of skipUnchanged.
+     *
+     * @return the value of skipUnchanged
+     */
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * Set the value of skipUnchanged. A project whose dependency graph
+     * contains version ranges or SNAPSHOT versions is always verified as these
+     * may resolve to different artifacts without any local file changing.
+     *
+     * @param skipUnchanged new value of skipUnchanged
+     */
+    public void setSkipUnchanged(final boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Get the value of failFast.
+     *
+     * @return the value of failFast
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Set the value of failFast.
+     *
+     * @param failFast new value of failFast
+     */
+    public void setFailFast(final boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Get the value of classCacheSize.
+     *
+     * @return the value of classCacheSize
+     */
+    public int getClassCacheSize() {
+        return classCacheSize;
+    }
+
+    /**
+     * Set the value of classCacheSize.
+     *
+     * @param classCacheSize new value of classCacheSize
+     */
+    public void setClassCacheSize(final int classCacheSize) {
+        this.classCacheSize = classCacheSize;
+    }
+
+    /**
+     * Get the value of useDaemon.
+     *
+     * @return the value of useDaemon
+     */
+    public boolean isUseDaemon() {
+        return useDaemon;
+    }
+
+    /**
+     * Set the value of useDaemon.
+     *
+     * @param useDaemon new value of useDaemon
+     */
+    public void setUseDaemon(final boolean useDaemon) {
+        this.useDaemon = useDaemon;
+    }
+
+    /**
+     * Get the value of versionIndex.
+     *
+     * @return the value of versionIndex
+     */
+    public File getVersionIndex() {
+        return versionIndex;
+    }
+
+    /**
+     * Set the value of versionIndex.
+     *
+     * @param versionIndex new value of versionIndex
+     */
+    public void setVersionIndex(final File versionIndex) {
+        this.versionIndex = versionIndex;
+    }
+
+    /**
+     * Get the value of useCache.
+     *
+     * @return the value of useCache
+     */
+    public boolean isUseCache() {
+        return useCache;
+    }
+
+    /**
+     * Set the value of useCache.
+     *
+     * @param useCache new value of useCache
+     */
+    public void setUseCache(final boolean useCache) {
+        this.useCache = useCache;
+    }
+
+    /**
+     * Get the value of cacheDirectory; if not configured the default of
+     * <code>~/.m2/class-file-format-rule</code> is returned.
+     *
+     * @return the value of cacheDirectory
+     */
+    public File getCacheDirectory() {
+        if (cacheDirectory == null) {
+            return new File(new File(System.getProperty("user.home"), ".m2"), "class-file-format-rule");
+        }
+        return cacheDirectory;
+    }
+
+    /**
+     * Set the value of cacheDirectory.
+     *
+     * @param cacheDirectory new value of cacheDirectory
+     */
+    public void setCacheDirectory(final File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Get the value of cacheMaxEntries.
+     *
+     * @return the value of cacheMaxEntries
+     */
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    /**
+     * Set the value of cacheMaxEntries.
+     *
+     * @param cacheMaxEntries new value of cacheMaxEntries
+     */
+    public void setCacheMaxEntries(final int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+
+    /**
+     * Get the value of cacheChecksum.
+     *
+     * @return the value of cacheChecksum
+     */
+    public boolean isCacheChecksum() {
+        return cacheChecksum;
+    }
+
+    /**
+     * Set the value of cacheChecksum.
+     *
+     * @param cacheChecksum new value of cacheChecksum
+     */
+    public void setCacheChecksum(final boolean cacheChecksum) {
+        this.cacheChecksum = cacheChecksum;
     }
 
     /**
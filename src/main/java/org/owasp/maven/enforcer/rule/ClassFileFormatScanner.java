@@ -0,0 +1,349 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Determines the class file format versions of jars and directories outside
+ * of the Maven enforcer, i.e. by the {@link ScanCommand} to audit an entire
+ * repository.
+ * <p>
+ * A batch scan walks the given directories for archives and hands them to
+ * the scanning threads through a bounded queue; the results are passed to a
+ * listener as soon as each archive is scanned so that the memory used does
+ * not depend on the number of archives. The memory used to scan an archive
+ * is bounded by the reusable buffers of each scanning thread.</p>
+ *
+ * @author Jeremy Long
+ */
+public class ClassFileFormatScanner {
+
+    /**
+     * The number of queued archives per scanning thread.
+     */
+    private static final int QUEUE_PER_THREAD = 16;
+    /**
+     * How long the producer waits for space in the queue before checking
+     * whether any scanning thread is still running, in milliseconds.
+     */
+    private static final long LIVENESS_CHECK_MILLIS = 100;
+    /**
+     * Marks the end of the queued archives; compared by identity.
+     */
+    private static final Path END = Paths.get("");
+    /**
+     * The scanner used to read the jars.
+     */
+    private final JarScanner jarScanner = new JarScanner();
+    /**
+     * The number of threads used by a batch scan; a value less than one uses
+     * the number of available processors.
+     */
+    private int threads = 0;
+    /**
+     * The maximum major version allowed; scans stop at the first class file
+     * exceeding it.
+     */
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Get the value of threads.
+     *
+     * @return the value of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the value of threads.
+     *
+     * @param threads new value of threads
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Get the value of limit.
+     *
+     * @return the value of limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set the value of limit.
+     *
+     * @param limit new value of limit
+     */
+    public void setLimit(final int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Get the value of scanNestedArchives.
+     *
+     * @return the value of scanNestedArchives
+     */
+    public boolean isScanNestedArchives() {
+        return jarScanner.isScanNestedArchives();
+    }
+
+    /**
+     * Set the value of scanNestedArchives.
+     *
+     * @param scanNestedArchives new value of scanNestedArchives
+     */
+    public void setScanNestedArchives(final boolean scanNestedArchives) {
+        jarScanner.setScanNestedArchives(scanNestedArchives);
+    }
+
+    /**
+     * Scans the dependency.
+     *
+     * @param dependency the dependency to scan
+     * @return the result of the scan
+     * @throws IOException thrown if the dependency cannot be read
+     */
+    public ScanResult scan(final DependencyReference dependency) throws IOException {
+        return scan(dependency.getPath().toPath());
+    }
+
+    /**
+     * Scans a jar, or a directory of class files such as
+     * <code>target/classes</code>.
+     *
+     * @param path the jar or directory to scan
+     * @return the result of the scan
+     * @throws IOException thrown if the path cannot be read
+     */
+    public ScanResult scan(final Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            final ForkJoinPool pool = new ForkJoinPool(getThreadCount());
+            try {
+                //a one-off scan; the index is not persisted
+                return new DirectoryScanner(pool, null).scan(path.toFile());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return jarScanner.scan(path.toFile(), limit);
+    }
+
+    /**
+     * Scans every archive (<code>.jar</code>, <code>.war</code>, or
+     * <code>.ear</code>) found in the given paths. Files are scanned as given
+     * while directories are searched recursively for archives. The sources
+     * are iterated lazily on the calling thread while the archives are
+     * scanned concurrently; the listener is called from the scanning threads.
+     *
+     * @param sources the files and directories to scan
+     * @param listener the listener notified of each result; must be thread
+     * safe
+     * @return the number of archives processed, including those that could
+     * not be read
+     * @throws IOException thrown if the scan is interrupted
+     */
+    public long scanAll(final Iterable<Path> sources, final Listener listener) throws IOException {
+        final int count = getThreadCount();
+        final BlockingQueue<Path> queue = new ArrayBlockingQueue<>(count * QUEUE_PER_THREAD);
+        final AtomicLong scanned = new AtomicLong();
+        final ExecutorService executor = Executors.newFixedThreadPool(count,
+                new WorkerThreadFactory("class-file-format-batch-"));
+        try {
+            final List<Future<?>> workers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                workers.add(executor.submit(() -> {
+                    Path archive = queue.take();
+                    while (archive != END) {
+                        final long start = System.nanoTime();
+                        try {
+                            final ScanResult result = jarScanner.scan(archive.toFile(), limit);
+                            listener.scanned(archive, result, System.nanoTime() - start);
+                        } catch (IOException | RuntimeException ex) {
+                            listener.failed(archive, ex);
+                        }
+                        scanned.incrementAndGet();
+                        archive = queue.take();
+                    }
+                    return null;
+                }));
+            }
+            for (Path source : sources) {
+                if (!enqueue(source, queue, workers, listener)) {
+                    break;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if (!offer(queue, END, workers)) {
+                    break;
+                }
+            }
+            for (Future<?> f : workers) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning");
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return scanned.get();
+    }
+
+    /**
+     * Queues the archive, or the archives found within the directory.
+     *
+     * @param source the archive or directory
+     * @param queue the queue of archives to scan
+     * @param workers the scanning tasks taking from the queue
+     * @param listener the listener notified if the directory cannot be read
+     * @return <code>true</code> if the archives were queued;
+     * <code>false</code> if every scanning thread has stopped
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * space in the queue
+     */
+    private static boolean enqueue(final Path source, final BlockingQueue<Path> queue,
+            final List<Future<?>> workers, final Listener listener) throws InterruptedException {
+        if (!Files.isDirectory(source)) {
+            return offer(queue, source, workers);
+        }
+        final AtomicBoolean stopped = new AtomicBoolean();
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && isArchive(file)) {
+                        try {
+                            if (!offer(queue, file, workers)) {
+                                stopped.set(true);
+                                return FileVisitResult.TERMINATE;
+                            }
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted while queuing " + file);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException ex) {
+                    listener.failed(file, ex);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (InterruptedIOException ex) {
+            throw new InterruptedException(ex.getMessage());
+        } catch (IOException ex) {
+            listener.failed(source, ex);
+        }
+        return !stopped.get();
+    }
+
+    /**
+     * Adds the path to the queue, waiting for space while any scanning thread
+     * is running. A worker only stops early by failing with an error, in
+     * which case nothing would ever take from the queue.
+     *
+     * @param queue the queue of archives to scan
+     * @param path the archive, or the end marker
+     * @param workers the scanning tasks taking from the queue
+     * @return <code>true</code> if the path was queued; <code>false</code> if
+     * every scanning thread has stopped
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    private static boolean offer(final BlockingQueue<Path> queue, final Path path, final List<Future<?>> workers)
+            throws InterruptedException {
+        while (!queue.offer(path, LIVENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            boolean running = false;
+            for (Future<?> f : workers) {
+                running |= !f.isDone();
+            }
+            if (!running) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether or not the file is an archive that is scanned.
+     *
+     * @param file the file
+     * @return <code>true</code> if the file is a jar, war, or ear
+     */
+    static boolean isArchive(final Path file) {
+        final String name = file.getFileName().toString();
+        return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear");
+    }
+
+    /**
+     * Returns the number of threads used by a batch scan.
+     *
+     * @return the number of threads
+     */
+    private int getThreadCount() {
+        return threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    /**
+     * Receives the results of a batch scan.
+     */
+    public interface Listener {
+
+        /**
+         * Called when an archive has been scanned.
+         *
+         * @param archive the archive
+         * @param result the result of the scan
+         * @param nanos the time taken, in nanoseconds
+         */
+        void scanned(Path archive, ScanResult result, long nanos);
+
+        /**
+         * Called when an archive or directory cannot be read.
+         *
+         * @param path the archive or directory
+         * @param ex the exception
+         */
+        void failed(Path path, Exception ex);
+    }
+}
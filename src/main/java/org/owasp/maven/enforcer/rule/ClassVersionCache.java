@@ -0,0 +1,417 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the version of individual class files, keyed by the
+ * entry name and the CRC-32, compressed size, and uncompressed size recorded
+ * in the central directory. Consecutive releases of a library mostly contain
+ * byte-identical classes; with the cache only the classes that changed are
+ * read when a new release is scanned.
+ * <p>
+ * The entries are held in a primitive table of buckets, each holding a few
+ * entries ordered from the most to the least recently used; a new entry
+ * replaces the least recently used entry of its bucket so that the memory
+ * used is fixed when the cache is created. The cache can be saved to, and
+ * loaded from, a file so that it survives the build.</p>
+ *
+ * @author Jeremy Long
+ */
+public final class ClassVersionCache {
+
+    /**
+     * The magic number identifying a saved cache ("CFFC").
+     */
+    private static final int MAGIC = 0x43464643;
+    /**
+     * The version of the file format.
+     */
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * The size of the file header in bytes.
+     */
+    private static final int HEADER_SIZE = 12;
+    /**
+     * The number of entries in a bucket.
+     */
+    private static final int WAYS = 4;
+    /**
+     * The number of longs in an entry: the two key words and the value.
+     */
+    private static final int ENTRY_LONGS = 3;
+    /**
+     * The number of locks guarding the buckets.
+     */
+    private static final int LOCKS = 64;
+    /**
+     * The flag marking a used entry in the value word.
+     */
+    private static final long USED = 1L << 32;
+    /**
+     * The size of the buffer used to save the cache.
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    /**
+     * The FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /**
+     * The FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+    /**
+     * The caches keyed by the object that identifies the build; the keys are
+     * weakly referenced so the caches are discarded with the build.
+     */
+    private static final Map<Object, ClassVersionCache> SESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+    /**
+     * The entries; each bucket holds <code>WAYS</code> entries of
+     * <code>ENTRY_LONGS</code> longs.
+     */
+    private final long[] table;
+    /**
+     * The number of buckets; a power of two.
+     */
+    private final int buckets;
+    /**
+     * The locks guarding the buckets.
+     */
+    private final Object[] locks = new Object[LOCKS];
+    /**
+     * The file the cache is saved to; <code>null</code> if the cache is not
+     * saved.
+     */
+    private final File file;
+    /**
+     * The number of lookups answered by the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The number of lookups not answered by the cache.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * The number of entries added since the cache was loaded or saved.
+     */
+    private final LongAdder modifications = new LongAdder();
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxEntries the maximum number of entries
+     */
+    public ClassVersionCache(final int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param file the file the cache is saved to; may be <code>null</code>
+     */
+    private ClassVersionCache(final int maxEntries, final File file) {
+        final int wanted = Math.max(1, Math.min(maxEntries, 1 << 26) / WAYS);
+        buckets = Integer.bitCount(wanted) == 1 ? wanted : Integer.highestOneBit(wanted) << 1;
+        table = new long[buckets * WAYS * ENTRY_LONGS];
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+        this.file = file;
+    }
+
+    /**
+     * Returns the cache for the given build. When a file is given the cache
+     * is loaded from the file, if it exists, when first created.
+     *
+     * @param session the object identifying the build
+     * @param maxEntries the maximum number of entries
+     * @param file the file the cache is saved to; may be <code>null</code>
+     * @return the cache
+     */
+    public static ClassVersionCache forSession(final Object session, final int maxEntries, final File file) {
+        return SESSIONS.computeIfAbsent(session, k -> load(maxEntries, file));
+    }
+
+    /**
+     * Creates a cache, loading the entries saved in the file. A file that
+     * cannot be read is ignored.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param file the file the cache is saved to; may be <code>null</code>
+     * @return the cache
+     */
+    static ClassVersionCache load(final int maxEntries, final File file) {
+        final ClassVersionCache cache = new ClassVersionCache(maxEntries, file);
+        if (file == null) {
+            return cache;
+        }
+        try {
+            final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != FORMAT_VERSION
+                    || data.limit() != HEADER_SIZE + (long) data.getInt(8) * WAYS * ENTRY_LONGS * Long.BYTES) {
+                return cache;
+            }
+            //the entries of each bucket are re-added from the least to the most recently used
+            final int saved = data.getInt(8);
+            for (int bucket = 0; bucket < saved; bucket++) {
+                for (int way = WAYS - 1; way >= 0; way--) {
+                    final int offset = HEADER_SIZE + ((bucket * WAYS + way) * ENTRY_LONGS) * Long.BYTES;
+                    final long value = data.getLong(offset + 2 * Long.BYTES);
+                    if ((value & USED) != 0) {
+                        cache.put(data.getLong(offset), data.getLong(offset + Long.BYTES), value);
+                    }
+                }
+            }
+            cache.modifications.reset();
+        } catch (NoSuchFileException ex) {
+            //nothing saved yet
+        } catch (IOException ex) {
+            //an unreadable cache is rebuilt
+        }
+        return cache;
+    }
+
+    /**
+     * Computes the hash of an entry name.
+     *
+     * @param buffer the buffer containing the name
+     * @param offset the index of the name in the buffer
+     * @param length the length of the name
+     * @return the hash
+     */
+    static long nameHash(final ByteBuffer buffer, final int offset, final int length) {
+        long hash = FNV_OFFSET;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= buffer.get(i) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the cached version of a class file.
+     *
+     * @param name the hash of the entry name
+     * @param crc the CRC-32 of the entry
+     * @param compressedSize the compressed size of the entry
+     * @param uncompressedSize the uncompressed size of the entry
+     * @return the major version in the high and the minor version in the low
+     * 16 bits; or <code>-1</code> if the class file is not cached
+     */
+    public int get(final long name, final int crc, final long compressedSize, final long uncompressedSize) {
+        final long first = firstKey(crc, uncompressedSize);
+        final long second = secondKey(name, compressedSize);
+        final int bucket = bucket(first, second);
+        synchronized (locks[bucket & (LOCKS - 1)]) {
+            final int base = bucket * WAYS * ENTRY_LONGS;
+            for (int way = 0; way < WAYS; way++) {
+                final int entry = base + way * ENTRY_LONGS;
+                final long value = table[entry + 2];
+                if ((value & USED) == 0) {
+                    break;
+                }
+                if (table[entry] == first && table[entry + 1] == second) {
+                    //move the entry to the front of its bucket
+                    System.arraycopy(table, base, table, base + ENTRY_LONGS, way * ENTRY_LONGS);
+                    table[base] = first;
+                    table[base + 1] = second;
+                    table[base + 2] = value;
+                    hits.increment();
+                    return (int) value;
+                }
+            }
+        }
+        misses.increment();
+        return -1;
+    }
+
+    /**
+     * Caches the version of a class file.
+     *
+     * @param name the hash of the entry name
+     * @param crc the CRC-32 of the entry
+     * @param compressedSize the compressed size of the entry
+     * @param uncompressedSize the uncompressed size of the entry
+     * @param major the major version
+     * @param minor the minor version
+     */
+    public void put(final long name, final int crc, final long compressedSize, final long uncompressedSize,
+            final int major, final int minor) {
+        put(firstKey(crc, uncompressedSize), secondKey(name, compressedSize),
+                USED | (major & 0xFFFFL) << 16 | (minor & 0xFFFFL));
+    }
+
+    /**
+     * Adds the entry to the front of its bucket, removing the least recently
+     * used entry of a full bucket.
+     *
+     * @param first the first key word
+     * @param second the second key word
+     * @param value the value word
+     */
+    private void put(final long first, final long second, final long value) {
+        final int bucket = bucket(first, second);
+        synchronized (locks[bucket & (LOCKS - 1)]) {
+            final int base = bucket * WAYS * ENTRY_LONGS;
+            int way = 0;
+            while (way < WAYS - 1 && (table[base + way * ENTRY_LONGS + 2] & USED) != 0
+                    && (table[base + way * ENTRY_LONGS] != first || table[base + way * ENTRY_LONGS + 1] != second)) {
+                way += 1;
+            }
+            System.arraycopy(table, base, table, base + ENTRY_LONGS, way * ENTRY_LONGS);
+            table[base] = first;
+            table[base + 1] = second;
+            table[base + 2] = value;
+        }
+        modifications.increment();
+    }
+
+    /**
+     * Saves the cache to its file if entries were added since it was loaded
+     * or last saved. The cache is written to a temporary file and then moved
+     * into place so that concurrent builds never read a partial file.
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public void save() throws IOException {
+        if (file == null || modifications.sum() == 0) {
+            return;
+        }
+        modifications.reset();
+        final Path target = file.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+                buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(buckets);
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    final int base = bucket * WAYS * ENTRY_LONGS;
+                    if (buffer.remaining() < WAYS * ENTRY_LONGS * Long.BYTES) {
+                        drain(channel, buffer);
+                    }
+                    synchronized (locks[bucket & (LOCKS - 1)]) {
+                        for (int i = base; i < base + WAYS * ENTRY_LONGS; i++) {
+                            buffer.putLong(table[i]);
+                        }
+                    }
+                }
+                drain(channel, buffer);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Get the number of lookups answered by the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups not answered by the cache.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Standard to string implementation.
+     *
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses", getHits(), getMisses());
+    }
+
+    /**
+     * Combines the CRC-32 and uncompressed size into the first key word.
+     *
+     * @param crc the CRC-32
+     * @param uncompressedSize the uncompressed size
+     * @return the first key word
+     */
+    private static long firstKey(final int crc, final long uncompressedSize) {
+        return (long) crc << 32 ^ uncompressedSize;
+    }
+
+    /**
+     * Combines the name hash and compressed size into the second key word.
+     *
+     * @param name the hash of the entry name
+     * @param compressedSize the compressed size
+     * @return the second key word
+     */
+    private static long secondKey(final long name, final long compressedSize) {
+        return name ^ compressedSize * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Returns the bucket of the key.
+     *
+     * @param first the first key word
+     * @param second the second key word
+     * @return the bucket
+     */
+    private int bucket(final long first, final long second) {
+        return VersionIndex.mix(first * 31 + second) & (buckets - 1);
+    }
+
+    /**
+     * Writes the contents of the buffer to the channel and clears the buffer.
+     *
+     * @param channel the channel
+     * @param buffer the buffer
+     * @throws IOException thrown if the channel cannot be written
+     */
+    private static void drain(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+}
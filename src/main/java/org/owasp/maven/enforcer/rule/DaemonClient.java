@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Sends scan requests to a running {@link ScanDaemon}. Each request uses its
+ * own connection so the client may be used by several scanning threads.
+ *
+ * @author Jeremy Long
+ */
+final class DaemonClient {
+
+    /**
+     * The time to wait for a connection to the daemon, in milliseconds.
+     */
+    private static final int CONNECT_TIMEOUT = 1000;
+    /**
+     * The time to wait for the daemon to answer, in milliseconds.
+     */
+    private static final int READ_TIMEOUT = 60000;
+    /**
+     * The address of the daemon.
+     */
+    private final InetSocketAddress address;
+    /**
+     * The token presented with every request.
+     */
+    private final String token;
+
+    /**
+     * Constructs a new client.
+     *
+     * @param port the port of the daemon
+     * @param token the token of the daemon
+     */
+    private DaemonClient(final int port, final String token) {
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        this.token = token;
+    }
+
+    /**
+     * Connects to the daemon advertised in the given directory.
+     *
+     * @param directory the directory containing the daemon file
+     * @return the client; or <code>null</code> if no daemon is running
+     */
+    static DaemonClient connect(final File directory) {
+        try {
+            final Properties props = ScanDaemon.read(new File(directory, ScanDaemon.DAEMON_FILE).toPath());
+            if (props == null || props.getProperty("token") == null) {
+                return null;
+            }
+            final DaemonClient client = new DaemonClient(Integer.parseInt(props.getProperty("port")),
+                    props.getProperty("token"));
+            return "OK".equals(client.send("PING " + client.token)) ? client : null;
+        } catch (IOException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Asks the daemon to scan the artifact.
+     *
+     * @param artifact the artifact to scan
+     * @param nested whether or not nested archives are scanned
+     * @return the result of the scan
+     * @throws IOException thrown if the daemon cannot be reached or cannot
+     * scan the artifact
+     */
+    ScanResult scan(final File artifact, final boolean nested) throws IOException {
+        return ScanDaemon.parse(send("SCAN " + token + " " + nested + " " + artifact.getAbsolutePath()));
+    }
+
+    /**
+     * Asks the daemon to stop.
+     *
+     * @throws IOException thrown if the daemon cannot be reached
+     */
+    void stop() throws IOException {
+        send("STOP " + token);
+    }
+
+    /**
+     * Sends a request to the daemon.
+     *
+     * @param request the request line
+     * @return the response line; <code>null</code> if the daemon closed the
+     * connection without answering
+     * @throws IOException thrown if the daemon cannot be reached
+     */
+    private String send(final String request) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, CONNECT_TIMEOUT);
+            socket.setSoTimeout(READ_TIMEOUT);
+            final OutputStream out = socket.getOutputStream();
+            out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            return in.readLine();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+/**
+ * The path from the project to a dependency in the dependency graph, held as
+ * a chain of parent pointers. Dependencies that share ancestors share the
+ * same path nodes, so the paths of an entire graph take one small object per
+ * graph node; the trail of artifact ids shown in the failure message is only
+ * built for the dependencies that violate the rule.
+ *
+ * @author Jeremy Long
+ */
+final class DependencyPath {
+
+    /**
+     * The id of the artifact at the end of the path.
+     */
+    private final String id;
+    /**
+     * The path to the artifact's parent; <code>null</code> for the project.
+     */
+    private final DependencyPath parent;
+
+    /**
+     * Constructs a new path.
+     *
+     * @param id the id of the artifact at the end of the path
+     * @param parent the path to the artifact's parent; may be
+     * <code>null</code>
+     */
+    DependencyPath(final String id, final DependencyPath parent) {
+        this.id = id;
+        this.parent = parent;
+    }
+
+    /**
+     * Get the value of id.
+     *
+     * @return the value of id
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Get the value of parent.
+     *
+     * @return the value of parent
+     */
+    DependencyPath getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the artifact ids along the path, starting with the project.
+     *
+     * @return the dependency trail
+     */
+    List<String> toList() {
+        final List<String> trail = new ArrayList<>();
+        for (DependencyPath p = this; p != null; p = p.parent) {
+            trail.add(p.id);
+        }
+        Collections.reverse(trail);
+        return trail;
+    }
+
+    /**
+     * Standard to string implementation.
+     *
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return String.join(" -> ", toList());
+    }
+
+    /**
+     * Builds the paths of the nodes of a dependency graph, interning the
+     * strings of the coordinates so that each distinct value is held once.
+     * The builder is used by a single thread.
+     */
+    static final class Builder {
+
+        /**
+         * The interned strings.
+         */
+        private final Map<String, String> strings = new HashMap<>();
+        /**
+         * The paths of the graph nodes seen so far.
+         */
+        private final Map<DependencyNode, DependencyPath> paths = new IdentityHashMap<>();
+
+        /**
+         * Returns the canonical instance of the string.
+         *
+         * @param value the string; may be <code>null</code>
+         * @return the canonical instance
+         */
+        String intern(final String value) {
+            if (value == null) {
+                return null;
+            }
+            final String existing = strings.putIfAbsent(value, value);
+            return existing == null ? value : existing;
+        }
+
+        /**
+         * Returns the path from the root of the graph to the node.
+         *
+         * @param node the dependency node
+         * @return the path
+         */
+        DependencyPath pathOf(final DependencyNode node) {
+            DependencyPath path = paths.get(node);
+            if (path != null) {
+                return path;
+            }
+            //walk up to the nearest node with a known path, then build the path back down
+            final List<DependencyNode> missing = new ArrayList<>();
+            DependencyPath known = null;
+            for (DependencyNode n = node; n != null; n = n.getParent()) {
+                known = paths.get(n);
+                if (known != null) {
+                    break;
+                }
+                missing.add(n);
+            }
+            path = known;
+            for (int i = missing.size() - 1; i >= 0; i--) {
+                final DependencyNode n = missing.get(i);
+                path = new DependencyPath(intern(n.getArtifact().getId()), path);
+                paths.put(n, path);
+            }
+            return path;
+        }
+    }
+}
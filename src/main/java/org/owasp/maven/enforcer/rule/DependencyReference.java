@@ -31,6 +31,11 @@ public class DependencyReference {
      */
     private String version;
 
+    /**
+     * The classifier of the dependency; <code>null</code> if there is none.
+     */
+    private String classifier;
+
     /**
      * The path to the dependency on disk.
      */
@@ -46,6 +51,19 @@ public class DependencyReference {
      */
     private List<String> dependencyTrail;
 
+    /**
+     * The path from the project to the dependency; the trail is derived from
+     * the path when first requested.
+     */
+    private DependencyPath dependencyPath;
+
+    /**
+     * The path of the class file with the highest version found when the
+     * dependency was scanned; class files within nested archives are given as
+     * <code>BOOT-INF/lib/a.jar!/a/B.class</code>.
+     */
+    private String versionEntry;
+
     /**
      * Constructs a new dependency reference.
      *
@@ -121,6 +139,24 @@ public class DependencyReference {
         this.version = version;
     }
 
+    /**
+     * Get the value of classifier.
+     *
+     * @return the value of classifier
+     */
+    public String getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Set the value of classifier.
+     *
+     * @param classifier new value of classifier
+     */
+    public void setClassifier(final String classifier) {
+        this.classifier = classifier;
+    }
+
     /**
      * Get the value of artifactId.
      *
@@ -163,6 +199,9 @@ public class DependencyReference {
      * @return the value of dependencyTrail
      */
     public List<String> getDependencyTrail() {
+        if (dependencyTrail == null && dependencyPath != null) {
+            dependencyTrail = dependencyPath.toList();
+        }
         return dependencyTrail;
     }
 
@@ -173,6 +212,36 @@ public class DependencyReference {
      */
     public void setDependencyTrail(final List<String> dependencyTrail) {
         this.dependencyTrail = dependencyTrail;
+        this.dependencyPath = null;
+    }
+
+    /**
+     * Set the value of dependencyPath; the dependency trail is derived from
+     * the path when first requested.
+     *
+     * @param dependencyPath new value of dependencyPath
+     */
+    void setDependencyPath(final DependencyPath dependencyPath) {
+        this.dependencyPath = dependencyPath;
+        this.dependencyTrail = null;
+    }
+
+    /**
+     * Get the value of versionEntry.
+     *
+     * @return the value of versionEntry; or <code>null</code> if unknown
+     */
+    String getVersionEntry() {
+        return versionEntry;
+    }
+
+    /**
+     * Set the value of versionEntry.
+     *
+     * @param versionEntry new value of versionEntry
+     */
+    void setVersionEntry(final String versionEntry) {
+        this.versionEntry = versionEntry;
     }
 
     /**
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility methods for computing the SHA-1 digests used as cache keys.
+ *
+ * @author Jeremy Long
+ */
+final class Digests {
+
+    /**
+     * Private constructor for a utility class.
+     */
+    private Digests() {
+    }
+
+    /**
+     * Creates a new SHA-1 message digest.
+     *
+     * @return the message digest
+     */
+    static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Computes the hex encoded SHA-1 digest of the UTF-8 encoded value.
+     *
+     * @param value the value to digest
+     * @return the hex encoded digest
+     */
+    static String sha1Hex(final String value) {
+        return toHex(newSha1().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Hex encodes the data.
+     *
+     * @param data the data to encode
+     * @return the hex encoded data
+     */
+    static String toHex(final byte[] data) {
+        final StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads the class file format versions contained in a directory, such as the
+ * <code>target/classes</code> directory a reactor sibling resolves to. Only
+ * the first eight bytes of each class file are read using positional reads.
+ * The directory is walked in parallel on a fork join pool shared by the
+ * scans; each sub-directory is listed, and its changed class files read, by
+ * its own task.
+ * <p>
+ * The size, modification time, and version of every class file is persisted
+ * in an index so that later scans only read the class files that changed.
+ * The indexes are kept in a directory owned by the scanning build, i.e. the
+ * build directory of the current project, and are named by a hash of the
+ * scanned directory's path; the scanned directory, which may belong to
+ * another module, is never written to.</p>
+ *
+ * @author Jeremy Long
+ */
+public class DirectoryScanner {
+
+    /**
+     * The java class file header.
+     */
+    private static final int JAVA_CLASS_HEADER = 0xCAFEBABE;
+    /**
+     * The number of bytes of a class file needed to determine the version.
+     */
+    private static final int CLASS_HEADER_SIZE = 8;
+    /**
+     * The major version recorded for a class file that does not start with
+     * the java class header.
+     */
+    private static final int INVALID = -1;
+    /**
+     * The extension of the index files.
+     */
+    private static final String INDEX_SUFFIX = ".idx";
+    /**
+     * The buffer used by each thread to read class file headers.
+     */
+    private static final ThreadLocal<ByteBuffer> HEADER = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(CLASS_HEADER_SIZE));
+    /**
+     * The pool the directories are walked on.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * The directory the indexes are stored in; <code>null</code> if the
+     * indexes are not persisted.
+     */
+    private final File indexDirectory;
+
+    /**
+     * Constructs a new directory scanner.
+     *
+     * @param pool the pool the directories are walked on
+     * @param indexDirectory the directory the indexes are stored in;
+     * <code>null</code> if the indexes are not persisted
+     */
+    public DirectoryScanner(final ForkJoinPool pool, final File indexDirectory) {
+        this.pool = pool;
+        this.indexDirectory = indexDirectory;
+    }
+
+    /**
+     * Determines the class file format versions contained in the given
+     * directory. Class files whose size and modification time match the
+     * index are not read again.
+     *
+     * @param directory the directory to scan
+     * @return the result of the scan
+     * @throws IOException thrown if the directory cannot be read
+     */
+    public ScanResult scan(final File directory) throws IOException {
+        final Path root = directory.toPath();
+        final Path indexFile = indexDirectory == null ? null : getIndexFile(indexDirectory, directory).toPath();
+        final Properties index = indexFile == null ? new Properties() : loadIndex(indexFile);
+        final Walk walk = new Walk(root, root, index);
+        try {
+            pool.invoke(walk);
+        } catch (UncheckedIOException ex) {
+            throw ioException(ex);
+        }
+        final ScanResult result = new ScanResult();
+        for (long i = walk.entryCount.sum(); i > 0; i--) {
+            result.addEntry();
+        }
+        //the entries are ordered so that the reported class file is deterministic
+        final List<ClassEntry> entries = new ArrayList<>(walk.entries);
+        entries.sort(Comparator.comparing(e -> e.name));
+        boolean changed = false;
+        for (ClassEntry e : entries) {
+            result.addBytesRead(e.bytesRead);
+            changed |= e.read;
+            if (e.major == INVALID) {
+                result.addInvalidClass();
+            } else if (result.addVersion(e.major, e.minor)) {
+                result.setVersionEntry(e.name);
+            }
+        }
+        if (indexFile != null && (changed || index.size() != entries.size())) {
+            saveIndex(indexFile, entries);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index file of the scanned directory.
+     *
+     * @param indexDirectory the directory the indexes are stored in
+     * @param directory the scanned directory
+     * @return the index file
+     */
+    static File getIndexFile(final File indexDirectory, final File directory) {
+        return new File(indexDirectory, Digests.sha1Hex(directory.getAbsolutePath()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Returns the I/O exception thrown by a walk task. The fork join pool may
+     * rethrow a copy of the exception thrown on another thread, so the cause
+     * chain is searched.
+     *
+     * @param ex the exception thrown by the pool
+     * @return the I/O exception
+     */
+    private static IOException ioException(final UncheckedIOException ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof IOException) {
+                return (IOException) t;
+            }
+        }
+        return new IOException(ex);
+    }
+
+    /**
+     * Reads the version from the first eight bytes of the class file.
+     *
+     * @param entry the class file
+     * @throws IOException thrown if the class file cannot be read
+     */
+    private static void readHeader(final ClassEntry entry) throws IOException {
+        final ByteBuffer header = HEADER.get();
+        //cast to Buffer so that the Java 8 method signatures are used
+        ((Buffer) header).clear();
+        try (FileChannel channel = FileChannel.open(entry.path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                //read until the header is full or the end of the file
+            }
+        }
+        entry.read = true;
+        entry.bytesRead = header.position();
+        if (header.position() < CLASS_HEADER_SIZE || header.getInt(0) != JAVA_CLASS_HEADER) {
+            entry.major = INVALID;
+            entry.minor = 0;
+        } else {
+            entry.minor = header.getShort(4) & 0xFFFF;
+            entry.major = header.getShort(6) & 0xFFFF;
+        }
+    }
+
+    /**
+     * Loads the index; a missing or unreadable index is treated as empty.
+     *
+     * @param indexFile the index file
+     * @return the index
+     */
+    private static Properties loadIndex(final Path indexFile) {
+        final Properties index = new Properties();
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            index.load(in);
+        } catch (NoSuchFileException ex) {
+            //not yet indexed
+        } catch (IOException | IllegalArgumentException ex) {
+            index.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index. The index is only an optimization; if it cannot be
+     * written the next scan reads every class file.
+     *
+     * @param indexFile the index file
+     * @param entries the class files
+     */
+    private static void saveIndex(final Path indexFile, final List<ClassEntry> entries) {
+        final Properties index = new Properties();
+        for (ClassEntry e : entries) {
+            index.setProperty(e.name, e.toString());
+        }
+        try {
+            Files.createDirectories(indexFile.getParent());
+            final Path temp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    index.store(out, null);
+                }
+                try {
+                    Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            //the directory is read only; the index is not persisted
+        }
+    }
+
+    /**
+     * Lists a directory: sub-directories are walked by forked tasks, and the
+     * class files that are not in the index are read.
+     */
+    private static final class Walk extends RecursiveAction {
+
+        /**
+         * The serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * The scanned directory.
+         */
+        private final transient Path root;
+        /**
+         * The directory listed by this task.
+         */
+        private final transient Path directory;
+        /**
+         * The index of the scanned directory; only read by the tasks.
+         */
+        private final Properties index;
+        /**
+         * The class files found by this task and the tasks it forked.
+         */
+        private final Queue<ClassEntry> entries;
+        /**
+         * The number of entries visited by this task and the tasks it forked.
+         */
+        private final LongAdder entryCount;
+
+        /**
+         * Constructs the task walking the scanned directory.
+         *
+         * @param root the scanned directory
+         * @param directory the directory to list
+         * @param index the index of the scanned directory
+         */
+        Walk(final Path root, final Path directory, final Properties index) {
+            this(root, directory, index, new ConcurrentLinkedQueue<>(), new LongAdder());
+        }
+
+        /**
+         * Constructs a task walking a sub-directory.
+         *
+         * @param root the scanned directory
+         * @param directory the directory to list
+         * @param index the index of the scanned directory
+         * @param entries the class files found
+         * @param entryCount the number of entries visited
+         */
+        private Walk(final Path root, final Path directory, final Properties index, final Queue<ClassEntry> entries,
+                final LongAdder entryCount) {
+            this.root = root;
+            this.directory = directory;
+            this.index = index;
+            this.entries = entries;
+            this.entryCount = entryCount;
+        }
+
+        /**
+         * Lists the directory, forking a task for each sub-directory.
+         */
+        @Override
+        protected void compute() {
+            final List<Walk> forked = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path file : stream) {
+                    final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        final Walk walk = new Walk(root, file, index, entries, entryCount);
+                        walk.fork();
+                        forked.add(walk);
+                        continue;
+                    }
+                    entryCount.increment();
+                    final String name = root.relativize(file).toString().replace(File.separatorChar, '/');
+                    if (attrs.isRegularFile() && JarScanner.isClassFile(name)) {
+                        final ClassEntry e = new ClassEntry(file, name, attrs.size(),
+                                attrs.lastModifiedTime().toMillis());
+                        if (!e.load(index.getProperty(name))) {
+                            readHeader(e);
+                        }
+                        entries.add(e);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            for (Walk walk : forked) {
+                walk.join();
+            }
+        }
+    }
+
+    /**
+     * A class file within the scanned directory.
+     */
+    private static final class ClassEntry {
+
+        /**
+         * The path to the class file.
+         */
+        private final Path path;
+        /**
+         * The path of the class file relative to the scanned directory.
+         */
+        private final String name;
+        /**
+         * The size of the class file.
+         */
+        private final long size;
+        /**
+         * The modification time of the class file.
+         */
+        private final long modified;
+        /**
+         * The number of bytes read from the class file; zero if the version
+         * was loaded from the index.
+         */
+        private int bytesRead;
+        /**
+         * Whether or not the class file was read rather then loaded from the
+         * index.
+         */
+        private boolean read;
+        /**
+         * The major version of the class file.
+         */
+        private int major;
+        /**
+         * The minor version of the class file.
+         */
+        private int minor;
+
+        /**
+         * Constructs a new class entry.
+         *
+         * @param path the path to the class file
+         * @param name the path relative to the scanned directory
+         * @param size the size of the class file
+         * @param modified the modification time of the class file
+         */
+        ClassEntry(final Path path, final String name, final long size, final long modified) {
+            this.path = path;
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * Loads the version from the indexed value if the size and
+         * modification time are unchanged.
+         *
+         * @param value the indexed value; may be <code>null</code>
+         * @return <code>true</code> if the version was loaded
+         */
+        boolean load(final String value) {
+            if (value == null) {
+                return false;
+            }
+            final String[] parts = value.split(",");
+            try {
+                if (parts.length == 4 && Long.parseLong(parts[0]) == size && Long.parseLong(parts[1]) == modified) {
+                    major = Integer.parseInt(parts[2]);
+                    minor = Integer.parseInt(parts[3]);
+                    return true;
+                }
+            } catch (NumberFormatException ex) {
+                //re-read the class file
+            }
+            return false;
+        }
+
+        /**
+         * Returns the indexed value of the class entry.
+         *
+         * @return the indexed value
+         */
+        @Override
+        public String toString() {
+            return size + "," + modified + "," + major + "," + minor;
+        }
+    }
+}
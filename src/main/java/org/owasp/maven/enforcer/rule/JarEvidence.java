@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * The evidence about the class file format of a jar that can be gathered
+ * cheaply: the manifest, whether a <code>module-info.class</code> is present,
+ * and the versions of the first few class files.
+ *
+ * @author Jeremy Long
+ */
+public class JarEvidence {
+
+    /**
+     * The difference between a Java feature release and its class file major
+     * version.
+     */
+    private static final int MAJOR_VERSION_OFFSET = 44;
+    /**
+     * The manifest attribute containing the specification version of the JDK
+     * that built the jar.
+     */
+    private static final Attributes.Name BUILD_JDK_SPEC = new Attributes.Name("Build-Jdk-Spec");
+    /**
+     * The manifest attribute containing the version of the JDK that built the
+     * jar.
+     */
+    private static final Attributes.Name BUILD_JDK = new Attributes.Name("Build-Jdk");
+    /**
+     * The manifest attribute marking a multi-release jar.
+     */
+    private static final Attributes.Name MULTI_RELEASE = new Attributes.Name("Multi-Release");
+    /**
+     * The result of scanning the sampled class files.
+     */
+    private final ScanResult sample;
+    /**
+     * The manifest; <code>null</code> if the jar has no manifest.
+     */
+    private final Manifest manifest;
+    /**
+     * Whether or not the jar contains a <code>module-info.class</code>.
+     */
+    private final boolean moduleInfo;
+
+    /**
+     * Constructs the evidence gathered from a jar.
+     *
+     * @param sample the result of scanning the sampled class files; the result
+     * is complete if every class file was sampled
+     * @param manifest the manifest; may be <code>null</code>
+     * @param moduleInfo whether or not the jar contains a
+     * <code>module-info.class</code>
+     */
+    JarEvidence(final ScanResult sample, final Manifest manifest, final boolean moduleInfo) {
+        this.sample = sample;
+        this.manifest = manifest;
+        this.moduleInfo = moduleInfo;
+    }
+
+    /**
+     * Get the value of sample. The sample is complete when every class file
+     * of the jar was inspected, in which case it is equivalent to a full
+     * scan.
+     *
+     * @return the value of sample
+     */
+    public ScanResult getSample() {
+        return sample;
+    }
+
+    /**
+     * Get the value of manifest.
+     *
+     * @return the value of manifest; or <code>null</code> if the jar has no
+     * manifest
+     */
+    public Manifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Returns whether or not the jar contains a <code>module-info.class</code>.
+     *
+     * @return <code>true</code> if the jar contains a module descriptor
+     */
+    public boolean hasModuleInfo() {
+        return moduleInfo;
+    }
+
+    /**
+     * Returns whether or not the manifest marks the jar as a multi-release
+     * jar.
+     *
+     * @return <code>true</code> if the jar is a multi-release jar
+     */
+    public boolean isMultiRelease() {
+        return manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(MULTI_RELEASE));
+    }
+
+    /**
+     * Returns the highest class file major version that the JDK recorded in
+     * the manifest (<code>Build-Jdk-Spec</code> or <code>Build-Jdk</code>)
+     * can produce. Note that the JDK that ran the build is not necessarily
+     * the JDK that compiled the classes (i.e. when a toolchain is used).
+     *
+     * @return the class file major version; or <code>-1</code> if the
+     * manifest does not record the JDK
+     */
+    public int getBuildJdkMajorVersion() {
+        if (manifest == null) {
+            return -1;
+        }
+        final Attributes attributes = manifest.getMainAttributes();
+        final int major = toMajorVersion(attributes.getValue(BUILD_JDK_SPEC));
+        return major > 0 ? major : toMajorVersion(attributes.getValue(BUILD_JDK));
+    }
+
+    /**
+     * Converts a Java version (i.e. <code>1.8</code>,
+     * <code>1.8.0_292</code>, <code>11</code>, or <code>17.0.1+12</code>) to
+     * the class file major version of its feature release.
+     *
+     * @param version the Java version; may be <code>null</code>
+     * @return the class file major version; or <code>-1</code> if the version
+     * cannot be parsed
+     */
+    static int toMajorVersion(final String version) {
+        if (version == null) {
+            return -1;
+        }
+        String value = version.trim();
+        if (value.startsWith("1.")) {
+            value = value.substring(2);
+        }
+        int end = 0;
+        while (end < value.length() && end < 4 && Character.isDigit(value.charAt(end))) {
+            end += 1;
+        }
+        if (end == 0) {
+            return -1;
+        }
+        final int feature = Integer.parseInt(value.substring(0, end));
+        return feature < 1 ? -1 : feature + MAJOR_VERSION_OFFSET;
+    }
+}
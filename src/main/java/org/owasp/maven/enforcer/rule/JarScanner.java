@@ -0,0 +1,1576 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the class file format versions contained in a jar file. Rather than
+ * inflating the entire archive the central directory is read and only the
+ * first eight bytes of each class file are extracted using positional reads.
+ * Archives whose central directory cannot be read are inspected using a
+ * <code>JarInputStream</code> instead.
+ * <p>
+ * When enabled, archives nested within the archive (i.e. the libraries of a
+ * WAR or a Spring Boot executable jar) are scanned as well without extracting
+ * them: stored nested archives are read in place using the same positional
+ * reads while deflated nested archives are streamed. Class files found in a
+ * nested archive are reported as <code>WEB-INF/lib/a.jar!/a/B.class</code>.</p>
+ *
+ * @author Jeremy Long
+ */
+public class JarScanner {
+
+    /**
+     * The java class file header.
+     */
+    private static final int JAVA_CLASS_HEADER = 0xCAFEBABE;
+    /**
+     * The number of bytes of a class file needed to determine the version.
+     */
+    private static final int CLASS_HEADER_SIZE = 8;
+    /**
+     * The end of central directory record signature.
+     */
+    private static final int END_SIGNATURE = 0x06054b50;
+    /**
+     * The size of the end of central directory record, excluding the
+     * comment.
+     */
+    private static final int END_SIZE = 22;
+    /**
+     * The maximum length of the archive comment.
+     */
+    private static final int MAX_COMMENT = 0xFFFF;
+    /**
+     * The zip64 end of central directory locator signature.
+     */
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    /**
+     * The size of the zip64 end of central directory locator.
+     */
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    /**
+     * The zip64 end of central directory record signature.
+     */
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    /**
+     * The size of the zip64 end of central directory record, excluding the
+     * extensible data.
+     */
+    private static final int ZIP64_END_SIZE = 56;
+    /**
+     * The header id of the zip64 extended information extra field.
+     */
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    /**
+     * The central directory file header signature.
+     */
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    /**
+     * The size of a central directory file header, excluding the variable
+     * length fields.
+     */
+    private static final int CENTRAL_SIZE = 46;
+    /**
+     * The local file header signature.
+     */
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    /**
+     * The size of a local file header, excluding the variable length fields.
+     */
+    private static final int LOCAL_SIZE = 30;
+    /**
+     * The value used by 32 bit fields to indicate the zip64 value is used.
+     */
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    /**
+     * The value used by 16 bit fields to indicate the zip64 value is used.
+     */
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    /**
+     * The general purpose flag indicating the entry is encrypted.
+     */
+    private static final int FLAG_ENCRYPTED = 0x1;
+    /**
+     * The stored (uncompressed) compression method.
+     */
+    private static final int STORED = 0;
+    /**
+     * The deflated compression method.
+     */
+    private static final int DEFLATED = 8;
+    /**
+     * The number of compressed bytes read at a time while inflating a class
+     * file header.
+     */
+    private static final int INFLATE_CHUNK = 512;
+    /**
+     * The initial size of the window used to read the central directory.
+     */
+    private static final int WINDOW_SIZE = 128 * 1024;
+    /**
+     * The size of the buffer used when streaming a nested archive.
+     */
+    private static final int STREAM_BUFFER = 8192;
+    /**
+     * The maximum depth of nested archives that are scanned; as each streamed
+     * level holds an inflater and buffers this bounds the memory used.
+     */
+    private static final int MAX_NESTING_DEPTH = 8;
+    /**
+     * The separator between the path of a nested archive and its entries.
+     */
+    private static final String NESTED_SEPARATOR = "!/";
+    /**
+     * The class file name suffix.
+     */
+    private static final byte[] CLASS_SUFFIX = ascii(".class");
+    /**
+     * The module info class file name suffix.
+     */
+    private static final byte[] MODULE_INFO_SUFFIX = ascii("module-info.class");
+    /**
+     * The name of the module descriptor at the root of an archive.
+     */
+    private static final byte[] MODULE_INFO_NAME = ascii("module-info.class");
+    /**
+     * The name of the manifest.
+     */
+    private static final byte[] MANIFEST_NAME = ascii("META-INF/MANIFEST.MF");
+    /**
+     * The largest manifest that is read when gathering evidence.
+     */
+    private static final int MAX_MANIFEST_SIZE = 1024 * 1024;
+    /**
+     * The size of the fields of an entry included in a content fingerprint:
+     * the name length, CRC-32, compressed and uncompressed size, and
+     * compression method.
+     */
+    private static final int FINGERPRINT_FIELDS_SIZE = 24;
+    /**
+     * The multi-release versions directory prefix.
+     */
+    private static final byte[] VERSIONS_PREFIX = ascii("META-INF/versions");
+    /**
+     * The name suffixes of the archives that may be nested.
+     */
+    private static final byte[][] ARCHIVE_SUFFIXES = {ascii(".jar"), ascii(".war"), ascii(".ear")};
+    /**
+     * The buffers used by each scanning thread; released by
+     * {@link #releaseBuffers()} when the thread is done scanning.
+     */
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<>();
+    /**
+     * Whether or not archives nested within the scanned archive are scanned.
+     */
+    private boolean scanNestedArchives = false;
+
+    /**
+     * Get the value of scanNestedArchives.
+     *
+     * @return the value of scanNestedArchives
+     */
+    public boolean isScanNestedArchives() {
+        return scanNestedArchives;
+    }
+
+    /**
+     * Set the value of scanNestedArchives.
+     *
+     * @param scanNestedArchives new value of scanNestedArchives
+     */
+    public void setScanNestedArchives(final boolean scanNestedArchives) {
+        this.scanNestedArchives = scanNestedArchives;
+    }
+
+    /**
+     * The cache of the versions of individual class files; <code>null</code>
+     * if the versions are not cached.
+     */
+    private volatile ClassVersionCache classCache;
+
+    /**
+     * Get the value of classCache.
+     *
+     * @return the value of classCache
+     */
+    public ClassVersionCache getClassCache() {
+        return classCache;
+    }
+
+    /**
+     * Set the value of classCache. When set, a class file whose entry in the
+     * central directory matches a cached entry is not read.
+     *
+     * @param classCache new value of classCache; may be <code>null</code>
+     */
+    public void setClassCache(final ClassVersionCache classCache) {
+        this.classCache = classCache;
+    }
+
+    /**
+     * Determines the class file format versions contained in the given jar.
+     * The scan stops at the first class file whose major version exceeds the
+     * given limit.
+     *
+     * @param file the jar file to scan
+     * @param limit the maximum major version allowed; use
+     * <code>Integer.MAX_VALUE</code> to inspect every class file
+     * @return the result of the scan
+     * @throws IOException thrown if the jar cannot be read
+     */
+    public ScanResult scan(final File file, final int limit) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return scan(channel, limit);
+        } catch (ZipException ex) {
+            return scanStreaming(file, limit);
+        }
+    }
+
+    /**
+     * Determines the class file format versions contained in the given jar by
+     * reading every entry with a <code>JarInputStream</code>.
+     *
+     * @param file the jar file to scan
+     * @param limit the maximum major version allowed; use
+     * <code>Integer.MAX_VALUE</code> to inspect every class file
+     * @return the result of the scan
+     * @throws IOException thrown if the jar cannot be read
+     */
+    public ScanResult scanStreaming(final File file, final int limit) throws IOException {
+        final ScanResult result = new ScanResult();
+        try (FileInputStream fis = new FileInputStream(file);
+                BufferedInputStream bis = new BufferedInputStream(fis);
+                JarInputStream jarInput = new JarInputStream(bis)) {
+            scan(jarInput, "", 0, limit, result);
+            result.addBytesRead(fis.getChannel().position());
+        }
+        return result;
+    }
+
+    /**
+     * Gathers the evidence that can be read from the jar cheaply: the
+     * manifest, whether a <code>module-info.class</code> is present, and the
+     * versions of the first class files listed in the central directory. The
+     * sample stops at the first class file whose major version exceeds the
+     * given limit; the sample is complete only if every class file (and no
+     * nested archive that would be scanned) was found in the jar.
+     *
+     * @param file the jar file to inspect
+     * @param limit the maximum major version allowed
+     * @param sampleSize the maximum number of class files to read
+     * @return the evidence
+     * @throws IOException thrown if the jar cannot be read
+     */
+    public JarEvidence inspect(final File file, final int limit, final int sampleSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return inspect(channel, limit, sampleSize);
+        } catch (ZipException ex) {
+            return inspectStreaming(file, limit, sampleSize);
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the content of a jar from its central
+     * directory: the name, CRC-32, sizes, and compression method of every
+     * entry. Only the central directory is read; jars containing the same
+     * entries, such as a relocated artifact or a re-publication under other
+     * coordinates, have the same fingerprint regardless of their path or
+     * modification time.
+     *
+     * @param file the jar file
+     * @return the hex encoded fingerprint; or <code>null</code> if the central
+     * directory cannot be used
+     * @throws IOException thrown if the jar cannot be read
+     */
+    public String fingerprint(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final Buffers buffers = buffers();
+            try {
+                final MessageDigest md = Digests.newSha1();
+                final ByteBuffer fields = ByteBuffer.allocate(FINGERPRINT_FIELDS_SIZE);
+                final CentralDirectory directory = CentralDirectory.open(channel, 0, channel.size(), buffers);
+                while (directory.next()) {
+                    directory.readEntry();
+                    ((Buffer) fields).clear();
+                    fields.putShort((short) directory.nameLength).putInt(directory.crc())
+                            .putLong(directory.compressedSize).putLong(directory.uncompressedSize)
+                            .putShort((short) directory.method);
+                    md.update(fields.array(), 0, fields.position());
+                    final ByteBuffer name = directory.window.duplicate();
+                    ((Buffer) name).limit(directory.nameOffset() + directory.nameLength)
+                            .position(directory.nameOffset());
+                    md.update(name);
+                }
+                return Digests.toHex(md.digest());
+            } finally {
+                buffers.release();
+            }
+        } catch (ZipException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Gathers the evidence from an archive whose central directory cannot be
+     * used; only the sampled class files are read and the manifest is not
+     * reported.
+     *
+     * @param file the jar file to inspect
+     * @param limit the maximum major version allowed
+     * @param sampleSize the maximum number of class files to read
+     * @return the evidence
+     * @throws IOException thrown if the jar cannot be read
+     */
+    private JarEvidence inspectStreaming(final File file, final int limit, final int sampleSize) throws IOException {
+        final ScanResult sample = new ScanResult();
+        try (FileInputStream fis = new FileInputStream(file);
+                ZipInputStream zipInput = new ZipInputStream(new BufferedInputStream(fis))) {
+            final DataInputStream in = new DataInputStream(zipInput);
+            ZipEntry entry = zipInput.getNextEntry();
+            while (entry != null) {
+                sample.addEntry();
+                final String name = entry.getName();
+                if (!entry.isDirectory() && isClassFile(name)) {
+                    if (sample.getClassCount() + sample.getInvalidClassCount() >= sampleSize) {
+                        sample.stop();
+                        break;
+                    }
+                    if (in.readInt() != JAVA_CLASS_HEADER) {
+                        sample.addInvalidClass();
+                    } else {
+                        final int minor = in.readUnsignedShort();
+                        final int major = in.readUnsignedShort();
+                        if (sample.addVersion(major, minor)) {
+                            sample.setVersionEntry(name);
+                        }
+                        if (major > limit) {
+                            sample.stop();
+                            break;
+                        }
+                    }
+                } else if (!entry.isDirectory() && isNestedArchive(name, 0)) {
+                    sample.stop();
+                }
+                entry = zipInput.getNextEntry();
+            }
+            sample.addBytesRead(fis.getChannel().position());
+        }
+        return new JarEvidence(sample, null, false);
+    }
+
+    /**
+     * Gathers the evidence from the central directory of the archive.
+     *
+     * @param channel the channel to read the archive from
+     * @param limit the maximum major version allowed
+     * @param sampleSize the maximum number of class files to read
+     * @return the evidence
+     * @throws IOException thrown if the archive cannot be read
+     * @throws ZipException thrown if the central directory cannot be used
+     */
+    private JarEvidence inspect(final FileChannel channel, final int limit, final int sampleSize)
+            throws IOException {
+        final Buffers buffers = buffers();
+        try {
+            final ScanResult sample = new ScanResult();
+            buffers.bytesRead = 0;
+            boolean moduleInfo = false;
+            byte[] manifest = null;
+            final CentralDirectory directory = CentralDirectory.open(channel, 0, channel.size(), buffers);
+            while (directory.next()) {
+                sample.addEntry();
+                final ByteBuffer window = directory.window;
+                final int offset = directory.nameOffset();
+                final int length = directory.nameLength;
+                if (equals(window, offset, length, MODULE_INFO_NAME)) {
+                    moduleInfo = true;
+                } else if (manifest == null && equals(window, offset, length, MANIFEST_NAME)) {
+                    directory.readEntry();
+                    manifest = readEntry(channel, directory, buffers);
+                } else if (isClassFile(window, offset, length)) {
+                    if (sample.getClassCount() + sample.getInvalidClassCount() >= sampleSize) {
+                        //the remaining entries are only checked for the manifest and module descriptor
+                        sample.stop();
+                    } else {
+                        directory.readEntry();
+                        if (readVersion(channel, directory, "", sample, buffers) > limit) {
+                            sample.stop();
+                            break;
+                        }
+                    }
+                } else if (isNestedArchive(window, offset, length, 0)) {
+                    sample.stop();
+                }
+            }
+            sample.addBytesRead(buffers.bytesRead);
+            return new JarEvidence(sample, parseManifest(manifest), moduleInfo);
+        } finally {
+            buffers.release();
+        }
+    }
+
+    /**
+     * Parses the manifest; a manifest that cannot be parsed is ignored.
+     *
+     * @param data the content of the manifest; may be <code>null</code>
+     * @return the manifest; or <code>null</code> if there is no valid manifest
+     */
+    private static Manifest parseManifest(final byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return new Manifest(new ByteArrayInputStream(data));
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the entire content of the current entry of the central directory.
+     *
+     * @param channel the channel to read the archive from
+     * @param directory the central directory positioned at the entry
+     * @param buffers the calling thread's buffers
+     * @return the content; or <code>null</code> if the entry is too large to
+     * be read
+     * @throws IOException thrown if the entry cannot be read
+     */
+    private static byte[] readEntry(final FileChannel channel, final CentralDirectory directory,
+            final Buffers buffers) throws IOException {
+        if (directory.uncompressedSize > MAX_MANIFEST_SIZE || directory.compressedSize > MAX_MANIFEST_SIZE) {
+            return null;
+        }
+        final long dataOffset = dataOffset(channel, directory.localHeader(), buffers);
+        final byte[] data = new byte[(int) directory.uncompressedSize];
+        if (directory.method == STORED) {
+            if (directory.compressedSize != data.length) {
+                throw new ZipException("Invalid stored entry size");
+            }
+            read(channel, ByteBuffer.wrap(data), dataOffset, data.length);
+            buffers.bytesRead += data.length;
+            return data;
+        }
+        if (directory.method != DEFLATED) {
+            throw new ZipException("Unsupported compression method " + directory.method);
+        }
+        final Inflater inflater = buffers.inflater;
+        inflater.reset();
+        int produced = 0;
+        long consumed = 0;
+        try {
+            while (produced < data.length && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (consumed >= directory.compressedSize) {
+                        throw new EOFException("Unexpected end of entry");
+                    }
+                    final int length = (int) Math.min(INFLATE_CHUNK, directory.compressedSize - consumed);
+                    read(channel, buffers.input, dataOffset + consumed, length);
+                    buffers.bytesRead += length;
+                    inflater.setInput(buffers.input.array(), 0, length);
+                    consumed += length;
+                }
+                produced += inflater.inflate(data, produced, data.length - produced);
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Invalid deflate stream");
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new ZipException(ex.getMessage());
+        }
+        if (produced < data.length) {
+            throw new ZipException("Invalid entry size");
+        }
+        return data;
+    }
+
+    /**
+     * Scans the class files of a streamed archive.
+     *
+     * @param zipInput the archive
+     * @param prefix the path of the archive when nested; otherwise an empty
+     * string
+     * @param depth the nesting depth of the archive
+     * @param limit the maximum major version allowed
+     * @param result the result to record the class file versions in
+     * @return <code>true</code> if the scan stopped because the limit was
+     * exceeded
+     * @throws IOException thrown if the archive cannot be read
+     */
+    private boolean scan(final ZipInputStream zipInput, final String prefix, final int depth, final int limit,
+            final ScanResult result) throws IOException {
+        final DataInputStream in = new DataInputStream(zipInput);
+        ZipEntry entry = zipInput.getNextEntry();
+        while (entry != null) {
+            result.addEntry();
+            final String name = entry.getName();
+            if (!entry.isDirectory() && isClassFile(name)) {
+                int magic = in.readInt();
+                if (magic != JAVA_CLASS_HEADER) {
+                    result.addInvalidClass();
+                } else {
+                    int minor = in.readUnsignedShort();
+                    int major = in.readUnsignedShort();
+                    if (result.addVersion(major, minor)) {
+                        result.setVersionEntry(prefix + name);
+                    }
+                    if (major > limit) {
+                        result.stop();
+                        return true;
+                    }
+                }
+            } else if (!entry.isDirectory() && isNestedArchive(name, depth)) {
+                final ZipInputStream nested = new ZipInputStream(new NonClosingInputStream(zipInput));
+                try {
+                    if (scan(nested, prefix + name + NESTED_SEPARATOR, depth + 1, limit, result)) {
+                        return true;
+                    }
+                } catch (ZipException | EOFException ex) {
+                    result.addInvalidArchive();
+                } finally {
+                    nested.close();
+                }
+            }
+            entry = zipInput.getNextEntry();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the buffers of the calling thread, allocating them on first use.
+     *
+     * @return the buffers of the calling thread
+     */
+    private static Buffers buffers() {
+        Buffers buffers = BUFFERS.get();
+        if (buffers == null) {
+            buffers = new Buffers();
+            BUFFERS.set(buffers);
+        }
+        return buffers;
+    }
+
+    /**
+     * Releases the buffers of the calling thread and ends its inflater so
+     * that the native memory is freed when the thread is done scanning rather
+     * then when the thread is garbage collected. The buffers are allocated
+     * again if the thread scans another archive.
+     */
+    static void releaseBuffers() {
+        final Buffers buffers = BUFFERS.get();
+        if (buffers != null) {
+            BUFFERS.remove();
+            buffers.inflater.end();
+        }
+    }
+
+    /**
+     * Returns whether or not the calling thread holds scan buffers.
+     *
+     * @return <code>true</code> if the calling thread holds scan buffers
+     */
+    static boolean hasBuffers() {
+        return BUFFERS.get() != null;
+    }
+
+    /**
+     * Encodes the value as ASCII bytes.
+     *
+     * @param value the value to encode
+     * @return the encoded value
+     */
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Determines whether or not the entry name is a class file that should be
+     * inspected.
+     *
+     * @param name the entry name
+     * @return <code>true</code> if the class file should be inspected
+     */
+    static boolean isClassFile(final String name) {
+        return name.endsWith(".class")
+                //skip module info per issue #1
+                && !name.endsWith("module-info.class")
+                && !name.startsWith("META-INF/versions");
+    }
+
+    /**
+     * Determines whether or not the entry name, stored in the buffer, is a
+     * class file that should be inspected. The name is compared byte by byte
+     * so that a String does not need to be created for every entry.
+     *
+     * @param buffer the buffer containing the name
+     * @param offset the offset of the name
+     * @param length the length of the name
+     * @return <code>true</code> if the class file should be inspected
+     */
+    static boolean isClassFile(final ByteBuffer buffer, final int offset, final int length) {
+        return endsWith(buffer, offset, length, CLASS_SUFFIX)
+                //skip module info per issue #1
+                && !endsWith(buffer, offset, length, MODULE_INFO_SUFFIX)
+                && !startsWith(buffer, offset, length, VERSIONS_PREFIX);
+    }
+
+    /**
+     * Determines whether or not the entry is a nested archive that should be
+     * scanned.
+     *
+     * @param name the entry name
+     * @param depth the nesting depth of the archive containing the entry
+     * @return <code>true</code> if the nested archive should be scanned
+     */
+    private boolean isNestedArchive(final String name, final int depth) {
+        return scanNestedArchives && depth < MAX_NESTING_DEPTH
+                && (name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear"));
+    }
+
+    /**
+     * Determines whether or not the entry, whose name is stored in the buffer,
+     * is a nested archive that should be scanned.
+     *
+     * @param buffer the buffer containing the name
+     * @param offset the offset of the name
+     * @param length the length of the name
+     * @param depth the nesting depth of the archive containing the entry
+     * @return <code>true</code> if the nested archive should be scanned
+     */
+    private boolean isNestedArchive(final ByteBuffer buffer, final int offset, final int length, final int depth) {
+        if (!scanNestedArchives || depth >= MAX_NESTING_DEPTH) {
+            return false;
+        }
+        for (byte[] suffix : ARCHIVE_SUFFIXES) {
+            if (endsWith(buffer, offset, length, suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the name stored in the buffer ends with the suffix.
+     *
+     * @param buffer the buffer containing the name
+     * @param offset the offset of the name
+     * @param length the length of the name
+     * @param suffix the ASCII suffix
+     * @return <code>true</code> if the name ends with the suffix
+     */
+    private static boolean endsWith(final ByteBuffer buffer, final int offset, final int length, final byte[] suffix) {
+        if (length < suffix.length) {
+            return false;
+        }
+        final int start = offset + length - suffix.length;
+        for (int i = 0; i < suffix.length; i++) {
+            if (buffer.get(start + i) != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the name stored in the buffer equals the given name.
+     *
+     * @param buffer the buffer containing the name
+     * @param offset the offset of the name
+     * @param length the length of the name
+     * @param name the ASCII name
+     * @return <code>true</code> if the names are equal
+     */
+    private static boolean equals(final ByteBuffer buffer, final int offset, final int length, final byte[] name) {
+        return length == name.length && startsWith(buffer, offset, length, name);
+    }
+
+    /**
+     * Determines whether the name stored in the buffer starts with the prefix.
+     *
+     * @param buffer the buffer containing the name
+     * @param offset the offset of the name
+     * @param length the length of the name
+     * @param prefix the ASCII prefix
+     * @return <code>true</code> if the name starts with the prefix
+     */
+    private static boolean startsWith(final ByteBuffer buffer, final int offset, final int length, final byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the entry name stored in the buffer.
+     *
+     * @param buffer the buffer containing the name
+     * @param offset the offset of the name
+     * @param length the length of the name
+     * @return the entry name
+     */
+    private static String name(final ByteBuffer buffer, final int offset, final int length) {
+        final byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = buffer.get(offset + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scans the class files listed in the central directory of the archive.
+     * The reads are performed using the calling thread's pooled buffers and
+     * inflater so that, other than the result, scanning an archive does not
+     * allocate memory proportional to the number of entries.
+     *
+     * @param channel the channel to read the archive from
+     * @param limit the maximum major version allowed
+     * @return the result of the scan
+     * @throws IOException thrown if the archive cannot be read
+     * @throws ZipException thrown if the central directory cannot be used
+     */
+    private ScanResult scan(final FileChannel channel, final int limit) throws IOException {
+        final Buffers buffers = buffers();
+        try {
+            final ScanResult result = new ScanResult();
+            buffers.bytesRead = 0;
+            scan(channel, 0, channel.size(), "", 0, limit, result, buffers);
+            result.addBytesRead(buffers.bytesRead);
+            return result;
+        } finally {
+            buffers.release();
+        }
+    }
+
+    /**
+     * Scans the class files listed in the central directory of an archive
+     * occupying the given region of the channel; a nested archive that is
+     * stored occupies a region of the outer archive.
+     *
+     * @param channel the channel to read the archive from
+     * @param start the position of the first byte of the archive
+     * @param size the size of the archive
+     * @param prefix the path of the archive when nested; otherwise an empty
+     * string
+     * @param depth the nesting depth of the archive
+     * @param limit the maximum major version allowed
+     * @param result the result to record the class file versions in
+     * @param buffers the calling thread's buffers
+     * @return <code>true</code> if the scan stopped because the limit was
+     * exceeded
+     * @throws IOException thrown if the archive cannot be read
+     * @throws ZipException thrown if the central directory cannot be used
+     */
+    private boolean scan(final FileChannel channel, final long start, final long size, final String prefix,
+            final int depth, final int limit, final ScanResult result, final Buffers buffers) throws IOException {
+        final CentralDirectory directory = CentralDirectory.open(channel, start, size, buffers);
+        while (directory.next()) {
+            result.addEntry();
+            final ByteBuffer window = directory.window;
+            final boolean classFile = isClassFile(window, directory.nameOffset(), directory.nameLength);
+            if (classFile || isNestedArchive(window, directory.nameOffset(), directory.nameLength, depth)) {
+                directory.readEntry();
+                if (!classFile) {
+                    final String nested = prefix + directory.name() + NESTED_SEPARATOR;
+                    if (scanNested(channel, directory.localHeader(), directory.method, directory.compressedSize,
+                            nested, depth + 1, limit, result, buffers)) {
+                        return true;
+                    }
+                } else if (readVersion(channel, directory, prefix, result, buffers) > limit) {
+                    result.stop();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the version of the class file at the current entry of the
+     * central directory and records it in the result. When a class cache is
+     * set the version is taken from the cache if the entry's name, CRC-32,
+     * and sizes match a cached entry.
+     *
+     * @param channel the channel to read the archive from
+     * @param directory the central directory positioned at the class file
+     * @param prefix the path of the archive when nested; otherwise an empty
+     * string
+     * @param result the result to record the class file version in
+     * @param buffers the calling thread's buffers
+     * @return the major version of the class file; or <code>-1</code> if the
+     * class file is invalid
+     * @throws IOException thrown if the class file cannot be read
+     */
+    private int readVersion(final FileChannel channel, final CentralDirectory directory, final String prefix,
+            final ScanResult result, final Buffers buffers) throws IOException {
+        final ClassVersionCache cache = classCache;
+        long name = 0;
+        if (cache != null) {
+            name = ClassVersionCache.nameHash(directory.window, directory.nameOffset(), directory.nameLength);
+            final int cached = cache.get(name, directory.crc(), directory.compressedSize,
+                    directory.uncompressedSize);
+            if (cached >= 0) {
+                return addVersion(cached >>> 16, cached & 0xFFFF, directory, prefix, result);
+            }
+        }
+        final int read = readClassHeader(channel, directory.localHeader(), directory.method,
+                directory.compressedSize, buffers);
+        final byte[] header = buffers.output;
+        if (read < CLASS_HEADER_SIZE || bigEndianInt(header, 0) != JAVA_CLASS_HEADER) {
+            result.addInvalidClass();
+            return -1;
+        }
+        final int minor = bigEndianShort(header, 4);
+        final int major = bigEndianShort(header, 6);
+        if (cache != null) {
+            cache.put(name, directory.crc(), directory.compressedSize, directory.uncompressedSize, major, minor);
+        }
+        return addVersion(major, minor, directory, prefix, result);
+    }
+
+    /**
+     * Records the version of the class file at the current entry of the
+     * central directory in the result.
+     *
+     * @param major the major version
+     * @param minor the minor version
+     * @param directory the central directory positioned at the class file
+     * @param prefix the path of the archive when nested; otherwise an empty
+     * string
+     * @param result the result to record the class file version in
+     * @return the major version
+     */
+    private static int addVersion(final int major, final int minor, final CentralDirectory directory,
+            final String prefix, final ScanResult result) {
+        if (result.addVersion(major, minor)) {
+            result.setVersionEntry(prefix + directory.name());
+        }
+        return major;
+    }
+
+    /**
+     * Scans an archive nested within the archive being scanned. A stored
+     * nested archive is scanned in place using its central directory; a
+     * deflated nested archive, or one whose central directory cannot be used,
+     * is streamed. Nested archives that cannot be read are recorded in the
+     * result rather than failing the scan of the outer archive.
+     *
+     * @param channel the channel to read the outer archive from
+     * @param localOffset the position of the nested archive's local file
+     * header
+     * @param method the compression method of the nested archive
+     * @param compressedSize the compressed size of the nested archive
+     * @param prefix the path of the nested archive
+     * @param depth the nesting depth of the nested archive
+     * @param limit the maximum major version allowed
+     * @param result the result to record the class file versions in
+     * @param buffers the calling thread's buffers
+     * @return <code>true</code> if the scan stopped because the limit was
+     * exceeded
+     * @throws IOException thrown if the outer archive cannot be read
+     */
+    private boolean scanNested(final FileChannel channel, final long localOffset, final int method,
+            final long compressedSize, final String prefix, final int depth, final int limit,
+            final ScanResult result, final Buffers buffers) throws IOException {
+        try {
+            final long dataOffset = dataOffset(channel, localOffset, buffers);
+            if (method == STORED) {
+                try {
+                    return scan(channel, dataOffset, compressedSize, prefix, depth, limit, result, buffers);
+                } catch (ZipException ex) {
+                    //stream the nested archive instead
+                }
+                try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(
+                        new ChannelInputStream(channel, dataOffset, compressedSize, buffers), STREAM_BUFFER))) {
+                    return scan(in, prefix, depth, limit, result);
+                }
+            }
+            if (method != DEFLATED) {
+                throw new ZipException("Unsupported compression method " + method);
+            }
+            final Inflater inflater = new Inflater(true);
+            try (ZipInputStream in = new ZipInputStream(new InflaterInputStream(
+                    new ChannelInputStream(channel, dataOffset, compressedSize, buffers), inflater, STREAM_BUFFER))) {
+                return scan(in, prefix, depth, limit, result);
+            } finally {
+                inflater.end();
+            }
+        } catch (ZipException | EOFException ex) {
+            result.addInvalidArchive();
+            return false;
+        }
+    }
+
+    /**
+     * Locates the zip64 extended information extra field.
+     *
+     * @param buffer the buffer containing the central directory file header
+     * @param offset the offset of the extra field data
+     * @param length the length of the extra field data
+     * @return the offset of the zip64 extra field header
+     * @throws ZipException thrown if the extra field is missing
+     */
+    private static int findZip64Extra(final ByteBuffer buffer, final int offset, final int length) throws ZipException {
+        int pos = offset;
+        while (pos + 4 <= offset + length) {
+            if (unsignedShort(buffer, pos) == ZIP64_EXTRA_ID) {
+                return pos;
+            }
+            pos += 4 + unsignedShort(buffer, pos + 2);
+        }
+        throw new ZipException("Missing zip64 extra field");
+    }
+
+    /**
+     * Reads the first bytes of an entry's data into the output array of the
+     * buffers.
+     *
+     * @param channel the channel to read the archive from
+     * @param localOffset the position of the entry's local file header
+     * @param method the compression method
+     * @param compressedSize the compressed size of the entry
+     * @param buffers the calling thread's buffers
+     * @return the number of bytes read into the output array
+     * @throws IOException thrown if the entry cannot be read
+     */
+    private static int readClassHeader(final FileChannel channel, final long localOffset, final int method,
+            final long compressedSize, final Buffers buffers) throws IOException {
+        final long dataOffset = dataOffset(channel, localOffset, buffers);
+        final byte[] output = buffers.output;
+        if (method == STORED) {
+            final int length = (int) Math.min(output.length, compressedSize);
+            read(channel, buffers.header, dataOffset, length);
+            buffers.bytesRead += length;
+            for (int i = 0; i < length; i++) {
+                output[i] = buffers.header.get(i);
+            }
+            return length;
+        }
+        if (method != DEFLATED) {
+            throw new ZipException("Unsupported compression method " + method);
+        }
+        final Inflater inflater = buffers.inflater;
+        inflater.reset();
+        int produced = 0;
+        long consumed = 0;
+        try {
+            while (produced < output.length && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (consumed >= compressedSize) {
+                        break;
+                    }
+                    final int length = (int) Math.min(INFLATE_CHUNK, compressedSize - consumed);
+                    read(channel, buffers.input, dataOffset + consumed, length);
+                    buffers.bytesRead += length;
+                    inflater.setInput(buffers.input.array(), 0, length);
+                    consumed += length;
+                }
+                produced += inflater.inflate(output, produced, output.length - produced);
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Invalid deflate stream");
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new ZipException(ex.getMessage());
+        }
+        return produced;
+    }
+
+    /**
+     * Reads the local file header of an entry to determine the position of
+     * the entry's data.
+     *
+     * @param channel the channel to read the archive from
+     * @param localOffset the position of the entry's local file header
+     * @param buffers the calling thread's buffers
+     * @return the position of the entry's data
+     * @throws IOException thrown if the local file header cannot be read
+     */
+    private static long dataOffset(final FileChannel channel, final long localOffset, final Buffers buffers)
+            throws IOException {
+        final ByteBuffer local = buffers.local;
+        read(channel, local, localOffset, LOCAL_SIZE);
+        buffers.bytesRead += LOCAL_SIZE;
+        if (local.getInt(0) != LOCAL_SIGNATURE) {
+            throw new ZipException("Invalid local file header");
+        }
+        return localOffset + LOCAL_SIZE + unsignedShort(local, 26) + unsignedShort(local, 28);
+    }
+
+    /**
+     * Reads the requested number of bytes from the channel into the start of
+     * the buffer.
+     *
+     * @param channel the channel to read from
+     * @param buffer the buffer to read into
+     * @param position the position to start reading at
+     * @param length the number of bytes to read
+     * @throws IOException thrown if the data cannot be read
+     */
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long position,
+            final int length) throws IOException {
+        if (position < 0 || position > Long.MAX_VALUE - length) {
+            throw new ZipException("Invalid archive offset " + position);
+        }
+        //cast to Buffer so that the Java 8 method signatures are used
+        ((Buffer) buffer).clear();
+        ((Buffer) buffer).limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+        }
+    }
+
+    /**
+     * Reads an unsigned short from the buffer.
+     *
+     * @param buffer the buffer
+     * @param index the index to read from
+     * @return the unsigned value
+     */
+    private static int unsignedShort(final ByteBuffer buffer, final int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    /**
+     * Reads an unsigned integer from the buffer.
+     *
+     * @param buffer the buffer
+     * @param index the index to read from
+     * @return the unsigned value
+     */
+    private static long unsignedInt(final ByteBuffer buffer, final int index) {
+        return buffer.getInt(index) & ZIP64_MAGIC;
+    }
+
+    /**
+     * Reads a big endian integer from the array.
+     *
+     * @param data the array
+     * @param index the index to read from
+     * @return the value
+     */
+    private static int bigEndianInt(final byte[] data, final int index) {
+        return ((data[index] & 0xFF) << 24) | ((data[index + 1] & 0xFF) << 16)
+                | ((data[index + 2] & 0xFF) << 8) | (data[index + 3] & 0xFF);
+    }
+
+    /**
+     * Reads a big endian unsigned short from the array.
+     *
+     * @param data the array
+     * @param index the index to read from
+     * @return the unsigned value
+     */
+    private static int bigEndianShort(final byte[] data, final int index) {
+        return ((data[index] & 0xFF) << 8) | (data[index + 1] & 0xFF);
+    }
+
+    /**
+     * An input stream over a region of a channel, read using positional reads
+     * so that the channel's position is not modified.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        /**
+         * The channel to read from.
+         */
+        private final FileChannel channel;
+        /**
+         * The position of the next byte to read.
+         */
+        private long position;
+        /**
+         * The position after the last byte of the region.
+         */
+        private final long end;
+        /**
+         * The buffers used to count the bytes read.
+         */
+        private final Buffers buffers;
+
+        /**
+         * Constructs a new input stream over a region of the channel.
+         *
+         * @param channel the channel to read from
+         * @param position the position of the first byte of the region
+         * @param length the length of the region
+         * @param buffers the buffers used to count the bytes read
+         */
+        ChannelInputStream(final FileChannel channel, final long position, final long length,
+                final Buffers buffers) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+            this.buffers = buffers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            final int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+            position += read;
+            buffers.bytesRead += read;
+            return read;
+        }
+    }
+
+    /**
+     * An input stream that does not close the underlying stream; used to read
+     * a nested archive from the entry of a streamed archive.
+     */
+    private static final class NonClosingInputStream extends FilterInputStream {
+
+        /**
+         * Constructs a new input stream.
+         *
+         * @param in the underlying stream
+         */
+        NonClosingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            //the underlying stream is closed by its owner
+        }
+    }
+
+    /**
+     * A cursor over the file headers of a central directory. The records are
+     * read through the window of the calling thread's buffers; the fields of
+     * the current record are only valid until the next call to
+     * {@link #next()}.
+     */
+    private static final class CentralDirectory {
+
+        /**
+         * The channel to read the archive from.
+         */
+        private final FileChannel channel;
+        /**
+         * The calling thread's buffers.
+         */
+        private final Buffers buffers;
+        /**
+         * The position after the last file header.
+         */
+        private final long end;
+        /**
+         * The number of file headers.
+         */
+        private final long entries;
+        /**
+         * The difference between the positions in the channel and the offsets
+         * recorded in the archive; archives with prepended data (i.e.
+         * executable jars) have offsets relative to the original start.
+         */
+        private final long bias;
+        /**
+         * The position of the current file header.
+         */
+        private long position;
+        /**
+         * The number of file headers read.
+         */
+        private long count;
+        /**
+         * The window containing the current file header.
+         */
+        private ByteBuffer window;
+        /**
+         * The index of the current file header in the window.
+         */
+        private int pos;
+        /**
+         * The length of the current entry name.
+         */
+        private int nameLength;
+        /**
+         * The length of the current extra field.
+         */
+        private int extraLength;
+        /**
+         * The length of the current file header.
+         */
+        private int recordLength;
+        /**
+         * The compression method of the current entry; set by
+         * {@link #readEntry()}.
+         */
+        private int method;
+        /**
+         * The compressed size of the current entry; set by
+         * {@link #readEntry()}.
+         */
+        private long compressedSize;
+        /**
+         * The uncompressed size of the current entry; set by
+         * {@link #readEntry()}.
+         */
+        private long uncompressedSize;
+        /**
+         * The recorded offset of the current entry's local file header; set
+         * by {@link #readEntry()}.
+         */
+        private long localOffset;
+
+        /**
+         * Constructs a new cursor.
+         *
+         * @param channel the channel to read the archive from
+         * @param buffers the calling thread's buffers
+         * @param start the position of the first file header
+         * @param end the position after the last file header
+         * @param entries the number of file headers
+         * @param bias the difference between positions and recorded offsets
+         */
+        private CentralDirectory(final FileChannel channel, final Buffers buffers, final long start, final long end,
+                final long entries, final long bias) {
+            this.channel = channel;
+            this.buffers = buffers;
+            this.position = start;
+            this.end = end;
+            this.entries = entries;
+            this.bias = bias;
+        }
+
+        /**
+         * Locates the central directory of an archive occupying the given
+         * region of the channel.
+         *
+         * @param channel the channel to read the archive from
+         * @param start the position of the first byte of the archive
+         * @param size the size of the archive
+         * @param buffers the calling thread's buffers
+         * @return the cursor positioned before the first file header
+         * @throws IOException thrown if the archive cannot be read
+         * @throws ZipException thrown if the central directory cannot be used
+         */
+        static CentralDirectory open(final FileChannel channel, final long start, final long size,
+                final Buffers buffers) throws IOException {
+            final long end = start + size;
+            final int tailLength = (int) Math.min(size, END_SIZE + MAX_COMMENT);
+            final long tailStart = end - tailLength;
+            //the window may already hold the region, i.e. a nested archive within the outer window
+            ByteBuffer window = buffers.fill(channel, tailStart, tailLength, end);
+            final int tail = buffers.index(tailStart);
+
+            int eocd = -1;
+            for (int i = tailLength - END_SIZE; i >= 0; i--) {
+                if (window.getInt(tail + i) == END_SIGNATURE
+                        && i + END_SIZE + unsignedShort(window, tail + i + 20) <= tailLength) {
+                    eocd = tail + i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                throw new ZipException("Unable to locate the end of central directory");
+            }
+            long centralEnd = tailStart + eocd - tail;
+            long entries = unsignedShort(window, eocd + 10);
+            long centralSize = unsignedInt(window, eocd + 12);
+            long centralOffset = unsignedInt(window, eocd + 16);
+
+            if ((entries == ZIP64_MAGIC_COUNT || centralSize == ZIP64_MAGIC || centralOffset == ZIP64_MAGIC)
+                    && centralEnd - start >= ZIP64_LOCATOR_SIZE) {
+                window = buffers.fill(channel, centralEnd - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE, end);
+                final int locator = buffers.index(centralEnd - ZIP64_LOCATOR_SIZE);
+                if (window.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+                    final long recorded = window.getLong(locator + 8);
+                    long zip64End = centralEnd - ZIP64_LOCATOR_SIZE - ZIP64_END_SIZE;
+                    if (zip64End < start) {
+                        throw new ZipException("Invalid zip64 end of central directory locator");
+                    }
+                    window = buffers.fill(channel, zip64End, ZIP64_END_SIZE, end);
+                    if (window.getInt(buffers.index(zip64End)) != ZIP64_END_SIGNATURE) {
+                        //the record contains extensible data; use the recorded position
+                        zip64End = start + recorded;
+                        if (recorded < 0 || zip64End < start || zip64End > end - ZIP64_END_SIZE) {
+                            throw new ZipException("Invalid zip64 end of central directory locator");
+                        }
+                        window = buffers.fill(channel, zip64End, ZIP64_END_SIZE, end);
+                        if (window.getInt(buffers.index(zip64End)) != ZIP64_END_SIGNATURE) {
+                            throw new ZipException("Invalid zip64 end of central directory record");
+                        }
+                    }
+                    final int record = buffers.index(zip64End);
+                    centralEnd = zip64End;
+                    entries = window.getLong(record + 32);
+                    centralSize = window.getLong(record + 40);
+                    centralOffset = window.getLong(record + 48);
+                }
+            }
+            final long centralStart = centralEnd - centralSize;
+            if (centralSize < 0 || centralStart < start || entries < 0 || centralOffset < 0
+                    || centralOffset > centralStart - start) {
+                throw new ZipException("Invalid central directory");
+            }
+            return new CentralDirectory(channel, buffers, centralStart, centralEnd, entries,
+                    centralStart - centralOffset);
+        }
+
+        /**
+         * Advances to the next file header, reading it into the window.
+         *
+         * @return <code>false</code> if there are no more file headers
+         * @throws IOException thrown if the file header cannot be read
+         */
+        boolean next() throws IOException {
+            position += recordLength;
+            recordLength = 0;
+            if (count >= entries) {
+                return false;
+            }
+            count += 1;
+            if (position + CENTRAL_SIZE > end) {
+                throw new ZipException("Invalid central directory file header");
+            }
+            window = buffers.fill(channel, position, CENTRAL_SIZE, end);
+            pos = buffers.index(position);
+            if (window.getInt(pos) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid central directory file header");
+            }
+            nameLength = unsignedShort(window, pos + 28);
+            extraLength = unsignedShort(window, pos + 30);
+            final int length = CENTRAL_SIZE + nameLength + extraLength + unsignedShort(window, pos + 32);
+            if (position + length > end) {
+                throw new ZipException("Invalid central directory file header");
+            }
+            window = buffers.fill(channel, position, length, end);
+            pos = buffers.index(position);
+            recordLength = length;
+            return true;
+        }
+
+        /**
+         * Returns the index of the current entry name in the window.
+         *
+         * @return the index of the name
+         */
+        int nameOffset() {
+            return pos + CENTRAL_SIZE;
+        }
+
+        /**
+         * Decodes the current entry name.
+         *
+         * @return the entry name
+         */
+        String name() {
+            return JarScanner.name(window, nameOffset(), nameLength);
+        }
+
+        /**
+         * Reads the compression method, sizes, and local file header offset
+         * of the current entry.
+         *
+         * @throws ZipException thrown if the entry is encrypted or the zip64
+         * extra field is invalid
+         */
+        void readEntry() throws ZipException {
+            final int flags = unsignedShort(window, pos + 8);
+            method = unsignedShort(window, pos + 10);
+            compressedSize = unsignedInt(window, pos + 20);
+            uncompressedSize = unsignedInt(window, pos + 24);
+            localOffset = unsignedInt(window, pos + 42);
+            if ((flags & FLAG_ENCRYPTED) != 0) {
+                throw new ZipException("Encrypted entry: " + name());
+            }
+            if (compressedSize == ZIP64_MAGIC || uncompressedSize == ZIP64_MAGIC || localOffset == ZIP64_MAGIC) {
+                final int extra = findZip64Extra(window, nameOffset() + nameLength, extraLength);
+                int field = extra + 4;
+                if (uncompressedSize == ZIP64_MAGIC) {
+                    uncompressedSize = window.getLong(field);
+                    field += 8;
+                }
+                if (compressedSize == ZIP64_MAGIC) {
+                    compressedSize = window.getLong(field);
+                    field += 8;
+                }
+                if (localOffset == ZIP64_MAGIC) {
+                    localOffset = window.getLong(field);
+                    field += 8;
+                }
+                if (field > extra + 4 + unsignedShort(window, extra + 2)) {
+                    throw new ZipException("Invalid zip64 extra field");
+                }
+            }
+            //the local file header precedes the central directory
+            if (compressedSize < 0 || uncompressedSize < 0 || localOffset < 0 || localHeader() < 0
+                    || localHeader() >= position) {
+                throw new ZipException("Invalid entry offset or size: " + name());
+            }
+        }
+
+        /**
+         * Returns the CRC-32 of the current entry.
+         *
+         * @return the CRC-32
+         */
+        int crc() {
+            return window.getInt(pos + 16);
+        }
+
+        /**
+         * Returns the position of the current entry's local file header.
+         *
+         * @return the position in the channel
+         */
+        long localHeader() {
+            return bias + localOffset;
+        }
+    }
+
+    /**
+     * The buffers and inflater reused by a thread for every archive it scans.
+     */
+    private static final class Buffers {
+
+        /**
+         * The inflater used for deflated class files.
+         */
+        private final Inflater inflater = new Inflater(true);
+        /**
+         * The buffer used to read local file headers.
+         */
+        private final ByteBuffer local = ByteBuffer.allocateDirect(LOCAL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        /**
+         * The buffer used to read the start of stored class files.
+         */
+        private final ByteBuffer header = ByteBuffer.allocateDirect(CLASS_HEADER_SIZE);
+        /**
+         * The buffer used to read compressed data; the inflater on Java 8 only
+         * accepts arrays so this is a heap buffer.
+         */
+        private final ByteBuffer input = ByteBuffer.allocate(INFLATE_CHUNK);
+        /**
+         * The start of the class file.
+         */
+        private final byte[] output = new byte[CLASS_HEADER_SIZE];
+        /**
+         * A window over the end of the archive and the central directory.
+         */
+        private ByteBuffer window = ByteBuffer.allocateDirect(WINDOW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        /**
+         * The position in the archive of the first byte in the window.
+         */
+        private long windowStart;
+        /**
+         * The number of valid bytes in the window.
+         */
+        private int windowLength;
+        /**
+         * The channel the window was read from.
+         */
+        private FileChannel windowChannel;
+        /**
+         * The number of bytes read during the current scan.
+         */
+        private long bytesRead;
+
+        /**
+         * Ensures the window contains the requested range of the archive,
+         * reading as much as possible ahead of the range without passing the
+         * given end position.
+         *
+         * @param channel the channel to read from
+         * @param position the start of the range
+         * @param length the length of the range
+         * @param end the position the window should not extend past
+         * @return the window
+         * @throws IOException thrown if the data cannot be read
+         */
+        ByteBuffer fill(final FileChannel channel, final long position, final int length, final long end)
+                throws IOException {
+            if (channel == windowChannel && position >= windowStart
+                    && position + length <= windowStart + windowLength) {
+                return window;
+            }
+            if (length > window.capacity()) {
+                //a single record larger then the window; grow to the next power of two
+                window = ByteBuffer.allocateDirect(Integer.highestOneBit(length) << 1).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            windowChannel = null;
+            final int available = (int) Math.max(length, Math.min(window.capacity(), end - position));
+            read(channel, window, position, available);
+            bytesRead += available;
+            windowChannel = channel;
+            windowStart = position;
+            windowLength = available;
+            return window;
+        }
+
+        /**
+         * Invalidates the window so that the channel is no longer referenced.
+         */
+        void release() {
+            windowChannel = null;
+            windowLength = 0;
+        }
+
+        /**
+         * Returns the index in the window of the given archive position.
+         *
+         * @param position the position in the archive
+         * @return the index in the window
+         */
+        int index(final long position) {
+            return (int) (position - windowStart);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+/**
+ * Records profiling events for the work performed by the rule. When Java
+ * Flight Recorder is available at runtime the events are emitted as JFR
+ * events; otherwise a recorder that does nothing is used. The JFR
+ * implementation is loaded reflectively so that this class, and the rule,
+ * can be loaded on a JVM without the <code>jdk.jfr</code> module; it is
+ * compiled from <code>src/main/jfr/java</code> only when the rule is built on
+ * Java 11 or later.
+ *
+ * @author Jeremy Long
+ */
+abstract class Recorder {
+
+    /**
+     * The name of the JFR implementation.
+     */
+    private static final String JFR_RECORDER = "org.owasp.maven.enforcer.rule.JfrRecorder";
+    /**
+     * A span that does nothing.
+     */
+    private static final Span NOOP_SPAN = outcome -> {
+    };
+    /**
+     * A scan span that does nothing.
+     */
+    private static final ScanSpan NOOP_SCAN_SPAN = (result, source, outcome) -> {
+    };
+    /**
+     * The recorder used by the rule.
+     */
+    private static final Recorder INSTANCE = create();
+
+    /**
+     * Returns the recorder used by the rule.
+     *
+     * @return the recorder
+     */
+    static Recorder get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates the JFR recorder if JFR is available; otherwise a recorder that
+     * does nothing.
+     *
+     * @return the recorder
+     */
+    private static Recorder create() {
+        try {
+            Class.forName("jdk.jfr.Event", false, Recorder.class.getClassLoader());
+            return (Recorder) Class.forName(JFR_RECORDER).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            return new NoopRecorder();
+        }
+    }
+
+    /**
+     * Returns whether or not the events are emitted to Java Flight Recorder.
+     *
+     * @return <code>true</code> if JFR events are emitted
+     */
+    abstract boolean isEnabled();
+
+    /**
+     * Starts the span of building the dependency graph.
+     *
+     * @param project the id of the project
+     * @return the span
+     */
+    abstract Span startGraphBuild(String project);
+
+    /**
+     * Starts the span of resolving an artifact.
+     *
+     * @param coordinate the coordinate of the artifact
+     * @return the span
+     */
+    abstract Span startResolution(String coordinate);
+
+    /**
+     * Starts the span of scanning a dependency.
+     *
+     * @param dependency the dependency
+     * @return the span
+     */
+    abstract ScanSpan startScan(DependencyReference dependency);
+
+    /**
+     * Returns the span that does nothing.
+     *
+     * @return the span
+     */
+    static Span noopSpan() {
+        return NOOP_SPAN;
+    }
+
+    /**
+     * Returns the scan span that does nothing.
+     *
+     * @return the scan span
+     */
+    static ScanSpan noopScanSpan() {
+        return NOOP_SCAN_SPAN;
+    }
+
+    /**
+     * A unit of work that has been started.
+     */
+    interface Span {
+
+        /**
+         * Ends the span.
+         *
+         * @param outcome the outcome of the work
+         */
+        void end(String outcome);
+    }
+
+    /**
+     * The scan of a dependency that has been started.
+     */
+    interface ScanSpan {
+
+        /**
+         * Ends the span.
+         *
+         * @param result the result of the scan; <code>null</code> if the scan
+         * failed
+         * @param source where the result came from
+         * @param outcome the outcome of the scan
+         */
+        void end(ScanResult result, String source, String outcome);
+    }
+
+    /**
+     * The recorder used when JFR is not available.
+     */
+    private static final class NoopRecorder extends Recorder {
+
+        @Override
+        boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        Span startGraphBuild(final String project) {
+            return NOOP_SPAN;
+        }
+
+        @Override
+        Span startResolution(final String coordinate) {
+            return NOOP_SPAN;
+        }
+
+        @Override
+        ScanSpan startScan(final DependencyReference dependency) {
+            return NOOP_SCAN_SPAN;
+        }
+    }
+}
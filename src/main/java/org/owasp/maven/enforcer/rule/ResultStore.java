@@ -0,0 +1,297 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A store of scan results for sweeps over a very large number of artifacts,
+ * such as an entire repository mirror. Rather then holding an object per
+ * artifact, each result is reduced to three longs - the 64-bit key, the
+ * fingerprint of the scanned file, and the packed versions and invalid counts
+ * - held in parallel primitive arrays forming an open addressing table. The
+ * memory used is 24 bytes per slot regardless of the coordinates, and the
+ * arrays are the only objects the garbage collector has to trace.
+ * <p>
+ * The table uses the same hashing, probing, and slot layout as the
+ * {@link VersionIndex} so that it is written as an index file by copying the
+ * slots in order, and an index file is read back without rehashing.</p>
+ *
+ * @author Jeremy Long
+ */
+public final class ResultStore {
+
+    /**
+     * The initial number of slots.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The largest number of slots; limited by the size of a mapped index.
+     */
+    private static final int MAX_CAPACITY = 1 << 26;
+    /**
+     * The size of the buffer used to write the store.
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    /**
+     * The keys of the slots; zero marks an empty slot.
+     */
+    private long[] keys;
+    /**
+     * The fingerprints of the scanned files.
+     */
+    private long[] fingerprints;
+    /**
+     * The packed results.
+     */
+    private long[] values;
+    /**
+     * The number of stored results.
+     */
+    private int size;
+
+    /**
+     * Constructs an empty store.
+     */
+    public ResultStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty store with the given number of slots.
+     *
+     * @param capacity the number of slots; a power of two
+     */
+    private ResultStore(final int capacity) {
+        keys = new long[capacity];
+        fingerprints = new long[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * Stores a result, replacing any result stored under the same key.
+     *
+     * @param key the key, i.e. the {@link VersionIndex#hash(String) hash} of
+     * the artifact's coordinates including its extension, so that the jar and
+     * war of the same artifact are kept apart; zero is not a valid key
+     * @param fingerprint the fingerprint of the scanned file, i.e. the
+     * {@link VersionIndex#fingerprint(long, long) fingerprint} of its length
+     * and last modified time
+     * @param result the result
+     */
+    public synchronized void put(final long key, final long fingerprint, final ScanResult result) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Zero is not a valid key");
+        }
+        //keep the load factor at or below 3/4
+        if ((size + 1) * 4L > keys.length * 3L) {
+            grow();
+        }
+        final int slot = find(keys, key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size += 1;
+        }
+        fingerprints[slot] = fingerprint;
+        values[slot] = pack(result);
+    }
+
+    /**
+     * Returns the result stored under the key.
+     *
+     * @param key the key
+     * @param fingerprint the fingerprint of the file; the result is only
+     * returned if it was stored with the same fingerprint
+     * @return the result; or <code>null</code> if no result is stored
+     */
+    public synchronized ScanResult get(final long key, final long fingerprint) {
+        final int slot = find(keys, key);
+        if (keys[slot] != key || fingerprints[slot] != fingerprint) {
+            return null;
+        }
+        return unpack(values[slot]);
+    }
+
+    /**
+     * Returns the number of stored results.
+     *
+     * @return the number of stored results
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Writes the store as a {@link VersionIndex}. The store is written to a
+     * temporary file and then moved into place so that readers never see a
+     * partial index.
+     *
+     * @param file the index file
+     * @param nestedArchives whether or not the results include nested
+     * archives
+     * @throws IOException thrown if the file cannot be written
+     */
+    public synchronized void write(final File file, final boolean nestedArchives) throws IOException {
+        final Path target = file.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+                buffer.putInt(VersionIndex.MAGIC).putInt(VersionIndex.FORMAT_VERSION)
+                        .putInt(nestedArchives ? VersionIndex.FLAG_NESTED : 0).putInt(keys.length).putLong(size);
+                for (int slot = 0; slot < keys.length; slot++) {
+                    if (buffer.remaining() < VersionIndex.SLOT_SIZE) {
+                        drain(channel, buffer);
+                    }
+                    buffer.putLong(keys[slot]).putLong(fingerprints[slot]).putLong(values[slot]);
+                }
+                drain(channel, buffer);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a store previously written, i.e. to update an existing index.
+     *
+     * @param file the index file
+     * @return the store
+     * @throws IOException thrown if the file cannot be read or is not a valid
+     * index
+     */
+    public static ResultStore read(final File file) throws IOException {
+        final VersionIndex index = VersionIndex.open(file);
+        final ResultStore store = new ResultStore(index.capacity());
+        index.copyTo(store.keys, store.fingerprints, store.values);
+        //count the occupied slots rather then trusting the header so that a
+        //corrupt index is grown before a put finds no empty slot
+        int size = 0;
+        for (long key : store.keys) {
+            if (key != 0) {
+                size += 1;
+            }
+        }
+        store.size = size;
+        return store;
+    }
+
+    /**
+     * Doubles the number of slots and rehashes the stored results.
+     */
+    private void grow() {
+        if (keys.length >= MAX_CAPACITY) {
+            throw new IllegalStateException("The result store is full");
+        }
+        final long[] oldKeys = keys;
+        final long[] oldFingerprints = fingerprints;
+        final long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        fingerprints = new long[keys.length];
+        values = new long[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                final int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                fingerprints[slot] = oldFingerprints[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Finds the slot holding the key, or the empty slot where it belongs.
+     *
+     * @param table the keys of the slots
+     * @param key the key
+     * @return the slot
+     */
+    private static int find(final long[] table, final long key) {
+        final int mask = table.length - 1;
+        int slot = VersionIndex.mix(key) & mask;
+        while (table[slot] != 0 && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Writes the contents of the buffer to the channel and clears the buffer.
+     *
+     * @param channel the channel
+     * @param buffer the buffer
+     * @throws IOException thrown if the channel cannot be written
+     */
+    private static void drain(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    /**
+     * Packs the major and minor version, invalid class count, and invalid
+     * archive count of the result as four unsigned shorts; larger values are
+     * saturated.
+     *
+     * @param result the result
+     * @return the packed result
+     */
+    static long pack(final ScanResult result) {
+        return saturate(result.getMajorVersion()) << 48 | saturate(result.getMinorVersion()) << 32
+                | saturate(result.getInvalidClassCount()) << 16 | saturate(result.getInvalidArchiveCount());
+    }
+
+    /**
+     * Unpacks a result.
+     *
+     * @param value the packed result
+     * @return the result
+     */
+    static ScanResult unpack(final long value) {
+        return new ScanResult((int) (value >>> 48) & VersionIndex.MAX_SHORT,
+                (int) (value >>> 32) & VersionIndex.MAX_SHORT, (int) (value >>> 16) & VersionIndex.MAX_SHORT,
+                (int) value & VersionIndex.MAX_SHORT);
+    }
+
+    /**
+     * Saturates the value to an unsigned short.
+     *
+     * @param value the value
+     * @return the value as an unsigned short
+     */
+    private static long saturate(final int value) {
+        return Math.max(0, Math.min(value, VersionIndex.MAX_SHORT));
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans jars, or directories containing jars, from the command line and
+ * writes one line per archive as CSV or JSON:
+ * <pre>
+ * java -jar class-file-format-rule.jar [--format csv|json] [--threads n]
+ *     [--max-version major] [--nested] [--files-from file|-] [--output file]
+ *     [path...]
+ * </pre>
+ * <p>
+ * Paths given as arguments, or listed one per line in the
+ * <code>--files-from</code> file, are scanned as archives; directories are
+ * searched recursively for <code>.jar</code>, <code>.war</code>, and
+ * <code>.ear</code> files. With <code>--max-version</code> each scan stops at
+ * the first class file exceeding the version, the archive is reported as a
+ * violation, and the command exits with <code>1</code>.</p>
+ *
+ * @author Jeremy Long
+ */
+public final class ScanCommand {
+
+    /**
+     * The exit code when every archive was scanned without a violation.
+     */
+    static final int EXIT_OK = 0;
+    /**
+     * The exit code when a violation was found.
+     */
+    static final int EXIT_VIOLATION = 1;
+    /**
+     * The exit code when the arguments are invalid.
+     */
+    static final int EXIT_USAGE = 2;
+    /**
+     * The exit code when an archive could not be read.
+     */
+    static final int EXIT_ERROR = 3;
+    /**
+     * The usage message.
+     */
+    private static final String USAGE = "usage: java -jar class-file-format-rule.jar [--format csv|json] [--threads n]"
+            + " [--max-version major] [--nested] [--files-from file|-] [--output file] [path...]";
+    /**
+     * The CSV header.
+     */
+    private static final String CSV_HEADER = "path,status,majorVersion,minorVersion,classCount,entryCount,"
+            + "bytesRead,micros,versionEntry,error";
+
+    /**
+     * Prevents instantiation.
+     */
+    private ScanCommand() {
+    }
+
+    /**
+     * Runs the command.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(final String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * Runs the command.
+     *
+     * @param args the command line arguments
+     * @param in the input used when the file list is <code>-</code>
+     * @param out the output used when no output file is given
+     * @param err the output for messages
+     * @return the exit code
+     */
+    static int run(final String[] args, final InputStream in, final PrintStream out, final PrintStream err) {
+        final ClassFileFormatScanner scanner = new ClassFileFormatScanner();
+        final List<Path> paths = new ArrayList<>();
+        String format = "csv";
+        String filesFrom = null;
+        String output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format":
+                        format = value(args, ++i);
+                        break;
+                    case "--threads":
+                        scanner.setThreads(Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--max-version":
+                        scanner.setLimit(Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--nested":
+                        scanner.setScanNestedArchives(true);
+                        break;
+                    case "--files-from":
+                        filesFrom = value(args, ++i);
+                        break;
+                    case "--output":
+                        output = value(args, ++i);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        paths.add(Paths.get(args[i]));
+                }
+            }
+            if (!"csv".equals(format) && !"json".equals(format)) {
+                throw new IllegalArgumentException("Unknown format " + format);
+            }
+            if (paths.isEmpty() && filesFrom == null) {
+                throw new IllegalArgumentException("No paths to scan");
+            }
+        } catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        final boolean csv = "csv".equals(format);
+        final int limit = scanner.getLimit();
+        final AtomicLong violations = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final long start = System.nanoTime();
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(output == null ? out
+                : new BufferedOutputStream(new FileOutputStream(output)), StandardCharsets.UTF_8));
+                BufferedReader list = filesFrom == null ? null : new BufferedReader("-".equals(filesFrom)
+                        ? new InputStreamReader(in, StandardCharsets.UTF_8)
+                        : Files.newBufferedReader(Paths.get(filesFrom), StandardCharsets.UTF_8))) {
+            if (csv) {
+                writer.println(CSV_HEADER);
+            }
+            final long count = scanner.scanAll(sources(paths, list), new ClassFileFormatScanner.Listener() {
+                @Override
+                public void scanned(final Path archive, final ScanResult result, final long nanos) {
+                    final boolean violation = result.getMajorVersion() > limit;
+                    if (violation) {
+                        violations.incrementAndGet();
+                    }
+                    write(writer, csv, archive, violation ? "violation" : "ok", result, nanos, null);
+                }
+
+                @Override
+                public void failed(final Path path, final Exception ex) {
+                    errors.incrementAndGet();
+                    write(writer, csv, path, "error", null, 0, String.valueOf(ex.getMessage()));
+                }
+            });
+            writer.flush();
+            err.println(String.format(Locale.ROOT, "Scanned %d archives in %d ms; %d violations, %d errors", count,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), violations.get(), errors.get()));
+        } catch (IOException | UncheckedIOException ex) {
+            err.println("Unable to complete the scan: " + ex.getMessage());
+            return EXIT_ERROR;
+        }
+        if (violations.get() > 0) {
+            return EXIT_VIOLATION;
+        }
+        return errors.get() > 0 ? EXIT_ERROR : EXIT_OK;
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param args the command line arguments
+     * @param index the index of the value
+     * @return the value
+     */
+    private static String value(final String[] args, final int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Returns the paths to scan: the paths given as arguments followed by
+     * those read, one per line and as they are needed, from the list.
+     *
+     * @param paths the paths given as arguments
+     * @param list the file list; may be <code>null</code>
+     * @return the paths to scan
+     */
+    private static Iterable<Path> sources(final List<Path> paths, final BufferedReader list) {
+        if (list == null) {
+            return paths;
+        }
+        return () -> new Iterator<Path>() {
+            /**
+             * The paths given as arguments.
+             */
+            private final Iterator<Path> given = paths.iterator();
+            /**
+             * The next line of the list.
+             */
+            private String line;
+
+            @Override
+            public boolean hasNext() {
+                if (given.hasNext()) {
+                    return true;
+                }
+                try {
+                    while (line == null || line.trim().isEmpty()) {
+                        line = list.readLine();
+                        if (line == null) {
+                            return false;
+                        }
+                    }
+                    return true;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (given.hasNext()) {
+                    return given.next();
+                }
+                final Path next = Paths.get(line.trim());
+                line = null;
+                return next;
+            }
+        };
+    }
+
+    /**
+     * Writes the line for an archive.
+     *
+     * @param writer the output
+     * @param csv whether the output is CSV or JSON
+     * @param path the archive
+     * @param status the status of the archive
+     * @param result the result of the scan; <code>null</code> if the scan
+     * failed
+     * @param nanos the time taken, in nanoseconds
+     * @param error the error message; <code>null</code> if the scan succeeded
+     */
+    private static void write(final PrintWriter writer, final boolean csv, final Path path, final String status,
+            final ScanResult result, final long nanos, final String error) {
+        final String line;
+        if (csv) {
+            line = String.join(",", csvField(path.toString()), status,
+                    result == null ? "" : Integer.toString(result.getMajorVersion()),
+                    result == null ? "" : Integer.toString(result.getMinorVersion()),
+                    result == null ? "" : Integer.toString(result.getClassCount()),
+                    result == null ? "" : Integer.toString(result.getEntryCount()),
+                    result == null ? "" : Long.toString(result.getBytesRead()),
+                    result == null ? "" : Long.toString(TimeUnit.NANOSECONDS.toMicros(nanos)),
+                    result == null ? "" : csvField(result.getVersionEntry()),
+                    csvField(error));
+        } else {
+            final StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"path\": ").append(ScanMetrics.quote(path.toString()))
+                    .append(", \"status\": ").append(ScanMetrics.quote(status));
+            if (result != null) {
+                sb.append(", \"majorVersion\": ").append(result.getMajorVersion())
+                        .append(", \"minorVersion\": ").append(result.getMinorVersion())
+                        .append(", \"classCount\": ").append(result.getClassCount())
+                        .append(", \"entryCount\": ").append(result.getEntryCount())
+                        .append(", \"bytesRead\": ").append(result.getBytesRead())
+                        .append(", \"micros\": ").append(TimeUnit.NANOSECONDS.toMicros(nanos))
+                        .append(", \"versionEntry\": ").append(ScanMetrics.quote(result.getVersionEntry()));
+            }
+            if (error != null) {
+                sb.append(", \"error\": ").append(ScanMetrics.quote(error));
+            }
+            line = sb.append('}').toString();
+        }
+        synchronized (writer) {
+            writer.println(line);
+        }
+    }
+
+    /**
+     * Formats the value as a CSV field, quoting it when required.
+     *
+     * @param value the value; may be <code>null</code>
+     * @return the CSV field
+     */
+    static String csvField(final String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
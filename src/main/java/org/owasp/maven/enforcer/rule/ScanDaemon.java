@@ -0,0 +1,427 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A long lived process that scans artifacts on behalf of the
+ * {@link ClassFileFormatRule}. Builds that run frequently on the same host
+ * avoid the warm-up of the scanning code and share an in-memory cache of the
+ * results, bounded to the most recently used entries.
+ * <p>
+ * The daemon only listens on the loopback interface. Its port and a random
+ * token, which clients must present with every request, are written to
+ * <code>daemon.properties</code> in the cache directory; the file is removed
+ * when the daemon stops. The protocol is line based: each request is one of
+ * <code>PING token</code>, <code>STOP token</code>, or
+ * <code>SCAN token nested path</code> and is answered by a single line
+ * starting with <code>OK</code> or <code>ERROR</code>.</p>
+ *
+ * @author Jeremy Long
+ */
+public class ScanDaemon implements Closeable {
+
+    /**
+     * The name of the file containing the port and token of the running
+     * daemon.
+     */
+    static final String DAEMON_FILE = "daemon.properties";
+    /**
+     * The usage message.
+     */
+    private static final String USAGE = "usage: java -cp class-file-format-rule.jar "
+            + "org.owasp.maven.enforcer.rule.ScanDaemon [--directory dir] [--port n] [--max-entries n]";
+    /**
+     * The server socket.
+     */
+    private final ServerSocket server;
+    /**
+     * The token clients must present.
+     */
+    private final String token;
+    /**
+     * The file advertising the port and token.
+     */
+    private final Path daemonFile;
+    /**
+     * The results keyed by the artifact fingerprint, in access order.
+     */
+    private final Map<String, ScanResult> results;
+    /**
+     * The scanner used when nested archives are not scanned.
+     */
+    private final JarScanner scanner = new JarScanner();
+    /**
+     * The scanner used when nested archives are scanned.
+     */
+    private final JarScanner nestedScanner = new JarScanner();
+    /**
+     * The threads serving the connections.
+     */
+    private final ExecutorService connections = Executors.newCachedThreadPool(
+            new WorkerThreadFactory("class-file-format-daemon-"));
+    /**
+     * The number of requests answered from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The number of requests that scanned the artifact.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * Whether or not the daemon has been closed; the daemon is closed by a
+     * STOP request and by the shutdown hook, possibly at the same time.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Starts listening and advertises the daemon in the given directory;
+     * requests are not served until {@link #serve()} is called.
+     *
+     * @param directory the directory to write the daemon file to
+     * @param port the port to listen on; <code>0</code> uses any free port
+     * @param maxEntries the maximum number of results retained in memory
+     * @throws IOException thrown if the daemon cannot be started
+     */
+    public ScanDaemon(final File directory, final int port, final int maxEntries) throws IOException {
+        this.results = Collections.synchronizedMap(new LinkedHashMap<String, ScanResult>(256, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, ScanResult> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        nestedScanner.setScanNestedArchives(true);
+        final byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        this.token = Digests.toHex(random);
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.daemonFile = new File(directory, DAEMON_FILE).toPath();
+        try {
+            advertise();
+        } catch (IOException ex) {
+            server.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the port the daemon listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Get the number of requests answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of requests that scanned the artifact.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Accepts and serves connections until the daemon is closed.
+     *
+     * @throws IOException thrown if the server socket fails
+     */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException ex) {
+                if (server.isClosed()) {
+                    return;
+                }
+                throw ex;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    /**
+     * Stops the daemon and removes the daemon file; calls after the first
+     * do nothing.
+     *
+     * @throws IOException thrown if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final Properties props = read(daemonFile);
+            if (props != null && token.equals(props.getProperty("token"))) {
+                Files.deleteIfExists(daemonFile);
+            }
+        } finally {
+            connections.shutdownNow();
+            server.close();
+        }
+    }
+
+    /**
+     * Serves the requests of a connection until the client disconnects.
+     *
+     * @param socket the connection
+     */
+    private void handle(final Socket socket) {
+        try (Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            while (line != null) {
+                final String[] request = line.split(" ", 4);
+                if (request.length < 2 || !token.equals(request[1])) {
+                    out.write("ERROR unauthorized\n");
+                    out.flush();
+                    return;
+                }
+                if ("STOP".equals(request[0])) {
+                    out.write("OK\n");
+                    out.flush();
+                    close();
+                    return;
+                }
+                out.write(answer(request));
+                out.write('\n');
+                out.flush();
+                line = in.readLine();
+            }
+        } catch (IOException ex) {
+            //the client disconnected
+        }
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @param request the request split into the command, token, and
+     * arguments
+     * @return the response line
+     */
+    private String answer(final String[] request) {
+        if ("PING".equals(request[0])) {
+            return "OK";
+        }
+        if (!"SCAN".equals(request[0]) || request.length != 4) {
+            return "ERROR invalid request";
+        }
+        final boolean nested = Boolean.parseBoolean(request[2]);
+        final File artifact = new File(request[3]);
+        final String key = artifact.getAbsolutePath() + '|' + artifact.length() + '|' + artifact.lastModified()
+                + '|' + nested;
+        try {
+            ScanResult result = results.get(key);
+            if (result == null) {
+                misses.increment();
+                result = (nested ? nestedScanner : scanner).scan(artifact, Integer.MAX_VALUE);
+                results.put(key, result);
+            } else {
+                hits.increment();
+            }
+            return format(result);
+        } catch (IOException | RuntimeException ex) {
+            return "ERROR " + String.valueOf(ex.getMessage()).replace('\n', ' ');
+        }
+    }
+
+    /**
+     * Formats the result as a response line.
+     *
+     * @param result the result of the scan
+     * @return the response line
+     */
+    static String format(final ScanResult result) {
+        return String.format("OK %d %d %d %d %s", result.getMajorVersion(), result.getMinorVersion(),
+                result.getInvalidClassCount(), result.getInvalidArchiveCount(),
+                result.getVersionEntry() == null ? "" : result.getVersionEntry());
+    }
+
+    /**
+     * Parses a response line created by {@link #format(ScanResult)}.
+     *
+     * @param line the response line
+     * @return the result of the scan
+     * @throws IOException thrown if the response is an error or invalid
+     */
+    static ScanResult parse(final String line) throws IOException {
+        if (line == null) {
+            throw new IOException("The daemon closed the connection");
+        }
+        final String[] parts = line.split(" ", 6);
+        if (!"OK".equals(parts[0]) || parts.length != 6) {
+            throw new IOException("The daemon was unable to scan the artifact: " + line);
+        }
+        try {
+            final ScanResult result = new ScanResult(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+            if (!parts[5].isEmpty()) {
+                result.setVersionEntry(parts[5]);
+            }
+            return result;
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid response from the daemon: " + line, ex);
+        }
+    }
+
+    /**
+     * Writes the daemon file, readable only by the owner where supported.
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    private void advertise() throws IOException {
+        final Path directory = daemonFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path temp = Files.createTempFile(directory, DAEMON_FILE, ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ex) {
+                //not a posix file system
+            }
+            final Properties props = new Properties();
+            props.setProperty("port", Integer.toString(getPort()));
+            props.setProperty("token", token);
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                props.store(out, null);
+            }
+            try {
+                Files.move(temp, daemonFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, daemonFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a daemon file.
+     *
+     * @param file the daemon file
+     * @return the properties; or <code>null</code> if the file does not exist
+     * @throws IOException thrown if the file cannot be read
+     */
+    static Properties read(final Path file) throws IOException {
+        final Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+        return props;
+    }
+
+    /**
+     * Runs the daemon until it is stopped.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(final String[] args) {
+        File directory = new File(new File(System.getProperty("user.home"), ".m2"), "class-file-format-rule");
+        int port = 0;
+        int maxEntries = 100000;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch (args[i]) {
+                    case "--directory":
+                        directory = new File(args[i + 1]);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--max-entries":
+                        maxEntries = Integer.parseInt(args[i + 1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(ScanCommand.EXIT_USAGE);
+        }
+        try {
+            final ScanDaemon daemon = new ScanDaemon(directory, port, maxEntries);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    daemon.close();
+                } catch (IOException ex) {
+                    //exiting
+                }
+            }));
+            try {
+                System.err.println("Class file format scan daemon listening on port " + daemon.getPort());
+                daemon.serve();
+            } finally {
+                daemon.close();
+            }
+        } catch (IOException ex) {
+            System.err.println("Class file format scan daemon failed: " + ex.getMessage());
+            System.exit(ScanCommand.EXIT_ERROR);
+        }
+    }
+}
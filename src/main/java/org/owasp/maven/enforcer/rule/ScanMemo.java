@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizes the scan results of artifacts for the duration of a build. When
+ * several modules of a parallel build request the same artifact at the same
+ * time only the first caller scans it; the other callers wait for, and share,
+ * that result.
+ *
+ * @author Jeremy Long
+ */
+public class ScanMemo {
+
+    /**
+     * The memo tables keyed by the object that identifies the build; the keys
+     * are weakly referenced so the tables are discarded with the build.
+     */
+    private static final Map<Object, ScanMemo> SESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+    /**
+     * The scan results keyed by the artifact fingerprint.
+     */
+    private final ConcurrentHashMap<String, FutureTask<ScanResult>> results = new ConcurrentHashMap<>();
+    /**
+     * The number of requests answered by a completed scan.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The number of requests that performed the scan.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * The number of requests that waited for a scan performed by another
+     * thread.
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Returns the memo table for the given build.
+     *
+     * @param session the object identifying the build; generally the Maven
+     * execution request which is shared by the sessions of a parallel build
+     * @return the memo table
+     */
+    public static ScanMemo forSession(final Object session) {
+        return SESSIONS.computeIfAbsent(session, k -> new ScanMemo());
+    }
+
+    /**
+     * Returns the scan result for the artifact; if the artifact has not been
+     * scanned the loader is called. Concurrent requests for the same artifact
+     * wait on the first request.
+     *
+     * @param artifact the artifact file
+     * @param loader the callable used to scan the artifact
+     * @return the scan result
+     * @throws IOException thrown if the artifact cannot be scanned
+     */
+    public ScanResult get(final File artifact, final Callable<ScanResult> loader) throws IOException {
+        return get(artifact, "", loader);
+    }
+
+    /**
+     * Returns the scan result for the artifact scanned in the given manner;
+     * results of scans performed with different options, such as whether
+     * nested archives are scanned, are kept apart by the variant.
+     *
+     * @param artifact the artifact file
+     * @param variant identifies the options the artifact is scanned with
+     * @param loader the callable used to scan the artifact
+     * @return the scan result
+     * @throws IOException thrown if the artifact cannot be scanned
+     */
+    public ScanResult get(final File artifact, final String variant, final Callable<ScanResult> loader)
+            throws IOException {
+        return load(artifact.getAbsolutePath() + '|' + artifact.length() + '|' + artifact.lastModified() + '|'
+                + variant, loader);
+    }
+
+    /**
+     * Returns the scan result for an artifact identified by the fingerprint
+     * of its content; artifacts with the same content share a single scan,
+     * regardless of their coordinates or location.
+     *
+     * @param content the content fingerprint of the artifact
+     * @param variant identifies the options the artifact is scanned with
+     * @param loader the callable used to scan the artifact
+     * @return the scan result
+     * @throws IOException thrown if the artifact cannot be scanned
+     */
+    public ScanResult getContent(final String content, final String variant, final Callable<ScanResult> loader)
+            throws IOException {
+        return load("content|" + content + '|' + variant, loader);
+    }
+
+    /**
+     * Returns the scan result memoized under the key, calling the loader if
+     * there is none. When the scan being waited on was interrupted, i.e. the
+     * thread running it was cancelled, and the calling thread was not, the
+     * scan is retried rather then failing every module sharing it.
+     *
+     * @param key the artifact fingerprint
+     * @param loader the callable used to scan the artifact
+     * @return the scan result
+     * @throws IOException thrown if the artifact cannot be scanned
+     */
+    private ScanResult load(final String key, final Callable<ScanResult> loader) throws IOException {
+        final FutureTask<ScanResult> task = new FutureTask<>(loader);
+        final FutureTask<ScanResult> existing = results.putIfAbsent(key, task);
+        if (existing == null) {
+            misses.increment();
+            task.run();
+            return await(key, task);
+        }
+        if (existing.isDone()) {
+            hits.increment();
+        } else {
+            coalesced.increment();
+        }
+        try {
+            return await(key, existing);
+        } catch (IOException | RuntimeException ex) {
+            if (!isInterruption(ex) || Thread.currentThread().isInterrupted()) {
+                throw ex;
+            }
+            //the failed scan was removed by await; scan again on behalf of this caller
+            return load(key, loader);
+        }
+    }
+
+    /**
+     * Determines whether or not the failure was caused by interrupting the
+     * thread that performed the scan.
+     *
+     * @param ex the failure
+     * @return <code>true</code> if the scan was interrupted
+     */
+    private static boolean isInterruption(final Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof ClosedByInterruptException || t instanceof InterruptedIOException
+                    || t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the scan to complete. A failed scan is removed so that a later
+     * request can retry it.
+     *
+     * @param key the artifact fingerprint
+     * @param task the scan
+     * @return the scan result
+     * @throws IOException thrown if the artifact could not be scanned
+     */
+    private ScanResult await(final String key, final FutureTask<ScanResult> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the scan of " + key);
+        } catch (ExecutionException ex) {
+            results.remove(key, task);
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Get the number of requests answered by a completed scan.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of requests that performed the scan.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of requests that waited for a scan performed by another
+     * thread.
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Standard to string implementation.
+     *
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses, %d coalesced", getHits(), getMisses(), getCoalesced());
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the time spent in each phase of a single execution of the rule
+ * along with the I/O performed scanning each artifact. The scanning threads
+ * record into the metrics concurrently.
+ *
+ * @author Jeremy Long
+ */
+public class ScanMetrics {
+
+    /**
+     * The source of an artifact scan result read from the persistent cache.
+     */
+    public static final String SOURCE_CACHE = "cache";
+    /**
+     * The source of an artifact scan result produced by scanning a jar.
+     */
+    public static final String SOURCE_JAR = "jar";
+    /**
+     * The source of an artifact scan result produced by scanning a directory.
+     */
+    public static final String SOURCE_DIRECTORY = "directory";
+    /**
+     * The source of an artifact scan result answered by the sampled class
+     * files of a tiered scan.
+     */
+    public static final String SOURCE_SAMPLE = "sample";
+    /**
+     * The source of an artifact scan result accepted from the manifest by a
+     * tiered scan.
+     */
+    public static final String SOURCE_MANIFEST = "manifest";
+    /**
+     * The source of an artifact scan result answered by the scan daemon.
+     */
+    public static final String SOURCE_DAEMON = "daemon";
+    /**
+     * The source of an artifact scan result read from the version index.
+     */
+    public static final String SOURCE_INDEX = "index";
+    /**
+     * The time spent building the dependency graph, in nanoseconds.
+     */
+    private volatile long graphNanos;
+    /**
+     * The time spent resolving the dependencies, in nanoseconds.
+     */
+    private volatile long resolveNanos;
+    /**
+     * The time spent scanning the dependencies, in nanoseconds.
+     */
+    private volatile long scanNanos;
+    /**
+     * The number of dependencies checked.
+     */
+    private final LongAdder requests = new LongAdder();
+    /**
+     * The artifacts scanned or read from the persistent cache.
+     */
+    private final Queue<ArtifactMetrics> artifacts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set the time spent building the dependency graph.
+     *
+     * @param graphNanos the time in nanoseconds
+     */
+    public void setGraphNanos(final long graphNanos) {
+        this.graphNanos = graphNanos;
+    }
+
+    /**
+     * Set the time spent resolving the dependencies.
+     *
+     * @param resolveNanos the time in nanoseconds
+     */
+    public void setResolveNanos(final long resolveNanos) {
+        this.resolveNanos = resolveNanos;
+    }
+
+    /**
+     * Set the time spent scanning the dependencies.
+     *
+     * @param scanNanos the time in nanoseconds
+     */
+    public void setScanNanos(final long scanNanos) {
+        this.scanNanos = scanNanos;
+    }
+
+    /**
+     * Records that a dependency was checked; dependencies checked but never
+     * recorded as an artifact were answered by the session's scan memo.
+     */
+    public void recordRequest() {
+        requests.increment();
+    }
+
+    /**
+     * Records the scan of an artifact.
+     *
+     * @param dependency the dependency
+     * @param result the result of the scan
+     * @param nanos the time taken, in nanoseconds
+     * @param source where the result came from; one of the
+     * <code>SOURCE_*</code> constants
+     */
+    public void recordArtifact(final DependencyReference dependency, final ScanResult result, final long nanos,
+            final String source) {
+        artifacts.add(new ArtifactMetrics(dependency, result, nanos, source));
+    }
+
+    /**
+     * Returns the one line summary of the metrics.
+     *
+     * @return the summary
+     */
+    public String getSummary() {
+        final Totals t = new Totals();
+        return String.format(Locale.ROOT, "%d dependencies checked in %d ms (graph %d ms, resolution %d ms, scan %d ms);"
+                + " %d scanned, %d from the cache, %d from the session; %d bytes read, %d entries, %d classes",
+                requests.sum(), millis(graphNanos + resolveNanos + scanNanos), millis(graphNanos),
+                millis(resolveNanos), millis(scanNanos), t.scanned, t.cached, getMemoHits(),
+                t.bytesRead, t.entries, t.classes);
+    }
+
+    /**
+     * Returns the per artifact lines of the report, slowest first.
+     *
+     * @return the lines describing each artifact
+     */
+    public List<String> getArtifactLines() {
+        final List<ArtifactMetrics> sorted = sortedArtifacts();
+        final List<String> lines = new ArrayList<>(sorted.size());
+        for (ArtifactMetrics a : sorted) {
+            lines.add(String.format(Locale.ROOT, "%s:%s:%s %.3f ms (%s; %d bytes read, %d entries, %d classes)",
+                    a.groupId, a.artifactId, a.version, a.nanos / 1e6, a.source, a.bytesRead, a.entries, a.classes));
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the metrics as JSON.
+     *
+     * @param file the file to write
+     * @param project the name of the project
+     * @throws IOException thrown if the file cannot be written
+     */
+    public void writeJson(final File file, final String project) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(toJson(project));
+        }
+    }
+
+    /**
+     * Formats the metrics as JSON.
+     *
+     * @param project the name of the project
+     * @return the JSON document
+     */
+    public String toJson(final String project) {
+        final Totals t = new Totals();
+        final StringBuilder sb = new StringBuilder(256 + artifacts.size() * 256);
+        sb.append("{\n");
+        sb.append("  \"project\": ").append(quote(project)).append(",\n");
+        sb.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+        sb.append("  \"phases\": {\n");
+        sb.append("    \"graphMillis\": ").append(millis(graphNanos)).append(",\n");
+        sb.append("    \"resolutionMillis\": ").append(millis(resolveNanos)).append(",\n");
+        sb.append("    \"scanMillis\": ").append(millis(scanNanos)).append("\n");
+        sb.append("  },\n");
+        sb.append("  \"dependencies\": ").append(requests.sum()).append(",\n");
+        sb.append("  \"scanned\": ").append(t.scanned).append(",\n");
+        sb.append("  \"cacheHits\": ").append(t.cached).append(",\n");
+        sb.append("  \"sessionHits\": ").append(getMemoHits()).append(",\n");
+        sb.append("  \"bytesRead\": ").append(t.bytesRead).append(",\n");
+        sb.append("  \"entries\": ").append(t.entries).append(",\n");
+        sb.append("  \"classes\": ").append(t.classes).append(",\n");
+        sb.append("  \"artifacts\": [");
+        String separator = "\n";
+        for (ArtifactMetrics a : sortedArtifacts()) {
+            sb.append(separator).append("    {\"groupId\": ").append(quote(a.groupId))
+                    .append(", \"artifactId\": ").append(quote(a.artifactId))
+                    .append(", \"version\": ").append(quote(a.version))
+                    .append(", \"file\": ").append(quote(a.file))
+                    .append(", \"source\": ").append(quote(a.source))
+                    .append(", \"micros\": ").append(TimeUnit.NANOSECONDS.toMicros(a.nanos))
+                    .append(", \"bytesRead\": ").append(a.bytesRead)
+                    .append(", \"entries\": ").append(a.entries)
+                    .append(", \"classes\": ").append(a.classes)
+                    .append(", \"majorVersion\": ").append(a.majorVersion)
+                    .append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of dependencies answered by the session's scan memo.
+     *
+     * @return the number of dependencies
+     */
+    private long getMemoHits() {
+        return Math.max(0, requests.sum() - artifacts.size());
+    }
+
+    /**
+     * Returns the artifacts ordered by the time taken, slowest first.
+     *
+     * @return the sorted artifacts
+     */
+    private List<ArtifactMetrics> sortedArtifacts() {
+        final List<ArtifactMetrics> sorted = new ArrayList<>(artifacts);
+        sorted.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+        return sorted;
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     *
+     * @param nanos the time in nanoseconds
+     * @return the time in milliseconds
+     */
+    private static long millis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Quotes and escapes the value as a JSON string.
+     *
+     * @param value the value; may be <code>null</code>
+     * @return the JSON string
+     */
+    static String quote(final String value) {
+        if (value == null) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * The totals of the recorded artifacts.
+     */
+    private final class Totals {
+
+        /**
+         * The number of artifacts scanned.
+         */
+        private long scanned;
+        /**
+         * The number of artifacts read from the persistent cache.
+         */
+        private long cached;
+        /**
+         * The number of bytes read.
+         */
+        private long bytesRead;
+        /**
+         * The number of entries visited.
+         */
+        private long entries;
+        /**
+         * The number of classes inspected.
+         */
+        private long classes;
+
+        /**
+         * Computes the totals of the recorded artifacts.
+         */
+        Totals() {
+            for (ArtifactMetrics a : artifacts) {
+                if (SOURCE_CACHE.equals(a.source) || SOURCE_INDEX.equals(a.source)) {
+                    cached += 1;
+                } else {
+                    scanned += 1;
+                }
+                bytesRead += a.bytesRead;
+                entries += a.entries;
+                classes += a.classes;
+            }
+        }
+    }
+
+    /**
+     * The metrics of a single artifact.
+     */
+    private static final class ArtifactMetrics {
+
+        /**
+         * The group id.
+         */
+        private final String groupId;
+        /**
+         * The artifact id.
+         */
+        private final String artifactId;
+        /**
+         * The version.
+         */
+        private final String version;
+        /**
+         * The path to the artifact.
+         */
+        private final String file;
+        /**
+         * Where the result came from.
+         */
+        private final String source;
+        /**
+         * The time taken, in nanoseconds.
+         */
+        private final long nanos;
+        /**
+         * The number of bytes read.
+         */
+        private final long bytesRead;
+        /**
+         * The number of entries visited.
+         */
+        private final int entries;
+        /**
+         * The number of classes inspected.
+         */
+        private final int classes;
+        /**
+         * The highest major version found.
+         */
+        private final int majorVersion;
+
+        /**
+         * Constructs the metrics of an artifact.
+         *
+         * @param dependency the dependency
+         * @param result the result of the scan
+         * @param nanos the time taken, in nanoseconds
+         * @param source where the result came from
+         */
+        ArtifactMetrics(final DependencyReference dependency, final ScanResult result, final long nanos,
+                final String source) {
+            this.groupId = dependency.getGroupId();
+            this.artifactId = dependency.getArtifactId();
+            this.version = dependency.getVersion();
+            this.file = dependency.getPath() == null ? null : dependency.getPath().getPath();
+            this.source = source;
+            this.nanos = nanos;
+            this.bytesRead = result.getBytesRead();
+            this.entries = result.getEntryCount();
+            this.classes = result.getClassCount();
+            this.majorVersion = result.getMajorVersion();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Checks dependencies as they are submitted. With more then one thread the
+ * dependencies are handed to the scanning threads through a bounded queue so
+ * that the producer, i.e. the resolution of the dependency graph, runs
+ * concurrently with the scans and is only held back when the scans fall
+ * behind; with a single thread each dependency is checked on the submitting
+ * thread.
+ * <p>
+ * A fail fast pipeline is cancelled as soon as a dependency is found to be
+ * invalid: the queued dependencies are discarded, further submissions are
+ * ignored, and the scanning threads are interrupted, which closes the
+ * archives they are reading.</p>
+ *
+ * @author Jeremy Long
+ */
+final class ScanPipeline implements AutoCloseable {
+
+    /**
+     * The number of queued dependencies per scanning thread.
+     */
+    private static final int QUEUE_PER_THREAD = 16;
+    /**
+     * How long the producer waits for space in the queue before checking
+     * whether any scanning thread is still running, in milliseconds.
+     */
+    private static final long LIVENESS_CHECK_MILLIS = 100;
+    /**
+     * Marks the end of the queued dependencies; compared by identity.
+     */
+    private static final DependencyReference END = new DependencyReference(null, null, null, null, null, null);
+    /**
+     * The check applied to each dependency; returns <code>true</code> if the
+     * dependency is invalid.
+     */
+    private final Predicate<DependencyReference> check;
+    /**
+     * Whether or not the pipeline is cancelled once a dependency is found to
+     * be invalid.
+     */
+    private final boolean failFast;
+    /**
+     * Whether or not the pipeline has been cancelled.
+     */
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    /**
+     * The dependencies found to be invalid.
+     */
+    private final Queue<DependencyReference> invalid = new ConcurrentLinkedQueue<>();
+    /**
+     * The first exception thrown by a check.
+     */
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    /**
+     * The queue of dependencies to check; <code>null</code> when the
+     * dependencies are checked on the submitting thread.
+     */
+    private final BlockingQueue<DependencyReference> queue;
+    /**
+     * The scanning threads; <code>null</code> when the dependencies are
+     * checked on the submitting thread.
+     */
+    private final ExecutorService executor;
+    /**
+     * The scanning tasks.
+     */
+    private final List<Future<?>> workers;
+    /**
+     * Whether or not every scanning thread was found to have stopped before
+     * the end of the queue was reached.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a new pipeline.
+     *
+     * @param threads the number of scanning threads
+     * @param check the check applied to each dependency; returns
+     * <code>true</code> if the dependency is invalid
+     */
+    ScanPipeline(final int threads, final Predicate<DependencyReference> check) {
+        this(threads, check, false);
+    }
+
+    /**
+     * Constructs a new pipeline.
+     *
+     * @param threads the number of scanning threads
+     * @param check the check applied to each dependency; returns
+     * <code>true</code> if the dependency is invalid
+     * @param failFast whether or not the pipeline is cancelled once a
+     * dependency is found to be invalid
+     */
+    ScanPipeline(final int threads, final Predicate<DependencyReference> check, final boolean failFast) {
+        this.check = check;
+        this.failFast = failFast;
+        if (threads <= 1) {
+            queue = null;
+            executor = null;
+            workers = null;
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory("class-file-format-scan-"));
+        workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                DependencyReference d = queue.take();
+                while (d != END) {
+                    apply(d);
+                    //the interrupt may have been consumed by the check
+                    if (cancelled.get()) {
+                        return null;
+                    }
+                    d = queue.take();
+                }
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Submits a dependency to be checked; blocks while the queue is full.
+     * Dependencies submitted once the pipeline is cancelled, or once every
+     * scanning thread has failed, are ignored; the failure is thrown by
+     * {@link #finish()}.
+     *
+     * @param dependency the dependency
+     * @throws InterruptedException thrown if interrupted while waiting for
+     * space in the queue
+     */
+    void submit(final DependencyReference dependency) throws InterruptedException {
+        if (cancelled.get()) {
+            return;
+        }
+        if (queue == null) {
+            apply(dependency);
+        } else {
+            enqueue(dependency);
+        }
+    }
+
+    /**
+     * Waits for the submitted dependencies to be checked. When the pipeline
+     * was cancelled this waits for the interrupted scans to stop.
+     *
+     * @return the dependencies found to be invalid, in no particular order
+     * @throws InterruptedException thrown if interrupted while waiting, or if
+     * a scanning thread was interrupted without the pipeline being cancelled
+     */
+    List<DependencyReference> finish() throws InterruptedException {
+        if (queue != null) {
+            if (!cancelled.get()) {
+                //a cancellation clears the queue, so there is always room for the end markers
+                for (int i = 0; i < workers.size(); i++) {
+                    if (!enqueue(END)) {
+                        break;
+                    }
+                }
+            }
+            for (Future<?> f : workers) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    //the workers are expected to be interrupted once cancelled
+                    if (!cancelled.get()) {
+                        throw rethrow(ex.getCause());
+                    }
+                }
+            }
+        }
+        final RuntimeException ex = failure.get();
+        if (ex != null) {
+            throw ex;
+        }
+        return new ArrayList<>(invalid);
+    }
+
+    /**
+     * Adds the dependency to the queue, waiting for space while any scanning
+     * thread is running. A worker only stops early by failing with an error,
+     * in which case nothing would ever take from the queue.
+     *
+     * @param dependency the dependency
+     * @return <code>true</code> if the dependency was queued;
+     * <code>false</code> if every scanning thread has stopped
+     * @throws InterruptedException thrown if interrupted while waiting
+     */
+    private boolean enqueue(final DependencyReference dependency) throws InterruptedException {
+        while (!stopped && !queue.offer(dependency, LIVENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            boolean running = false;
+            for (Future<?> f : workers) {
+                running |= !f.isDone();
+            }
+            stopped = !running;
+        }
+        return !stopped;
+    }
+
+    /**
+     * Rethrows the cause of a scanning thread's failure; checks only throw
+     * runtime exceptions, which are recorded by {@link #apply}, so a worker
+     * fails with an error or by being interrupted.
+     *
+     * @param cause the cause of the failure
+     * @return never returns; declared so that the caller can throw the result
+     * @throws InterruptedException thrown if the worker was interrupted
+     */
+    private static RuntimeException rethrow(final Throwable cause) throws InterruptedException {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            final InterruptedException ex = new InterruptedException("A scanning thread was interrupted");
+            ex.initCause(cause);
+            throw ex;
+        }
+        throw new IllegalStateException("A scanning thread failed", cause);
+    }
+
+    /**
+     * Returns whether or not the pipeline has been cancelled.
+     *
+     * @return <code>true</code> if the pipeline has been cancelled
+     */
+    boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Cancels the pipeline: the queued dependencies are discarded and the
+     * scanning threads are interrupted.
+     */
+    void cancel() {
+        if (cancelled.compareAndSet(false, true) && queue != null) {
+            queue.clear();
+            //interrupting a thread closes the file channel it is reading
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops the scanning threads.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks the dependency. Once a check fails the remaining dependencies
+     * are skipped, but still consumed, so that the producer is never blocked.
+     *
+     * @param dependency the dependency
+     */
+    private void apply(final DependencyReference dependency) {
+        if (failure.get() != null || cancelled.get()) {
+            return;
+        }
+        try {
+            if (check.test(dependency)) {
+                invalid.add(dependency);
+                if (failFast) {
+                    cancel();
+                }
+            }
+        } catch (RuntimeException ex) {
+            //checks interrupted by the cancellation are not failures
+            if (!cancelled.get()) {
+                failure.compareAndSet(null, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+/**
+ * The outcome of inspecting the class files contained in a single archive.
+ *
+ * @author Jeremy Long
+ */
+public class ScanResult {
+
+    /**
+     * The highest major version found.
+     */
+    private int majorVersion;
+    /**
+     * The minor version that accompanies the highest major version.
+     */
+    private int minorVersion;
+    /**
+     * The number of archive entries visited.
+     */
+    private int entryCount;
+    /**
+     * The number of class file headers inspected.
+     */
+    private int classCount;
+    /**
+     * The number of class files that did not start with the java class
+     * header.
+     */
+    private int invalidClassCount;
+    /**
+     * The number of nested archives that could not be read.
+     */
+    private int invalidArchiveCount;
+    /**
+     * The number of bytes read from the archive.
+     */
+    private long bytesRead;
+    /**
+     * Whether or not every class file in the archive was inspected.
+     */
+    private boolean complete = true;
+    /**
+     * The path of the first class file found with the highest version; class
+     * files within nested archives are given as
+     * <code>outer.jar!/inner/Name.class</code>.
+     */
+    private String versionEntry;
+
+    /**
+     * Constructs a new, empty scan result.
+     */
+    public ScanResult() {
+    }
+
+    /**
+     * Constructs a complete scan result for a previously recorded version.
+     *
+     * @param majorVersion the highest major version
+     * @param minorVersion the minor version that accompanies the highest major
+     * version
+     */
+    public ScanResult(final int majorVersion, final int minorVersion) {
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+    }
+
+    /**
+     * Constructs a complete scan result for a version recorded elsewhere,
+     * along with the number of invalid class files and nested archives.
+     *
+     * @param majorVersion the highest major version
+     * @param minorVersion the minor version that accompanies the highest major
+     * version
+     * @param invalidClassCount the number of invalid class files
+     * @param invalidArchiveCount the number of nested archives that could not
+     * be read
+     */
+    ScanResult(final int majorVersion, final int minorVersion, final int invalidClassCount,
+            final int invalidArchiveCount) {
+        this(majorVersion, minorVersion);
+        this.invalidClassCount = invalidClassCount;
+        this.invalidArchiveCount = invalidArchiveCount;
+    }
+
+    /**
+     * Records the version of an inspected class file.
+     *
+     * @param major the major version
+     * @param minor the minor version
+     * @return <code>true</code> if the version is higher than any previously
+     * recorded; the caller is expected to record the entry
+     */
+    boolean addVersion(final int major, final int minor) {
+        classCount += 1;
+        if (major > majorVersion || (major == majorVersion && minor > minorVersion)) {
+            majorVersion = major;
+            minorVersion = minor;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records an entry that was visited.
+     */
+    void addEntry() {
+        entryCount += 1;
+    }
+
+    /**
+     * Records a class file that did not start with the java class header.
+     */
+    void addInvalidClass() {
+        invalidClassCount += 1;
+    }
+
+    /**
+     * Records a nested archive that could not be read.
+     */
+    void addInvalidArchive() {
+        invalidArchiveCount += 1;
+    }
+
+    /**
+     * Records bytes read from the archive.
+     *
+     * @param count the number of bytes read
+     */
+    void addBytesRead(final long count) {
+        bytesRead += count;
+    }
+
+    /**
+     * Records that the scan stopped before all class files were inspected.
+     */
+    void stop() {
+        complete = false;
+    }
+
+    /**
+     * Get the value of majorVersion.
+     *
+     * @return the value of majorVersion
+     */
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    /**
+     * Get the value of minorVersion.
+     *
+     * @return the value of minorVersion
+     */
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    /**
+     * Get the value of entryCount.
+     *
+     * @return the value of entryCount
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Get the value of classCount.
+     *
+     * @return the value of classCount
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Get the value of invalidClassCount.
+     *
+     * @return the value of invalidClassCount
+     */
+    public int getInvalidClassCount() {
+        return invalidClassCount;
+    }
+
+    /**
+     * Get the value of invalidArchiveCount.
+     *
+     * @return the value of invalidArchiveCount
+     */
+    public int getInvalidArchiveCount() {
+        return invalidArchiveCount;
+    }
+
+    /**
+     * Get the value of bytesRead.
+     *
+     * @return the value of bytesRead
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns whether or not every class file in the archive was inspected.
+     *
+     * @return <code>true</code> if the scan was not stopped early
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Get the value of versionEntry.
+     *
+     * @return the value of versionEntry
+     */
+    public String getVersionEntry() {
+        return versionEntry;
+    }
+
+    /**
+     * Set the value of versionEntry.
+     *
+     * @param versionEntry new value of versionEntry
+     */
+    void setVersionEntry(final String versionEntry) {
+        this.versionEntry = versionEntry;
+    }
+
+    /**
+     * Standard to string implementation.
+     *
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return String.format("%d.%d (%d classes, %d entries)", majorVersion,
+                minorVersion, classCount, entryCount);
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent cache of the maximum class file version contained in an
+ * artifact. Entries are keyed by a fingerprint of the artifact (the path,
+ * size, last modified time, and optionally the SHA-1 checksum), or by the
+ * fingerprint of its content, and each entry is stored in its own file.
+ * Entries are written to a temporary file and then atomically moved into
+ * place so that multiple Maven processes can share the cache directory. When
+ * the number of entries exceeds the configured maximum the least recently
+ * used entries are removed; listing the entries is expensive, so a process
+ * prunes a cache directory once and then only after it has written enough
+ * entries to exceed the maximum again.
+ *
+ * @author Jeremy Long
+ */
+public class VersionCache {
+
+    /**
+     * The extension of the cache entry files.
+     */
+    private static final String EXTENSION = ".properties";
+    /**
+     * The fraction of the maximum entries retained when the cache is pruned.
+     */
+    private static final double PRUNE_RATIO = 0.9;
+    /**
+     * The prefix of the fingerprints of entries keyed by content; content
+     * fingerprints never start with a path.
+     */
+    private static final String CONTENT_PREFIX = "content|";
+    /**
+     * The number of entries written by this process to each cache directory
+     * since it was last pruned; a directory without a count has not been
+     * pruned by this process.
+     */
+    private static final ConcurrentMap<Path, AtomicInteger> WRITES = new ConcurrentHashMap<>();
+    /**
+     * The cache directory.
+     */
+    private final Path directory;
+    /**
+     * The maximum number of entries retained in the cache.
+     */
+    private final int maxEntries;
+    /**
+     * Whether or not the checksum of the artifact is included in the
+     * fingerprint.
+     */
+    private final boolean checksum;
+
+    /**
+     * Constructs a new version cache.
+     *
+     * @param directory the cache directory
+     * @param maxEntries the maximum number of entries retained in the cache
+     * @param checksum whether or not the SHA-1 checksum of the artifact is
+     * included in the fingerprint
+     */
+    public VersionCache(final File directory, final int maxEntries, final boolean checksum) {
+        this.directory = directory.toPath().toAbsolutePath().normalize();
+        this.maxEntries = maxEntries;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Returns the cached result for the given artifact.
+     *
+     * @param artifact the artifact file
+     * @return the cached result; or <code>null</code> if the artifact has not
+     * been cached
+     * @throws IOException thrown if the cache entry cannot be read
+     */
+    public ScanResult get(final File artifact) throws IOException {
+        return read(fingerprint(artifact));
+    }
+
+    /**
+     * Returns the cached result for an artifact identified by the fingerprint
+     * of its content rather then its location; the result is shared by every
+     * artifact with the same content.
+     *
+     * @param content the content fingerprint of the artifact
+     * @return the cached result; or <code>null</code> if no artifact with the
+     * same content has been cached
+     * @throws IOException thrown if the cache entry cannot be read
+     */
+    public ScanResult getContent(final String content) throws IOException {
+        return read(CONTENT_PREFIX + content);
+    }
+
+    /**
+     * Reads the cache entry.
+     *
+     * @param key the fingerprint of the entry
+     * @return the cached result; or <code>null</code> if there is no entry
+     * @throws IOException thrown if the cache entry cannot be read
+     */
+    private ScanResult read(final String key) throws IOException {
+        final Path entry = entryPath(key);
+        final Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(entry)) {
+            props.load(in);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+        if (!key.equals(props.getProperty("key"))) {
+            return null;
+        }
+        try {
+            final ScanResult result = new ScanResult(Integer.parseInt(props.getProperty("major")),
+                    Integer.parseInt(props.getProperty("minor")));
+            result.setVersionEntry(props.getProperty("entry"));
+            //the modification time is used to determine the least recently used entries
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (NumberFormatException | NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result for the given artifact; only complete results are
+     * stored.
+     *
+     * @param artifact the artifact file
+     * @param result the result of scanning the artifact
+     * @throws IOException thrown if the cache entry cannot be written
+     */
+    public void put(final File artifact, final ScanResult result) throws IOException {
+        if (!result.isComplete()) {
+            return;
+        }
+        write(fingerprint(artifact), result);
+    }
+
+    /**
+     * Stores the result for an artifact identified by the fingerprint of its
+     * content; only complete results are stored.
+     *
+     * @param content the content fingerprint of the artifact
+     * @param result the result of scanning the artifact
+     * @throws IOException thrown if the cache entry cannot be written
+     */
+    public void putContent(final String content, final ScanResult result) throws IOException {
+        if (!result.isComplete()) {
+            return;
+        }
+        write(CONTENT_PREFIX + content, result);
+    }
+
+    /**
+     * Writes the cache entry.
+     *
+     * @param key the fingerprint of the entry
+     * @param result the result of scanning the artifact
+     * @throws IOException thrown if the cache entry cannot be written
+     */
+    private void write(final String key, final ScanResult result) throws IOException {
+        final Path entry = entryPath(key);
+        Files.createDirectories(entry.getParent());
+        final Properties props = new Properties();
+        props.setProperty("key", key);
+        props.setProperty("major", Integer.toString(result.getMajorVersion()));
+        props.setProperty("minor", Integer.toString(result.getMinorVersion()));
+        if (result.getVersionEntry() != null) {
+            props.setProperty("entry", result.getVersionEntry());
+        }
+        final Path temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                props.store(out, null);
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        final AtomicInteger writes = WRITES.get(directory);
+        if (writes != null) {
+            writes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries when the cache contains more
+     * then the maximum number of entries. The cache directory is only listed
+     * the first time it is pruned by this process, i.e. once per build, and
+     * afterwards once this process has written more entries then were
+     * removed below the maximum; the entries written by other processes are
+     * pruned by them.
+     *
+     * @return the number of entries removed
+     * @throws IOException thrown if the cache directory cannot be read
+     */
+    public int prune() throws IOException {
+        final AtomicInteger writes = WRITES.putIfAbsent(directory, new AtomicInteger());
+        if (writes != null) {
+            final int threshold = Math.max(1, maxEntries - (int) (maxEntries * PRUNE_RATIO));
+            if (writes.get() < threshold) {
+                return 0;
+            }
+            writes.set(0);
+        }
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        final List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory)) {
+            for (Path shard : shards) {
+                if (Files.isDirectory(shard)) {
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(shard, "*" + EXTENSION)) {
+                        for (Path f : files) {
+                            entries.add(f);
+                        }
+                    }
+                }
+            }
+        }
+        if (entries.size() <= maxEntries) {
+            return 0;
+        }
+        final List<Map.Entry<Path, Long>> aged = new ArrayList<>(entries.size());
+        for (Path p : entries) {
+            try {
+                aged.add(new AbstractMap.SimpleImmutableEntry<>(p, Files.getLastModifiedTime(p).toMillis()));
+            } catch (NoSuchFileException ex) {
+                //removed by another process
+            }
+        }
+        aged.sort(Map.Entry.comparingByValue());
+        final int remove = aged.size() - (int) (maxEntries * PRUNE_RATIO);
+        int removed = 0;
+        for (int i = 0; i < remove; i++) {
+            if (Files.deleteIfExists(aged.get(i).getKey())) {
+                removed += 1;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Computes the fingerprint of the artifact.
+     *
+     * @param artifact the artifact file
+     * @return the fingerprint
+     * @throws IOException thrown if the artifact cannot be read
+     */
+    String fingerprint(final File artifact) throws IOException {
+        final StringBuilder sb = new StringBuilder(artifact.getCanonicalPath())
+                .append('|').append(artifact.length())
+                .append('|').append(artifact.lastModified());
+        if (checksum) {
+            sb.append('|').append(sha1(artifact));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the path of the cache entry for the given fingerprint.
+     *
+     * @param key the fingerprint
+     * @return the path to the cache entry
+     */
+    private Path entryPath(final String key) {
+        final String hash = Digests.sha1Hex(key);
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + EXTENSION);
+    }
+
+    /**
+     * Returns the SHA-1 checksum of the artifact. The checksum published
+     * alongside the artifact in the local repository is used when available
+     * and at least as new as the artifact; it is trusted without being
+     * verified, as verifying it would read the artifact the checksum is meant
+     * to avoid reading. The checksum therefore detects an artifact replaced by
+     * a download, which rewrites the <code>.sha1</code> file, but not an
+     * artifact modified in place that keeps its size and modification time.
+     *
+     * @param artifact the artifact file
+     * @return the hex encoded checksum
+     * @throws IOException thrown if the artifact cannot be read
+     */
+    private static String sha1(final File artifact) throws IOException {
+        final File published = new File(artifact.getPath() + ".sha1");
+        if (published.isFile() && published.lastModified() >= artifact.lastModified()) {
+            final String value = new String(Files.readAllBytes(published.toPath()), StandardCharsets.US_ASCII).trim();
+            final int space = value.indexOf(' ');
+            final String hex = space > 0 ? value.substring(0, space) : value;
+            if (hex.length() == 40) {
+                return hex.toLowerCase();
+            }
+        }
+        final MessageDigest md = Digests.newSha1();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(artifact.toPath())) {
+            int read = in.read(buffer);
+            while (read >= 0) {
+                md.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        return Digests.toHex(md.digest());
+    }
+}
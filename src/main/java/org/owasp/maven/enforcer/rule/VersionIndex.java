@@ -0,0 +1,281 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A precomputed, read-only index of the highest class file version of each
+ * artifact in a Maven repository, built by the {@link VersionIndexBuilder}.
+ * The index is memory mapped so that opening it costs the same regardless of
+ * its size and each lookup reads a single slot or a few neighbouring slots.
+ * <p>
+ * The file starts with a header (magic, format version, flags, capacity, and
+ * count) followed by an open addressing table of fixed size slots; the
+ * capacity is a power of two and collisions are resolved by linear probing.
+ * Each slot holds the 64-bit hash of the coordinates
+ * (<code>groupId:artifactId:extension[:classifier]:version</code>, zero marks
+ * an empty slot), the fingerprint of the indexed file (its length and last
+ * modified time, so that a file replaced in place is not matched), and the
+ * major and minor version, invalid class count, and invalid archive count as
+ * unsigned shorts. The index is written from a {@link ResultStore}, which
+ * holds the same table in memory.</p>
+ *
+ * @author Jeremy Long
+ */
+public final class VersionIndex {
+
+    /**
+     * The magic number identifying an index file ("CFFI").
+     */
+    static final int MAGIC = 0x43464649;
+    /**
+     * The version of the file format.
+     */
+    static final int FORMAT_VERSION = 2;
+    /**
+     * The flag set when nested archives were scanned.
+     */
+    static final int FLAG_NESTED = 1;
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 24;
+    /**
+     * The size of a slot in bytes.
+     */
+    static final int SLOT_SIZE = 24;
+    /**
+     * The largest value stored in an unsigned short field.
+     */
+    static final int MAX_SHORT = 0xFFFF;
+    /**
+     * The FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /**
+     * The FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+    /**
+     * The mapped index; only absolute reads are used so it can be shared by
+     * the scanning threads.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The number of slots; a power of two.
+     */
+    private final int capacity;
+    /**
+     * The number of indexed artifacts.
+     */
+    private final int size;
+    /**
+     * Whether or not nested archives were scanned when the index was built.
+     */
+    private final boolean nestedArchives;
+
+    /**
+     * Constructs the index from its contents.
+     *
+     * @param buffer the contents of the index file
+     * @throws IOException thrown if the contents are not a valid index
+     */
+    VersionIndex(final ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a class file format version index");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported version index format " + buffer.getInt(4));
+        }
+        this.buffer = buffer;
+        this.nestedArchives = (buffer.getInt(8) & FLAG_NESTED) != 0;
+        this.capacity = buffer.getInt(12);
+        final long count = buffer.getLong(16);
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1 || count < 0 || count >= capacity
+                || buffer.limit() != HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+            throw new IOException("Corrupt class file format version index");
+        }
+        this.size = (int) count;
+    }
+
+    /**
+     * Opens the index file; the file is mapped read only.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException thrown if the file cannot be read or is not a valid
+     * index
+     */
+    public static VersionIndex open(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The version index is too large: " + file);
+            }
+            return new VersionIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns whether or not nested archives were scanned when the index was
+     * built.
+     *
+     * @return <code>true</code> if nested archives were scanned
+     */
+    public boolean isNestedArchives() {
+        return nestedArchives;
+    }
+
+    /**
+     * Returns the number of indexed artifacts.
+     *
+     * @return the number of indexed artifacts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the number of slots
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Copies the slots into the arrays, which must have one element per slot.
+     *
+     * @param keys the keys of the slots
+     * @param fingerprints the fingerprints of the indexed files
+     * @param values the packed results
+     */
+    void copyTo(final long[] keys, final long[] fingerprints, final long[] values) {
+        for (int slot = 0; slot < capacity; slot++) {
+            final int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            keys[slot] = buffer.getLong(offset);
+            fingerprints[slot] = buffer.getLong(offset + 8);
+            values[slot] = buffer.getLong(offset + 16);
+        }
+    }
+
+    /**
+     * Looks up the version of an artifact.
+     *
+     * @param groupId the group id
+     * @param artifactId the artifact id
+     * @param version the version
+     * @param classifier the classifier; may be <code>null</code>
+     * @param extension the extension of the artifact's file, i.e.
+     * <code>jar</code> or <code>war</code>
+     * @param length the length of the artifact's file
+     * @param lastModified the last modified time of the artifact's file; the
+     * artifact is only found if the indexed file had the same length and last
+     * modified time
+     * @return the indexed result; or <code>null</code> if the artifact is not
+     * indexed
+     */
+    public ScanResult get(final String groupId, final String artifactId, final String version,
+            final String classifier, final String extension, final long length, final long lastModified) {
+        final long key = hash(coordinates(groupId, artifactId, version, classifier, extension));
+        final int mask = capacity - 1;
+        //a corrupt index may not have an empty slot; probe each slot at most once
+        int slot = mix(key) & mask;
+        for (int probe = 0; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            final int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            final long current = buffer.getLong(offset);
+            if (current == 0) {
+                return null;
+            }
+            if (current == key) {
+                if (buffer.getLong(offset + 8) != fingerprint(length, lastModified)) {
+                    return null;
+                }
+                return ResultStore.unpack(buffer.getLong(offset + 16));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Computes the fingerprint of an indexed file from its length and last
+     * modified time.
+     *
+     * @param length the length of the file
+     * @param lastModified the last modified time of the file
+     * @return the fingerprint
+     */
+    static long fingerprint(final long length, final long lastModified) {
+        long h = (length ^ (length >>> 33)) * FNV_PRIME;
+        h = (h ^ lastModified) * 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Formats the coordinates of an artifact as they are hashed.
+     *
+     * @param groupId the group id
+     * @param artifactId the artifact id
+     * @param version the version
+     * @param classifier the classifier; may be <code>null</code> or empty
+     * @param extension the extension of the artifact's file
+     * @return the coordinates
+     */
+    static String coordinates(final String groupId, final String artifactId, final String version,
+            final String classifier, final String extension) {
+        final StringBuilder sb = new StringBuilder(64).append(groupId).append(':').append(artifactId)
+                .append(':').append(extension);
+        if (classifier != null && !classifier.isEmpty()) {
+            sb.append(':').append(classifier);
+        }
+        return sb.append(':').append(version).toString();
+    }
+
+    /**
+     * Computes the 64-bit FNV-1a hash of the coordinates; the hash is never
+     * zero as zero marks an empty slot.
+     *
+     * @param coordinates the coordinates
+     * @return the hash
+     */
+    static long hash(final String coordinates) {
+        long hash = FNV_OFFSET;
+        for (byte b : coordinates.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Spreads the bits of the hash to compute the first slot probed.
+     *
+     * @param key the hash of the coordinates
+     * @return the mixed hash
+     */
+    static int mix(final long key) {
+        long h = key ^ (key >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
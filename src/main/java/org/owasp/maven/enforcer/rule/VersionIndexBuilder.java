@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the {@link VersionIndex} of a Maven repository, i.e. nightly for a
+ * shared <code>~/.m2/repository</code>:
+ * <pre>
+ * java -cp class-file-format-rule.jar org.owasp.maven.enforcer.rule.VersionIndexBuilder
+ *     [--threads n] [--nested] repository index
+ * </pre>
+ * <p>
+ * Every archive in the repository is scanned in full; the coordinates are
+ * taken from the repository layout
+ * (<code>group/path/artifactId/version/artifactId-version[-classifier].extension</code>).
+ * Snapshots are not indexed as they are replaced without changing their
+ * version. The results are held in a {@link ResultStore} while the
+ * repository is scanned.</p>
+ *
+ * @author Jeremy Long
+ */
+public class VersionIndexBuilder {
+
+    /**
+     * The usage message.
+     */
+    private static final String USAGE = "usage: java -cp class-file-format-rule.jar "
+            + VersionIndexBuilder.class.getName() + " [--threads n] [--nested] repository index";
+    /**
+     * The results of the scanned artifacts.
+     */
+    private final ResultStore store = new ResultStore();
+
+    /**
+     * Adds an artifact to the index.
+     *
+     * @param groupId the group id
+     * @param artifactId the artifact id
+     * @param version the version
+     * @param classifier the classifier; may be <code>null</code>
+     * @param extension the extension of the artifact's file
+     * @param length the length of the artifact's file
+     * @param lastModified the last modified time of the artifact's file
+     * @param result the complete result of scanning the artifact
+     */
+    public void add(final String groupId, final String artifactId, final String version,
+            final String classifier, final String extension, final long length, final long lastModified,
+            final ScanResult result) {
+        store.put(VersionIndex.hash(VersionIndex.coordinates(groupId, artifactId, version, classifier, extension)),
+                VersionIndex.fingerprint(length, lastModified), result);
+    }
+
+    /**
+     * Returns the number of artifacts added.
+     *
+     * @return the number of artifacts added
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Writes the index; when the same coordinates were added more then once
+     * the last result is kept.
+     *
+     * @param file the index file
+     * @param nestedArchives whether or not nested archives were scanned
+     * @throws IOException thrown if the index cannot be written
+     */
+    public void write(final File file, final boolean nestedArchives) throws IOException {
+        store.write(file, nestedArchives);
+    }
+
+    /**
+     * Determines the coordinates of an archive from its location in the
+     * repository.
+     *
+     * @param repository the root of the repository
+     * @param archive the archive
+     * @return the group id, artifact id, version, classifier (or
+     * <code>null</code>), and extension; or <code>null</code> if the archive
+     * does not follow the repository layout or is a snapshot
+     */
+    static String[] coordinates(final Path repository, final Path archive) {
+        final Path relative = repository.relativize(archive);
+        final int count = relative.getNameCount();
+        if (count < 4) {
+            return null;
+        }
+        final String name = relative.getFileName().toString();
+        final String version = relative.getName(count - 2).toString();
+        final String artifactId = relative.getName(count - 3).toString();
+        final String prefix = artifactId + '-' + version;
+        final int extension = name.lastIndexOf('.');
+        if (version.endsWith("SNAPSHOT") || !name.startsWith(prefix) || extension < prefix.length()) {
+            return null;
+        }
+        String classifier = null;
+        if (extension > prefix.length()) {
+            if (name.charAt(prefix.length()) != '-' || extension == prefix.length() + 1) {
+                return null;
+            }
+            classifier = name.substring(prefix.length() + 1, extension);
+        }
+        final String groupId = relative.subpath(0, count - 3).toString()
+                .replace(relative.getFileSystem().getSeparator(), ".");
+        return new String[]{groupId, artifactId, version, classifier, name.substring(extension + 1)};
+    }
+
+    /**
+     * Scans the repository and writes its index.
+     *
+     * @param repository the root of the repository
+     * @param index the index file
+     * @param scanner the scanner used; its limit must not be set
+     * @return the number of indexed artifacts
+     * @throws IOException thrown if the repository cannot be scanned or the
+     * index cannot be written
+     */
+    public static int build(final Path repository, final File index, final ClassFileFormatScanner scanner)
+            throws IOException {
+        final VersionIndexBuilder builder = new VersionIndexBuilder();
+        scanner.scanAll(Collections.singletonList(repository), new ClassFileFormatScanner.Listener() {
+            @Override
+            public void scanned(final Path archive, final ScanResult result, final long nanos) {
+                final String[] c = coordinates(repository, archive);
+                if (c != null && result.isComplete()) {
+                    final File file = archive.toFile();
+                    builder.add(c[0], c[1], c[2], c[3], c[4], file.length(), file.lastModified(), result);
+                }
+            }
+
+            @Override
+            public void failed(final Path path, final Exception ex) {
+                //unreadable archives are not indexed and are scanned by the rule instead
+            }
+        });
+        builder.write(index, scanner.isScanNestedArchives());
+        return builder.size();
+    }
+
+    /**
+     * Builds the index of a repository from the command line.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(final String[] args) {
+        final ClassFileFormatScanner scanner = new ClassFileFormatScanner();
+        Path repository = null;
+        File index = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--threads".equals(args[i])) {
+                    if (++i >= args.length) {
+                        throw new IllegalArgumentException("Missing value for --threads");
+                    }
+                    scanner.setThreads(Integer.parseInt(args[i]));
+                } else if ("--nested".equals(args[i])) {
+                    scanner.setScanNestedArchives(true);
+                } else if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                } else if (repository == null) {
+                    repository = Paths.get(args[i]).toAbsolutePath();
+                } else if (index == null) {
+                    index = new File(args[i]);
+                } else {
+                    throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                }
+            }
+            if (index == null) {
+                throw new IllegalArgumentException("The repository and index are required");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(ScanCommand.EXIT_USAGE);
+        }
+        final long start = System.nanoTime();
+        try {
+            final int count = build(repository, index, scanner);
+            System.err.println(String.format(Locale.ROOT, "Indexed %d artifacts in %d ms", count,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (IOException ex) {
+            System.err.println("Unable to build the version index: " + ex.getMessage());
+            System.exit(ScanCommand.EXIT_ERROR);
+        }
+    }
+}
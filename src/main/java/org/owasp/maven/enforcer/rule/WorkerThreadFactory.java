@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the daemon threads used to resolve and scan the dependencies.
+ *
+ * @author Jeremy Long
+ */
+class WorkerThreadFactory implements ThreadFactory {
+
+    /**
+     * The prefix of the thread names.
+     */
+    private final String prefix;
+    /**
+     * The number of threads created.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Constructs a new thread factory.
+     *
+     * @param prefix the prefix of the thread names
+     */
+    WorkerThreadFactory(final String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Creates a new worker thread; the scan buffers held by the thread are
+     * released when it exits so that a pool that is shut down does not leave
+     * inflaters and direct buffers behind.
+     *
+     * @param r the runnable to execute
+     * @return the new thread
+     */
+    @Override
+    public Thread newThread(final Runnable r) {
+        final Thread t = new Thread(() -> {
+            try {
+                r.run();
+            } finally {
+                JarScanner.releaseBuffers();
+            }
+        }, prefix + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emits the rule's profiling events to Java Flight Recorder. This class is
+ * only loaded, reflectively, by {@link Recorder} when the
+ * <code>jdk.jfr</code> module is available; no other class may reference it.
+ *
+ * @author Jeremy Long
+ */
+final class JfrRecorder extends Recorder {
+
+    /**
+     * The event type of the dependency graph build.
+     */
+    private final EventType graphBuildType = EventType.getEventType(GraphBuildEvent.class);
+    /**
+     * The event type of an artifact resolution.
+     */
+    private final EventType resolutionType = EventType.getEventType(ResolutionEvent.class);
+    /**
+     * The event type of a dependency scan.
+     */
+    private final EventType scanType = EventType.getEventType(ScanEvent.class);
+
+    @Override
+    boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    Span startGraphBuild(final String project) {
+        if (!graphBuildType.isEnabled()) {
+            return noopSpan();
+        }
+        final GraphBuildEvent event = new GraphBuildEvent();
+        event.project = project;
+        event.begin();
+        return outcome -> {
+            event.outcome = outcome;
+            event.commit();
+        };
+    }
+
+    @Override
+    Span startResolution(final String coordinate) {
+        if (!resolutionType.isEnabled()) {
+            return noopSpan();
+        }
+        final ResolutionEvent event = new ResolutionEvent();
+        event.coordinate = coordinate;
+        event.begin();
+        return outcome -> {
+            event.outcome = outcome;
+            event.commit();
+        };
+    }
+
+    @Override
+    ScanSpan startScan(final DependencyReference dependency) {
+        if (!scanType.isEnabled()) {
+            return noopScanSpan();
+        }
+        final ScanEvent event = new ScanEvent();
+        event.begin();
+        return (result, source, outcome) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.groupId = dependency.getGroupId();
+                event.artifactId = dependency.getArtifactId();
+                event.version = dependency.getVersion();
+                final File path = dependency.getPath();
+                if (path != null) {
+                    event.path = path.getPath();
+                    event.fileSize = path.isFile() ? path.length() : 0;
+                }
+                if (result != null) {
+                    event.entryCount = result.getEntryCount();
+                    event.classCount = result.getClassCount();
+                    event.majorVersion = result.getMajorVersion();
+                    event.bytesRead = result.getBytesRead();
+                }
+                event.source = source;
+                event.outcome = outcome;
+                event.commit();
+            }
+        };
+    }
+
+    /**
+     * Building the dependency graph of a project.
+     */
+    @Name("org.owasp.classfileformat.GraphBuild")
+    @Label("Dependency Graph Build")
+    @Description("Building the dependency graph of a project")
+    @Category({"Maven", "Class File Format Rule"})
+    @StackTrace(false)
+    static final class GraphBuildEvent extends Event {
+
+        /**
+         * The id of the project.
+         */
+        @Label("Project")
+        private String project;
+        /**
+         * The outcome of building the graph.
+         */
+        @Label("Outcome")
+        private String outcome;
+    }
+
+    /**
+     * Resolving an artifact.
+     */
+    @Name("org.owasp.classfileformat.Resolution")
+    @Label("Artifact Resolution")
+    @Description("Resolving a dependency with the artifact resolver")
+    @Category({"Maven", "Class File Format Rule"})
+    @StackTrace(false)
+    static final class ResolutionEvent extends Event {
+
+        /**
+         * The coordinate of the artifact.
+         */
+        @Label("Coordinate")
+        private String coordinate;
+        /**
+         * The outcome of the resolution.
+         */
+        @Label("Outcome")
+        private String outcome;
+    }
+
+    /**
+     * Scanning a dependency.
+     */
+    @Name("org.owasp.classfileformat.Scan")
+    @Label("Dependency Scan")
+    @Description("Reading the class file versions of a dependency")
+    @Category({"Maven", "Class File Format Rule"})
+    @StackTrace(false)
+    static final class ScanEvent extends Event {
+
+        /**
+         * The group id.
+         */
+        @Label("Group Id")
+        private String groupId;
+        /**
+         * The artifact id.
+         */
+        @Label("Artifact Id")
+        private String artifactId;
+        /**
+         * The version.
+         */
+        @Label("Version")
+        private String version;
+        /**
+         * The path to the dependency.
+         */
+        @Label("Path")
+        private String path;
+        /**
+         * The size of the dependency.
+         */
+        @Label("File Size")
+        @DataAmount
+        private long fileSize;
+        /**
+         * The number of bytes read.
+         */
+        @Label("Bytes Read")
+        @DataAmount
+        private long bytesRead;
+        /**
+         * The number of entries visited.
+         */
+        @Label("Entry Count")
+        private int entryCount;
+        /**
+         * The number of classes inspected.
+         */
+        @Label("Class Count")
+        private int classCount;
+        /**
+         * The highest major version found.
+         */
+        @Label("Major Version")
+        private int majorVersion;
+        /**
+         * Where the result came from.
+         */
+        @Label("Source")
+        private String source;
+        /**
+         * The outcome of the scan.
+         */
+        @Label("Outcome")
+        private String outcome;
+    }
+}
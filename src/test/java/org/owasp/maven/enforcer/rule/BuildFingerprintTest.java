@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class BuildFingerprintTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of write and matches methods, of class BuildFingerprint.
+     */
+    @Test
+    public void testMatches() throws Exception {
+        File a = folder.newFile("a.jar");
+        File b = folder.newFile("b with spaces.jar");
+        Files.write(a.toPath(), new byte[]{1, 2, 3});
+        List<DependencyReference> dependencies = Arrays.asList(
+                new DependencyReference("g", "a", "1", a, null, null),
+                new DependencyReference("g", "b", "1", b, null, null));
+        MavenProject project = new MavenProject();
+        String key = BuildFingerprint.projectKey(project, "config");
+        File file = new File(folder.getRoot(), "target/" + BuildFingerprint.FILE_NAME);
+        assertFalse(BuildFingerprint.matches(file, key));
+
+        BuildFingerprint.write(file, key, dependencies);
+        assertTrue(BuildFingerprint.matches(file, key));
+        assertFalse(BuildFingerprint.matches(file, BuildFingerprint.projectKey(project, "other")));
+
+        assertTrue(b.setLastModified(b.lastModified() - 60000));
+        assertFalse(BuildFingerprint.matches(file, key));
+        BuildFingerprint.write(file, key, dependencies);
+        assertTrue(BuildFingerprint.matches(file, key));
+
+        Files.write(a.toPath(), new byte[]{1, 2, 3, 4});
+        assertTrue(a.setLastModified(a.lastModified()));
+        assertFalse(BuildFingerprint.matches(file, key));
+        BuildFingerprint.write(file, key, dependencies);
+        assertTrue(a.delete());
+        assertFalse(BuildFingerprint.matches(file, key));
+
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        assertFalse(BuildFingerprint.matches(file, key));
+    }
+
+    /**
+     * Test of write and matches methods, of class BuildFingerprint; a change
+     * to the POM of a dependency is detected.
+     */
+    @Test
+    public void testMatchesPom() throws Exception {
+        File directory = folder.newFolder("repository", "g", "a", "1");
+        File jar = new File(directory, "a-1.jar");
+        File pom = new File(directory, "a-1.pom");
+        Files.write(jar.toPath(), new byte[]{1, 2, 3});
+        Files.write(pom.toPath(), new byte[]{1, 2});
+        List<DependencyReference> dependencies = Arrays.asList(new DependencyReference("g", "a", "1", jar, null, null));
+        String key = BuildFingerprint.projectKey(new MavenProject(), "config");
+        File file = new File(folder.getRoot(), "target/" + BuildFingerprint.FILE_NAME);
+        BuildFingerprint.write(file, key, dependencies);
+        assertTrue(BuildFingerprint.matches(file, key));
+
+        Files.write(pom.toPath(), new byte[]{1, 2, 3, 4});
+        assertFalse(BuildFingerprint.matches(file, key));
+    }
+
+    /**
+     * Test of hasDynamicVersions method, of class BuildFingerprint.
+     */
+    @Test
+    public void testHasDynamicVersions() {
+        DefaultDependencyNode root = node("root", "1.0", null);
+        DefaultDependencyNode child = node("child", "1.0", "1.0");
+        root.setChildren(Arrays.<DependencyNode>asList(child));
+        assertFalse(BuildFingerprint.hasDynamicVersions(root));
+
+        DefaultDependencyNode range = node("range", "1.2", "[1.0,2.0)");
+        child.setChildren(Arrays.<DependencyNode>asList(range));
+        assertTrue(BuildFingerprint.hasDynamicVersions(root));
+
+        child.setChildren(Arrays.<DependencyNode>asList(node("snapshot", "1.1-SNAPSHOT", "1.1-SNAPSHOT")));
+        assertTrue(BuildFingerprint.hasDynamicVersions(root));
+
+        //the project being built is not a dependency
+        DefaultDependencyNode snapshotRoot = node("root", "1.0-SNAPSHOT", null);
+        snapshotRoot.setChildren(Arrays.<DependencyNode>asList(node("release", "1.0", "1.0")));
+        assertFalse(BuildFingerprint.hasDynamicVersions(snapshotRoot));
+    }
+
+    /**
+     * Creates a dependency node without children.
+     *
+     * @param artifactId the artifact id
+     * @param version the resolved version
+     * @param constraint the version constraint
+     * @return the dependency node
+     */
+    private static DefaultDependencyNode node(final String artifactId, final String version, final String constraint) {
+        Artifact artifact = new DefaultArtifact("org.example", artifactId, version, Artifact.SCOPE_COMPILE, "jar", null,
+                new DefaultArtifactHandler("jar"));
+        DefaultDependencyNode node = new DefaultDependencyNode(null, artifact, null, null, constraint);
+        node.setChildren(Arrays.<DependencyNode>asList());
+        return node;
+    }
+
+    /**
+     * Test of projectKey method, of class BuildFingerprint.
+     */
+    @Test
+    public void testProjectKey() throws Exception {
+        MavenProject project = new MavenProject();
+        String key = BuildFingerprint.projectKey(project, "config");
+        assertEquals(key, BuildFingerprint.projectKey(project, "config"));
+
+        Dependency d = new Dependency();
+        d.setGroupId("g");
+        d.setArtifactId("a");
+        d.setVersion("1");
+        project.getModel().addDependency(d);
+        String withDependency = BuildFingerprint.projectKey(project, "config");
+        assertNotEquals(key, withDependency);
+        d.setVersion("2");
+        assertNotEquals(withDependency, BuildFingerprint.projectKey(project, "config"));
+
+        File pom = folder.newFile("pom.xml");
+        project.setFile(pom);
+        String withPom = BuildFingerprint.projectKey(project, "config");
+        assertTrue(pom.setLastModified(pom.lastModified() - 60000));
+        assertNotEquals(withPom, BuildFingerprint.projectKey(project, "config"));
+    }
+}
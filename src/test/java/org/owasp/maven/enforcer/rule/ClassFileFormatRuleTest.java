@@ -16,9 +16,46 @@
 package org.owasp.maven.enforcer.rule;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Field;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
 import org.apache.maven.enforcer.rule.api.EnforcerRule;
+import org.apache.maven.enforcer.rule.api.EnforcerRuleHelper;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.apache.maven.shared.transfer.artifact.ArtifactCoordinate;
+import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolver;
+import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolverException;
+import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResult;
+import org.codehaus.plexus.PlexusContainer;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 import org.junit.Assume;
 
@@ -28,6 +65,9 @@ import org.junit.Assume;
  */
 public class ClassFileFormatRuleTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
 
     /**
      * Test of execute method, of class BytecodeLevelRule.
@@ -69,13 +109,513 @@ public class ClassFileFormatRuleTest {
         boolean result = instance.hasInvalidClassFileFormat(dependency);
         assertEquals(expResult, result);
     }
+
+    /**
+     * Test of hasInvalidClassFileFormat method, of class ClassFileFormatRule,
+     * with the tiered scan; a trusted manifest skips the full scan.
+     */
+    @Test
+    public void testHasInvalidClassFileFormatTiered() throws Exception {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Build-Jdk-Spec", "1.8");
+        File f = folder.newFile("tiered.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f), manifest)) {
+            for (int i = 0; i < 4; i++) {
+                out.putNextEntry(new JarEntry("a/A" + i + ".class"));
+                out.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, (byte) (i == 3 ? 55 : 52)});
+                out.closeEntry();
+            }
+        }
+        DependencyReference dependency = new DependencyReference("org.example", "tiered", "1.0", f, null, null);
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JAVA_8);
+        instance.setTieredScan(true);
+        instance.setTieredSampleSize(2);
+        assertTrue(instance.hasInvalidClassFileFormat(dependency));
+        assertEquals("a/A3.class", dependency.getVersionEntry());
+
+        instance.setTrustManifest(true);
+        assertFalse(instance.hasInvalidClassFileFormat(dependency));
+
+        instance.setTieredSampleSize(16);
+        assertTrue(instance.hasInvalidClassFileFormat(dependency));
+    }
+
+    /**
+     * Test of findInvalidDependencies method, of class ClassFileFormatRule.
+     */
+    @Test
+    public void testFindInvalidDependencies() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        File istack = getResourceAsFile(this, "istack-commons-runtime-3.0.10.jar");
+        List<DependencyReference> dependencies = new ArrayList<>();
+        for (int x = 9; x >= 0; x--) {
+            dependencies.add(new DependencyReference("junit", "junit", "4.13." + x, junit, null, null));
+            dependencies.add(new DependencyReference("com.sun.istack", "istack-commons-runtime", "3.0." + x, istack, null, null));
+        }
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JAVA_5);
+        List<DependencyReference> expResult = instance.findInvalidDependencies(dependencies);
+        assertEquals(10, expResult.size());
+        assertEquals("3.0.0", expResult.get(0).getVersion());
+        assertEquals("3.0.9", expResult.get(9).getVersion());
+
+        instance.setScanThreads(4);
+        List<DependencyReference> result = instance.findInvalidDependencies(dependencies);
+        assertEquals(expResult, result);
+
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JDK_1_1);
+        result = instance.findInvalidDependencies(dependencies);
+        assertEquals(20, result.size());
+        assertEquals("com.sun.istack", result.get(0).getGroupId());
+        assertEquals("junit", result.get(19).getGroupId());
+    }
+
+    /**
+     * Test of findInvalidDependencies method, of class ClassFileFormatRule,
+     * with failFast enabled.
+     */
+    @Test
+    public void testFindInvalidDependenciesFailFast() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        List<DependencyReference> dependencies = new ArrayList<>();
+        for (int x = 0; x < 20; x++) {
+            dependencies.add(new DependencyReference("junit", "junit", "4.13." + x, junit, null, null));
+        }
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JDK_1_1);
+        instance.setFailFast(true);
+        assertEquals(1, instance.findInvalidDependencies(dependencies).size());
+
+        instance.setScanThreads(4);
+        List<DependencyReference> result = instance.findInvalidDependencies(dependencies);
+        assertTrue(result.size() >= 1 && result.size() < 20);
+
+        instance.setFailFast(false);
+        assertEquals(20, instance.findInvalidDependencies(dependencies).size());
+    }
+
+    /**
+     * Test of collectDependencies method, of class ClassFileFormatRule; the
+     * traversal stops once a fail fast pipeline finds a violation.
+     */
+    @Test
+    public void testCollectDependenciesFailFast() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        List<DependencyNode> nodes = new ArrayList<>();
+        for (int x = 0; x < 50; x++) {
+            nodes.add(node("a" + x, Artifact.SCOPE_COMPILE));
+        }
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JDK_1_4);
+        Set<DependencyReference> references = new HashSet<>();
+        try (ScanPipeline pipeline = new ScanPipeline(1, instance::hasInvalidClassFileFormat, true)) {
+            assertFalse(instance.collectDependencies(references, new MavenProject(), nodes, null,
+                    new CountingResolver(junit), pipeline));
+            assertEquals(1, references.size());
+            assertEquals(1, pipeline.finish().size());
+        }
+    }
+
+    /**
+     * Test of collectDependencies method, of class ClassFileFormatRule; each
+     * distinct coordinate is resolved once and a coordinate reached through
+     * several nodes with the same scope is collected once.
+     */
+    @Test
+    public void testCollectDependencies() throws Exception {
+        File f = getResourceAsFile(this, "junit-4.13.1.jar");
+        DependencyNode c1 = node("c", Artifact.SCOPE_COMPILE);
+        DependencyNode c2 = node("c", Artifact.SCOPE_COMPILE);
+        DependencyNode a = node("a", Artifact.SCOPE_COMPILE, c1);
+        DependencyNode b = node("b", Artifact.SCOPE_RUNTIME, c2);
+        DependencyNode d = node("d", Artifact.SCOPE_TEST);
+        CountingResolver resolver = new CountingResolver(f);
+
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setResolveThreads(4);
+        Set<DependencyReference> references = new HashSet<>();
+        boolean failed = instance.collectDependencies(references, new MavenProject(), Arrays.asList(a, b, d), null, resolver);
+        assertFalse(failed);
+        assertEquals(3, references.size());
+        assertEquals(3, resolver.calls.get());
+        for (DependencyReference r : references) {
+            List<String> trail = r.getDependencyTrail();
+            assertEquals("org.example:" + r.getArtifactId() + ":jar:1.0", trail.get(trail.size() - 1));
+        }
+
+        DependencyNode missing = node("missing", Artifact.SCOPE_COMPILE);
+        resolver = new CountingResolver(f);
+        references = new HashSet<>();
+        failed = instance.collectDependencies(references, new MavenProject(), Arrays.asList(a, missing), null, resolver);
+        assertTrue(failed);
+        assertEquals(2, references.size());
+    }
+
+    /**
+     * Test of collectDependencies method, of class ClassFileFormatRule; nodes
+     * whose artifact already has a file are not resolved again.
+     */
+    @Test
+    public void testCollectDependenciesTrustResolved() throws Exception {
+        File f = getResourceAsFile(this, "junit-4.13.1.jar");
+        List<DependencyNode> nodes = new ArrayList<>();
+        for (int x = 0; x < 2000; x++) {
+            DependencyNode n = node("a" + x, Artifact.SCOPE_COMPILE);
+            if (x % 10 != 0) {
+                n.getArtifact().setFile(f);
+            }
+            nodes.add(n);
+        }
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        CountingResolver resolver = new CountingResolver(f);
+        Set<DependencyReference> references = new HashSet<>();
+        assertFalse(instance.collectDependencies(references, new MavenProject(), nodes, null, resolver));
+        assertEquals(2000, references.size());
+        assertEquals(200, resolver.calls.get());
+
+        instance.setTrustResolvedArtifacts(false);
+        resolver = new CountingResolver(f);
+        references = new HashSet<>();
+        assertFalse(instance.collectDependencies(references, new MavenProject(), nodes, null, resolver));
+        assertEquals(2000, references.size());
+        assertEquals(2000, resolver.calls.get());
+    }
+
+    /**
+     * Test of collectDependencies method, of class ClassFileFormatRule; a
+     * reactor sibling resolved to its output directory is scanned.
+     */
+    @Test
+    public void testCollectDependenciesDirectory() throws Exception {
+        File classes = folder.newFolder("classes");
+        Files.createDirectories(classes.toPath().resolve("a"));
+        Files.write(classes.toPath().resolve("a/A.class"),
+                new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 53});
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JAVA_8);
+        Set<DependencyReference> references = new HashSet<>();
+        assertFalse(instance.collectDependencies(references, new MavenProject(),
+                Arrays.asList(node("sibling", Artifact.SCOPE_COMPILE)), null, new CountingResolver(classes)));
+        assertEquals(1, references.size());
+        DependencyReference sibling = references.iterator().next();
+        assertEquals(classes, sibling.getPath());
+        assertTrue(instance.hasInvalidClassFileFormat(sibling));
+        assertNull(instance.getDependencySetId(references));
+    }
+
+    /**
+     * Test of collectDependencies method, of class ClassFileFormatRule; a
+     * deep graph of shared subtrees is walked in linear time and a node
+     * reachable through an excluded scope is still collected through an
+     * included one.
+     */
+    @Test
+    public void testCollectDependenciesDiamonds() throws Exception {
+        File f = getResourceAsFile(this, "junit-4.13.1.jar");
+        //5,000 layers of two nodes, each depending on both nodes of the next layer
+        final AtomicInteger walked = new AtomicInteger();
+        List<DependencyNode> layer = new ArrayList<>();
+        for (int depth = 4999; depth >= 0; depth--) {
+            List<DependencyNode> next = new ArrayList<>();
+            for (int x = 0; x < 2; x++) {
+                Artifact artifact = new DefaultArtifact("org.example", "n" + depth + "-" + x, "1.0",
+                        Artifact.SCOPE_COMPILE, "jar", null, new DefaultArtifactHandler("jar"));
+                artifact.setFile(f);
+                DefaultDependencyNode n = new DefaultDependencyNode(null, artifact, null, null, null) {
+                    @Override
+                    public List<DependencyNode> getChildren() {
+                        walked.incrementAndGet();
+                        return super.getChildren();
+                    }
+                };
+                n.setChildren(layer);
+                next.add(n);
+            }
+            layer = next;
+        }
+        DependencyNode shared = node("shared", Artifact.SCOPE_COMPILE);
+        shared.getArtifact().setFile(f);
+        List<DependencyNode> nodes = new ArrayList<>(layer);
+        nodes.add(0, node("tests", Artifact.SCOPE_TEST, shared));
+        nodes.add(shared);
+
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        CountingResolver resolver = new CountingResolver(f);
+        Set<DependencyReference> references = new HashSet<>();
+        assertFalse(instance.collectDependencies(references, new MavenProject(), nodes, null, resolver));
+        assertEquals(10001, references.size());
+        assertEquals(0, resolver.calls.get());
+        assertEquals(10000, walked.get());
+    }
+
+    /**
+     * Test of collectDependencies method, of class ClassFileFormatRule; the
+     * dependencies are scanned by the pipeline as they are resolved.
+     */
+    @Test
+    public void testCollectDependenciesPipeline() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        List<DependencyNode> nodes = new ArrayList<>();
+        for (int x = 0; x < 50; x++) {
+            nodes.add(node("a" + x, Artifact.SCOPE_COMPILE));
+        }
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JDK_1_4);
+        instance.setResolveThreads(4);
+        Set<DependencyReference> references = new HashSet<>();
+        try (ScanPipeline pipeline = new ScanPipeline(4, instance::hasInvalidClassFileFormat)) {
+            assertFalse(instance.collectDependencies(references, new MavenProject(), nodes, null,
+                    new CountingResolver(junit), pipeline));
+            assertEquals(50, references.size());
+            assertEquals(50, pipeline.finish().size());
+        }
+    }
+
+    /**
+     * Test of collectDependencies method, of class ClassFileFormatRule;
+     * without resolve threads the pipeline starts scanning before the last
+     * dependency is resolved.
+     */
+    @Test(timeout = 30000)
+    public void testCollectDependenciesPipelineSingleResolveThread() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        List<DependencyNode> nodes = new ArrayList<>();
+        for (int x = 0; x < 5; x++) {
+            nodes.add(node("a" + x, Artifact.SCOPE_COMPILE));
+        }
+        nodes.add(node("last", Artifact.SCOPE_COMPILE));
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        instance.setSupportedClassFileFormat(ClassFileFormatRule.JDK_1_4);
+        instance.setResolveThreads(1);
+        final CountDownLatch scanning = new CountDownLatch(1);
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        CountingResolver resolver = new CountingResolver(junit) {
+            @Override
+            public ArtifactResult resolveArtifact(ProjectBuildingRequest buildingRequest, ArtifactCoordinate coordinate)
+                    throws ArtifactResolverException {
+                if ("last".equals(coordinate.getArtifactId())) {
+                    try {
+                        overlapped.set(scanning.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.resolveArtifact(buildingRequest, coordinate);
+            }
+        };
+        Set<DependencyReference> references = new HashSet<>();
+        try (ScanPipeline pipeline = new ScanPipeline(2, d -> {
+            scanning.countDown();
+            return instance.hasInvalidClassFileFormat(d);
+        })) {
+            assertFalse(instance.collectDependencies(references, new MavenProject(), nodes, null, resolver, pipeline));
+            assertTrue(overlapped.get());
+            assertEquals(6, references.size());
+            assertEquals(6, pipeline.finish().size());
+        }
+    }
+
+    /**
+     * Test of execute method, of class ClassFileFormatRule; once the
+     * dependencies of a SNAPSHOT project are verified the next build skips
+     * the rule without building the dependency graph.
+     */
+    @Test
+    public void testExecuteSkipUnchanged() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        MavenProject project = new MavenProject();
+        project.setGroupId("org.example");
+        project.setArtifactId("project");
+        project.setVersion("1.0-SNAPSHOT");
+        project.getBuild().setDirectory(folder.newFolder("target").getAbsolutePath());
+        Artifact artifact = new DefaultArtifact("org.example", "project", "1.0-SNAPSHOT", null, "jar", null,
+                new DefaultArtifactHandler("jar"));
+        DefaultDependencyNode root = new DefaultDependencyNode(null, artifact, null, null, null);
+        root.setChildren(Arrays.asList(node("a", Artifact.SCOPE_COMPILE)));
+        final AtomicInteger graphs = new AtomicInteger();
+        DependencyGraphBuilder graphBuilder = (request, filter) -> {
+            graphs.incrementAndGet();
+            return root;
+        };
+        CountingResolver resolver = new CountingResolver(junit);
+        MavenSession session = newSession(new DefaultMavenExecutionRequest());
+        EnforcerRuleHelper helper = new StubHelper(project, session, resolver, graphBuilder);
+
+        for (int build = 0; build < 2; build++) {
+            ClassFileFormatRule instance = new ClassFileFormatRule();
+            instance.setSkipUnchanged(true);
+            instance.execute(helper);
+        }
+        assertTrue(new File(project.getBuild().getDirectory(), BuildFingerprint.FILE_NAME).isFile());
+        assertEquals(1, graphs.get());
+        assertEquals(1, resolver.calls.get());
+    }
+
+    /**
+     * Creates a Maven session for the request. The session constructors need
+     * the Maven 3 settings model, which the maven-project 2.x dependency
+     * shadows on the test class path, so the session is allocated without
+     * calling a constructor.
+     *
+     * @param request the execution request
+     * @return the session
+     */
+    static MavenSession newSession(MavenExecutionRequest request) throws Exception {
+        Field unsafeField = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+        unsafeField.setAccessible(true);
+        Object unsafe = unsafeField.get(null);
+        MavenSession session = (MavenSession) unsafe.getClass().getMethod("allocateInstance", Class.class)
+                .invoke(unsafe, MavenSession.class);
+        Field requestField = MavenSession.class.getDeclaredField("request");
+        requestField.setAccessible(true);
+        requestField.set(session, request);
+        return session;
+    }
+
+    /**
+     * Creates a dependency node.
+     *
+     * @param artifactId the artifact id
+     * @param scope the scope
+     * @param children the child nodes
+     * @return the dependency node
+     */
+    static DependencyNode node(String artifactId, String scope, DependencyNode... children) {
+        Artifact artifact = new DefaultArtifact("org.example", artifactId, "1.0", scope, "jar", null,
+                new DefaultArtifactHandler("jar"));
+        DefaultDependencyNode node = new DefaultDependencyNode(null, artifact, null, null, null);
+        node.setChildren(Arrays.asList(children));
+        return node;
+    }
+
+    /**
+     * An enforcer rule helper that evaluates the project, session, and
+     * remote repositories, and provides the resolver and graph builder.
+     */
+    static class StubHelper implements EnforcerRuleHelper {
+
+        final MavenProject project;
+        final MavenSession session;
+        final ArtifactResolver resolver;
+        final DependencyGraphBuilder graphBuilder;
+
+        StubHelper(MavenProject project, MavenSession session, ArtifactResolver resolver,
+                DependencyGraphBuilder graphBuilder) {
+            this.project = project;
+            this.session = session;
+            this.resolver = resolver;
+            this.graphBuilder = graphBuilder;
+        }
+
+        @Override
+        public Log getLog() {
+            return new SystemStreamLog();
+        }
+
+        @Override
+        public <T> T getComponent(Class<T> clazz) {
+            if (clazz == ArtifactResolver.class) {
+                return clazz.cast(resolver);
+            }
+            if (clazz == DependencyGraphBuilder.class) {
+                return clazz.cast(graphBuilder);
+            }
+            throw new UnsupportedOperationException(clazz.getName());
+        }
+
+        @Override
+        public Object getComponent(String role) {
+            throw new UnsupportedOperationException(role);
+        }
+
+        @Override
+        public Object getComponent(String role, String roleHint) {
+            throw new UnsupportedOperationException(role);
+        }
+
+        @Override
+        public <T> T getComponent(Class<T> clazz, String roleHint) {
+            throw new UnsupportedOperationException(clazz.getName());
+        }
+
+        @Override
+        public Map<String, ?> getComponentMap(String role) {
+            throw new UnsupportedOperationException(role);
+        }
+
+        @Override
+        public List<?> getComponentList(String role) {
+            throw new UnsupportedOperationException(role);
+        }
+
+        @Override
+        public PlexusContainer getContainer() {
+            return null;
+        }
+
+        @Override
+        public Object evaluate(String expression) {
+            switch (expression) {
+                case "${project}":
+                    return project;
+                case "${session}":
+                    return session;
+                case "${project.remoteArtifactRepositories}":
+                    return new ArrayList<>();
+                default:
+                    throw new UnsupportedOperationException(expression);
+            }
+        }
+
+        @Override
+        public File alignToBaseDirectory(File file) {
+            return file;
+        }
+    }
+
+    /**
+     * An artifact resolver that resolves every artifact, other then those
+     * named "missing", to the same file and counts the calls made.
+     */
+    static class CountingResolver implements ArtifactResolver {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final File file;
+
+        CountingResolver(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public ArtifactResult resolveArtifact(ProjectBuildingRequest buildingRequest, Artifact artifact) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ArtifactResult resolveArtifact(ProjectBuildingRequest buildingRequest, ArtifactCoordinate coordinate)
+                throws ArtifactResolverException {
+            calls.incrementAndGet();
+            if ("missing".equals(coordinate.getArtifactId())) {
+                throw new ArtifactResolverException("missing", new Exception());
+            }
+            final Artifact artifact = new DefaultArtifact(coordinate.getGroupId(), coordinate.getArtifactId(),
+                    coordinate.getVersion(), null, coordinate.getExtension(), coordinate.getClassifier(),
+                    new DefaultArtifactHandler("jar"));
+            artifact.setFile(file);
+            artifact.setResolved(true);
+            return () -> artifact;
+        }
+    }
+
     /**
      * Test of isCacheable method, of class BytecodeLevelRule.
      */
     @Test
     public void testIsCacheable() {
         ClassFileFormatRule instance = new ClassFileFormatRule();
-        boolean expResult = false;
+        boolean expResult = true;
         boolean result = instance.isCacheable();
         assertEquals(expResult, result);
     }
@@ -90,6 +630,45 @@ public class ClassFileFormatRuleTest {
         boolean expResult = false;
         boolean result = instance.isResultValid(cachedRule);
         assertEquals(expResult, result);
+
+        File f = getResourceAsFile(this, "junit-4.13.1.jar");
+        List<DependencyReference> dependencies = new ArrayList<>();
+        dependencies.add(new DependencyReference("junit", "junit", "4.13.1", f, null, null));
+        ClassFileFormatRule cached = new ClassFileFormatRule();
+        cached.markVerified(cached.getDependencySetId(dependencies));
+
+        result = instance.isResultValid(cached);
+        assertEquals(expResult, result);
+        assertTrue(instance.isVerified(instance.getDependencySetId(dependencies)));
+
+        ClassFileFormatRule other = new ClassFileFormatRule();
+        other.setSupportedClassFileFormat(ClassFileFormatRule.JAVA_8);
+        other.isResultValid(cached);
+        assertFalse(other.isVerified(other.getDependencySetId(dependencies)));
+    }
+
+    /**
+     * Test of getDependencySetId method, of class ClassFileFormatRule; a jar
+     * rebuilt at the same path changes the id.
+     */
+    @Test
+    public void testGetDependencySetId() throws Exception {
+        File f = folder.newFile("a-1.0-SNAPSHOT.jar");
+        Files.write(f.toPath(), new byte[]{1, 2, 3});
+        List<DependencyReference> dependencies = new ArrayList<>();
+        dependencies.add(new DependencyReference("g", "a", "1.0-SNAPSHOT", f, null, null));
+        ClassFileFormatRule instance = new ClassFileFormatRule();
+        String id = instance.getDependencySetId(dependencies);
+        assertEquals(id, instance.getDependencySetId(dependencies));
+
+        assertTrue(f.setLastModified(f.lastModified() - 60000));
+        String touched = instance.getDependencySetId(dependencies);
+        assertNotEquals(id, touched);
+
+        long modified = f.lastModified();
+        Files.write(f.toPath(), new byte[]{1, 2, 3, 4});
+        assertTrue(f.setLastModified(modified));
+        assertNotEquals(touched, instance.getDependencySetId(dependencies));
     }
 
     /**
@@ -99,7 +678,21 @@ public class ClassFileFormatRuleTest {
     public void testGetCacheId() {
         ClassFileFormatRule instance = new ClassFileFormatRule();
         String result = instance.getCacheId();
-        assertNull(result);
+        assertNotNull(result);
+        assertEquals(result, new ClassFileFormatRule().getCacheId());
+
+        instance.setExcludeScopeProvided(false);
+        assertNotEquals(result, instance.getCacheId());
+
+        ClassFileFormatRule nested = new ClassFileFormatRule();
+        nested.setScanNestedArchives(true);
+        assertNotEquals(result, nested.getCacheId());
+
+        ClassFileFormatRule tiered = new ClassFileFormatRule();
+        tiered.setTieredScan(true);
+        assertEquals(result, tiered.getCacheId());
+        tiered.setTrustManifest(true);
+        assertNotEquals(result, tiered.getCacheId());
     }
     
     
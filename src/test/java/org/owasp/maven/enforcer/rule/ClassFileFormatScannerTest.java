@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ClassFileFormatScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of scan method, of class ClassFileFormatScanner.
+     */
+    @Test
+    public void testScan() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        ClassFileFormatScanner instance = new ClassFileFormatScanner();
+        ScanResult result = instance.scan(junit.toPath());
+        assertEquals(ClassFileFormatRule.JAVA_5, result.getMajorVersion());
+        assertTrue(result.isComplete());
+
+        DependencyReference dependency = new DependencyReference("junit", "junit", "4.13.1", junit, null, null);
+        assertEquals(ClassFileFormatRule.JAVA_5, instance.scan(dependency).getMajorVersion());
+
+        Path classes = folder.newFolder("classes").toPath();
+        Files.write(classes.resolve("A.class"), new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 52});
+        assertEquals(ClassFileFormatRule.JAVA_8, instance.scan(classes).getMajorVersion());
+    }
+
+    /**
+     * Test of scanAll method, of class ClassFileFormatScanner.
+     */
+    @Test
+    public void testScanAll() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        File istack = getResourceAsFile(this, "istack-commons-runtime-3.0.10.jar");
+        Path repository = folder.newFolder("repository").toPath();
+        for (int i = 0; i < 10; i++) {
+            Path dir = Files.createDirectories(repository.resolve("g/a/" + i));
+            Files.copy(junit.toPath(), dir.resolve("a-" + i + ".jar"));
+            Files.write(dir.resolve("a-" + i + ".pom"), new byte[]{1});
+        }
+        Path missing = folder.getRoot().toPath().resolve("missing.jar");
+
+        Map<Path, ScanResult> results = new ConcurrentHashMap<>();
+        Map<Path, Exception> failures = new ConcurrentHashMap<>();
+        ClassFileFormatScanner instance = new ClassFileFormatScanner();
+        instance.setThreads(3);
+        long count = instance.scanAll(Arrays.asList(repository, istack.toPath(), missing),
+                new ClassFileFormatScanner.Listener() {
+            @Override
+            public void scanned(Path archive, ScanResult result, long nanos) {
+                results.put(archive, result);
+            }
+
+            @Override
+            public void failed(Path path, Exception ex) {
+                failures.put(path, ex);
+            }
+        });
+        assertEquals(12, count);
+        assertEquals(11, results.size());
+        assertEquals(ClassFileFormatRule.JAVA_5, results.get(repository.resolve("g/a/3/a-3.jar")).getMajorVersion());
+        assertEquals(ClassFileFormatRule.JAVA_8, results.get(istack.toPath()).getMajorVersion());
+        assertTrue(failures.containsKey(missing));
+    }
+
+    /**
+     * Test of scanAll method, of class ClassFileFormatScanner; the sources
+     * are no longer queued once every scanning thread has failed with an
+     * error.
+     */
+    @Test(timeout = 10000)
+    public void testScanAllWorkersFailed() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        //more then the queue holds, so the producer would block on a full queue
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sources.add(junit.toPath());
+        }
+        final LinkageError error = new LinkageError("broken");
+        ClassFileFormatScanner instance = new ClassFileFormatScanner();
+        instance.setThreads(2);
+        try {
+            instance.scanAll(sources, new ClassFileFormatScanner.Listener() {
+                @Override
+                public void scanned(Path archive, ScanResult result, long nanos) {
+                    throw error;
+                }
+
+                @Override
+                public void failed(Path path, Exception ex) {
+                    //the archive is readable
+                }
+            });
+            fail("Expected an IOException");
+        } catch (IOException ex) {
+            assertSame(error, ex.getCause());
+        }
+    }
+
+    /**
+     * Test of isArchive method, of class ClassFileFormatScanner.
+     */
+    @Test
+    public void testIsArchive() {
+        assertTrue(ClassFileFormatScanner.isArchive(new File("a.jar").toPath()));
+        assertTrue(ClassFileFormatScanner.isArchive(new File("a.war").toPath()));
+        assertFalse(ClassFileFormatScanner.isArchive(new File("a.pom").toPath()));
+    }
+
+    /**
+     * Returns the given resource as a File using the object's class loader. The
+     * org.junit.Assume API is used so that test cases are skipped if the
+     * resource is not available.
+     *
+     * @param o the object used to obtain a reference to the class loader
+     * @param resource the name of the resource to load
+     * @return the resource as an File
+     */
+    private static File getResourceAsFile(Object o, String resource) {
+        try {
+            File f = new File(o.getClass().getClassLoader().getResource(resource).toURI().getPath());
+            Assume.assumeTrue(String.format("%n%n[SEVERE] Unable to load resource for test case: %s%n%n", resource), f.exists());
+            return f;
+        } catch (URISyntaxException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+}
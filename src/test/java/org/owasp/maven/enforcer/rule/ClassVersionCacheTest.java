@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ClassVersionCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of get and put methods, of class ClassVersionCache.
+     */
+    @Test
+    public void testGetPut() {
+        ClassVersionCache instance = new ClassVersionCache(100000);
+        for (int i = 0; i < 50000; i++) {
+            instance.put(name("a/A" + i + ".class"), i * 31, 100 + i, 200 + i, 45 + i % 20, i % 3);
+        }
+        int found = 0;
+        for (int i = 0; i < 50000; i++) {
+            int value = instance.get(name("a/A" + i + ".class"), i * 31, 100 + i, 200 + i);
+            if (value >= 0) {
+                found += 1;
+                assertEquals(45 + i % 20, value >>> 16);
+                assertEquals(i % 3, value & 0xFFFF);
+            }
+        }
+        assertTrue("found " + found, found > 45000);
+        assertEquals(-1, instance.get(name("a/A7.class"), 7 * 31, 107, 208));
+        assertEquals(-1, instance.get(name("a/A7.class"), 8 * 31, 107, 207));
+        assertEquals(-1, instance.get(name("a/A8.class"), 7 * 31, 107, 207));
+        assertEquals(found, instance.getHits());
+        assertEquals(50000 - found + 3, instance.getMisses());
+    }
+
+    /**
+     * Test of put method, of class ClassVersionCache; a full cache evicts the
+     * least recently used class.
+     */
+    @Test
+    public void testEviction() {
+        ClassVersionCache instance = new ClassVersionCache(4);
+        for (int i = 0; i < 4; i++) {
+            instance.put(name("A" + i), i, i, i, 52, 0);
+        }
+        assertEquals(52 << 16, instance.get(name("A0"), 0, 0, 0));
+        instance.put(name("A4"), 4, 4, 4, 55, 0);
+        assertEquals(52 << 16, instance.get(name("A0"), 0, 0, 0));
+        assertEquals(-1, instance.get(name("A1"), 1, 1, 1));
+        assertEquals(52 << 16, instance.get(name("A2"), 2, 2, 2));
+        assertEquals(55 << 16, instance.get(name("A4"), 4, 4, 4));
+    }
+
+    /**
+     * Test of save and load methods, of class ClassVersionCache.
+     */
+    @Test
+    public void testSaveLoad() throws Exception {
+        File file = new File(folder.getRoot(), "classes.bin");
+        ClassVersionCache instance = ClassVersionCache.load(10000, file);
+        for (int i = 0; i < 500; i++) {
+            instance.put(name("A" + i), i, i, i, 50 + i % 10, 0);
+        }
+        instance.save();
+        assertTrue(file.isFile());
+
+        ClassVersionCache loaded = ClassVersionCache.load(10000, file);
+        for (int i = 0; i < 500; i++) {
+            assertEquals(50 + i % 10, loaded.get(name("A" + i), i, i, i) >>> 16);
+        }
+        //a cache with a different size re-adds the saved classes
+        ClassVersionCache resized = ClassVersionCache.load(40000, file);
+        assertEquals(59, resized.get(name("A499"), 499, 499, 499) >>> 16);
+
+        //an unmodified cache is not saved again
+        assertTrue(file.delete());
+        loaded.save();
+        assertFalse(file.exists());
+
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        assertEquals(-1, ClassVersionCache.load(1000, file).get(name("A1"), 1, 1, 1));
+    }
+
+    /**
+     * Computes the hash of an entry name.
+     *
+     * @param name the entry name
+     * @return the hash
+     */
+    private static long name(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return ClassVersionCache.nameHash(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+}
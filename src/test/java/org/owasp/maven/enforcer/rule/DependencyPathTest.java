@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.util.Arrays;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class DependencyPathTest {
+
+    /**
+     * Test of toList method, of class DependencyPath.
+     */
+    @Test
+    public void testToList() {
+        DependencyPath root = new DependencyPath("p", null);
+        DependencyPath instance = new DependencyPath("b", new DependencyPath("a", root));
+        assertEquals(Arrays.asList("p", "a", "b"), instance.toList());
+        assertEquals(Arrays.asList("p"), root.toList());
+        assertEquals("p -> a -> b", instance.toString());
+    }
+
+    /**
+     * Test of pathOf method, of class DependencyPath.Builder; nodes sharing
+     * ancestors share their path.
+     */
+    @Test
+    public void testPathOf() {
+        DefaultDependencyNode project = node(null, "project");
+        DefaultDependencyNode a = node(project, "a");
+        DefaultDependencyNode b = node(a, "b");
+        DefaultDependencyNode c = node(a, "c");
+        DependencyPath.Builder instance = new DependencyPath.Builder();
+        DependencyPath pathB = instance.pathOf(b);
+        DependencyPath pathC = instance.pathOf(c);
+        assertEquals(Arrays.asList("org.example:project:jar:1.0", "org.example:a:jar:1.0", "org.example:b:jar:1.0"),
+                pathB.toList());
+        assertSame(pathB.getParent(), pathC.getParent());
+        assertSame(pathB.getParent(), instance.pathOf(a));
+        assertSame(pathC, instance.pathOf(c));
+    }
+
+    /**
+     * Test of intern method, of class DependencyPath.Builder.
+     */
+    @Test
+    public void testIntern() {
+        DependencyPath.Builder instance = new DependencyPath.Builder();
+        String first = instance.intern(new String("org.example"));
+        assertSame(first, instance.intern(new String("org.example")));
+        assertNull(instance.intern(null));
+    }
+
+    /**
+     * Creates a dependency node.
+     *
+     * @param parent the parent node
+     * @param artifactId the artifact id
+     * @return the dependency node
+     */
+    private static DefaultDependencyNode node(DependencyNode parent, String artifactId) {
+        Artifact artifact = new DefaultArtifact("org.example", artifactId, "1.0", Artifact.SCOPE_COMPILE, "jar", null,
+                new DefaultArtifactHandler("jar"));
+        return new DefaultDependencyNode(parent, artifact, null, null, null);
+    }
+}
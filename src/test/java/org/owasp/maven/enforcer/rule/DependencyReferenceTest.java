@@ -7,6 +7,7 @@ package org.owasp.maven.enforcer.rule;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
 import org.junit.After;
@@ -138,6 +139,26 @@ public class DependencyReferenceTest {
         assertNull(instance.getGroupId());
     }
 
+    /**
+     * Test of getClassifier method, of class DependencyReference.
+     */
+    @Test
+    public void testGetClassifier() {
+        DependencyReference instance = buildReference();
+        assertNull(instance.getClassifier());
+    }
+
+    /**
+     * Test of setClassifier method, of class DependencyReference.
+     */
+    @Test
+    public void testSetClassifier() {
+        String classifier = "tests";
+        DependencyReference instance = buildReference();
+        instance.setClassifier(classifier);
+        assertEquals(classifier, instance.getClassifier());
+    }
+
     /**
      * Test of getDependencyTrail method, of class DependencyReference.
      */
@@ -159,6 +180,18 @@ public class DependencyReferenceTest {
         assertNull(instance.getDependencyTrail());
     }
 
+    /**
+     * Test of setDependencyPath method, of class DependencyReference.
+     */
+    @Test
+    public void testSetDependencyPath() {
+        DependencyReference instance = buildReference();
+        instance.setDependencyPath(new DependencyPath("c", new DependencyPath("p", null)));
+        assertEquals(Arrays.asList("p", "c"), instance.getDependencyTrail());
+        instance.setDependencyTrail(Arrays.asList("x"));
+        assertEquals(Arrays.asList("x"), instance.getDependencyTrail());
+    }
+
     /**
      * Test of toString method, of class DependencyReference.
      */
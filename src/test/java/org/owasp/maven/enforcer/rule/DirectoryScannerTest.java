@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class DirectoryScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of scan method, of class DirectoryScanner.
+     */
+    @Test
+    public void testScan() throws Exception {
+        File classes = folder.newFolder("classes");
+        write(classes, "a/A.class", classFile(50));
+        write(classes, "b/B.class", classFile(52));
+        write(classes, "META-INF/versions/9/b/B.class", classFile(53));
+        write(classes, "module-info.class", classFile(53));
+        write(classes, "c/C.class", new byte[]{1, 2, 3});
+        write(classes, "readme.txt", "text".getBytes(StandardCharsets.UTF_8));
+        File index = new File(folder.getRoot(), "index");
+        DirectoryScanner instance = new DirectoryScanner(new ForkJoinPool(1), index);
+        ScanResult result = instance.scan(classes);
+        assertEquals(52, result.getMajorVersion());
+        assertEquals("b/B.class", result.getVersionEntry());
+        assertEquals(2, result.getClassCount());
+        assertEquals(1, result.getInvalidClassCount());
+        assertEquals(6, result.getEntryCount());
+        assertTrue(DirectoryScanner.getIndexFile(index, classes).isFile());
+        assertArrayEquals(new String[]{"META-INF", "a", "b", "c", "module-info.class", "readme.txt"},
+                sorted(classes.list()));
+    }
+
+    /**
+     * Test of scan method, of class DirectoryScanner; class files whose size
+     * and modification time are unchanged are not read again.
+     */
+    @Test
+    public void testScanIndex() throws Exception {
+        File classes = folder.newFolder("classes");
+        File a = write(classes, "a/A.class", classFile(50));
+        DirectoryScanner instance = new DirectoryScanner(new ForkJoinPool(1), new File(folder.getRoot(), "index"));
+        assertEquals(50, instance.scan(classes).getMajorVersion());
+
+        long modified = a.lastModified();
+        write(classes, "a/A.class", classFile(55));
+        assertTrue(a.setLastModified(modified));
+        assertEquals(50, instance.scan(classes).getMajorVersion());
+
+        assertTrue(a.setLastModified(modified - 10000));
+        assertEquals(55, instance.scan(classes).getMajorVersion());
+
+        write(classes, "b/B.class", classFile(51));
+        assertTrue(a.delete());
+        ScanResult result = instance.scan(classes);
+        assertEquals(51, result.getMajorVersion());
+        assertEquals(1, result.getClassCount());
+    }
+
+    /**
+     * Test of scan method, of class DirectoryScanner, using several threads.
+     */
+    @Test
+    public void testScanParallel() throws Exception {
+        File classes = folder.newFolder("classes");
+        for (int x = 0; x < 500; x++) {
+            write(classes, String.format("p%d/C%d.class", x % 7, x), classFile(x == 321 ? 53 : 50));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ScanResult result = new DirectoryScanner(pool, null).scan(classes);
+            assertEquals(53, result.getMajorVersion());
+            assertEquals("p6/C321.class", result.getVersionEntry());
+            assertEquals(500, result.getClassCount());
+            assertEquals(500, result.getEntryCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Test of scan method, of class DirectoryScanner; a directory that cannot
+     * be read fails the scan with an I/O exception.
+     */
+    @Test
+    public void testScanMissing() throws Exception {
+        try {
+            new DirectoryScanner(ForkJoinPool.commonPool(), null).scan(new File(folder.getRoot(), "missing"));
+            fail("Expected an IOException");
+        } catch (NoSuchFileException ex) {
+            assertTrue(ex.getMessage().endsWith("missing"));
+        }
+    }
+
+    /**
+     * Returns the names sorted.
+     *
+     * @param names the names
+     * @return the sorted names
+     */
+    private static String[] sorted(String[] names) {
+        Arrays.sort(names);
+        return names;
+    }
+
+    /**
+     * Writes the file, creating the parent directories.
+     *
+     * @param directory the base directory
+     * @param name the relative path of the file
+     * @param data the file contents
+     * @return the file
+     * @throws IOException thrown if the file cannot be written
+     */
+    private static File write(File directory, String name, byte[] data) throws IOException {
+        File f = new File(directory, name);
+        Files.createDirectories(f.getParentFile().toPath());
+        Files.write(f.toPath(), data);
+        return f;
+    }
+
+    /**
+     * Creates the start of a class file with the given major version.
+     *
+     * @param major the major version
+     * @return the class file bytes
+     */
+    private static byte[] classFile(int major) {
+        return new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, (byte) major, 1};
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.util.jar.Manifest;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class JarEvidenceTest {
+
+    /**
+     * Test of toMajorVersion method, of class JarEvidence.
+     */
+    @Test
+    public void testToMajorVersion() {
+        assertEquals(ClassFileFormatRule.JAVA_8, JarEvidence.toMajorVersion("1.8"));
+        assertEquals(ClassFileFormatRule.JAVA_8, JarEvidence.toMajorVersion("1.8.0_292"));
+        assertEquals(55, JarEvidence.toMajorVersion("11"));
+        assertEquals(61, JarEvidence.toMajorVersion("17.0.1+12"));
+        assertEquals(-1, JarEvidence.toMajorVersion(null));
+        assertEquals(-1, JarEvidence.toMajorVersion("unknown"));
+    }
+
+    /**
+     * Test of getBuildJdkMajorVersion method, of class JarEvidence.
+     */
+    @Test
+    public void testGetBuildJdkMajorVersion() {
+        Manifest manifest = new Manifest();
+        JarEvidence instance = new JarEvidence(new ScanResult(), manifest, false);
+        assertEquals(-1, instance.getBuildJdkMajorVersion());
+
+        manifest.getMainAttributes().putValue("Build-Jdk", "1.7.0_80");
+        assertEquals(ClassFileFormatRule.JAVA_7, instance.getBuildJdkMajorVersion());
+
+        manifest.getMainAttributes().putValue("Build-Jdk-Spec", "11");
+        assertEquals(55, instance.getBuildJdkMajorVersion());
+
+        instance = new JarEvidence(new ScanResult(), null, false);
+        assertEquals(-1, instance.getBuildJdkMajorVersion());
+    }
+
+    /**
+     * Test of isMultiRelease method, of class JarEvidence.
+     */
+    @Test
+    public void testIsMultiRelease() {
+        Manifest manifest = new Manifest();
+        JarEvidence instance = new JarEvidence(new ScanResult(), manifest, false);
+        assertFalse(instance.isMultiRelease());
+        manifest.getMainAttributes().putValue("Multi-Release", "true");
+        assertTrue(instance.isMultiRelease());
+    }
+}
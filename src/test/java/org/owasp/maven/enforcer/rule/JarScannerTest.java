@@ -0,0 +1,428 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class JarScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of scan method, of class JarScanner; the results must match the
+     * streaming implementation.
+     */
+    @Test
+    public void testScanMatchesStreaming() throws Exception {
+        JarScanner instance = new JarScanner();
+        for (String resource : new String[]{"junit-4.13.1.jar", "istack-commons-runtime-3.0.10.jar"}) {
+            File f = getResourceAsFile(this, resource);
+            for (int limit : new int[]{ClassFileFormatRule.JDK_1_1, ClassFileFormatRule.JAVA_5,
+                ClassFileFormatRule.JAVA_8, Integer.MAX_VALUE}) {
+                ScanResult expResult = instance.scanStreaming(f, limit);
+                ScanResult result = instance.scan(f, limit);
+                assertEquals(resource, expResult.getMajorVersion() > limit, result.getMajorVersion() > limit);
+                if (limit == Integer.MAX_VALUE) {
+                    assertTrue(result.isComplete());
+                    assertTrue(resource, expResult.getBytesRead() > 0 && expResult.getBytesRead() <= f.length());
+                    assertTrue(resource, result.getBytesRead() > 0);
+                    assertEquals(resource, expResult.getMajorVersion(), result.getMajorVersion());
+                    assertEquals(resource, expResult.getMinorVersion(), result.getMinorVersion());
+                    assertEquals(resource, expResult.getClassCount(), result.getClassCount());
+                    assertEquals(resource, expResult.getInvalidClassCount(), result.getInvalidClassCount());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of scan method, of class JarScanner, with a jar containing stored
+     * entries.
+     */
+    @Test
+    public void testScanStored() throws Exception {
+        File f = folder.newFile("stored.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f))) {
+            addStored(out, "a/A.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 3, 0, 50, 1});
+            addStored(out, "a/B.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 52, 1});
+            addStored(out, "module-info.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 53});
+            addStored(out, "a/C.class", new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        JarScanner instance = new JarScanner();
+        ScanResult result = instance.scan(f, Integer.MAX_VALUE);
+        assertEquals(52, result.getMajorVersion());
+        assertEquals(0, result.getMinorVersion());
+        assertEquals(2, result.getClassCount());
+        assertEquals(1, result.getInvalidClassCount());
+
+        result = instance.scan(f, ClassFileFormatRule.JAVA_6);
+        assertFalse(result.isComplete());
+        assertEquals("a/B.class", result.getVersionEntry());
+    }
+
+    /**
+     * Test of releaseBuffers method, of class JarScanner; worker threads must
+     * release their buffers when they exit and a released thread can scan
+     * again.
+     */
+    @Test
+    public void testReleaseBuffers() throws Exception {
+        final File f = getResourceAsFile(this, "junit-4.13.1.jar");
+        final JarScanner instance = new JarScanner();
+        final boolean[] held = new boolean[1];
+        final Thread worker = new WorkerThreadFactory("test-").newThread(() -> {
+            try {
+                instance.scan(f, Integer.MAX_VALUE);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            held[0] = JarScanner.hasBuffers();
+        });
+        worker.start();
+        worker.join();
+        assertTrue(held[0]);
+
+        instance.scan(f, Integer.MAX_VALUE);
+        assertTrue(JarScanner.hasBuffers());
+        JarScanner.releaseBuffers();
+        assertFalse(JarScanner.hasBuffers());
+        assertEquals(49, instance.scan(f, Integer.MAX_VALUE).getMajorVersion());
+        JarScanner.releaseBuffers();
+    }
+
+    /**
+     * Test of scan method, of class JarScanner, with nested archives; stored
+     * nested archives are read in place while deflated ones are streamed.
+     */
+    @Test
+    public void testScanNested() throws Exception {
+        ByteArrayOutputStream deep = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(deep)) {
+            addDeflated(out, "c/C.class", classFile(55));
+        }
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(deflated)) {
+            addDeflated(out, "b/B.class", classFile(51));
+            addDeflated(out, "lib/deep.jar", deep.toByteArray());
+        }
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(stored)) {
+            addStored(out, "a/A.class", classFile(52));
+        }
+        File f = folder.newFile("fat.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f))) {
+            addStored(out, "BOOT-INF/classes/Main.class", classFile(50));
+            addStored(out, "BOOT-INF/lib/stored.jar", stored.toByteArray());
+            addDeflated(out, "BOOT-INF/lib/deflated.jar", deflated.toByteArray());
+            addStored(out, "BOOT-INF/lib/truncated.jar", Arrays.copyOf(deep.toByteArray(), 40));
+        }
+        JarScanner instance = new JarScanner();
+        ScanResult result = instance.scan(f, Integer.MAX_VALUE);
+        assertEquals(50, result.getMajorVersion());
+        assertEquals("BOOT-INF/classes/Main.class", result.getVersionEntry());
+
+        instance.setScanNestedArchives(true);
+        for (ScanResult r : new ScanResult[]{instance.scan(f, Integer.MAX_VALUE),
+            instance.scanStreaming(f, Integer.MAX_VALUE)}) {
+            assertEquals(55, r.getMajorVersion());
+            assertEquals(4, r.getClassCount());
+            assertEquals(1, r.getInvalidArchiveCount());
+            assertTrue(r.isComplete());
+            assertEquals("BOOT-INF/lib/deflated.jar!/lib/deep.jar!/c/C.class", r.getVersionEntry());
+        }
+
+        result = instance.scan(f, ClassFileFormatRule.JAVA_7);
+        assertFalse(result.isComplete());
+        assertEquals("BOOT-INF/lib/stored.jar!/a/A.class", result.getVersionEntry());
+        result = instance.scanStreaming(f, ClassFileFormatRule.JAVA_8);
+        assertFalse(result.isComplete());
+        assertEquals("BOOT-INF/lib/deflated.jar!/lib/deep.jar!/c/C.class", result.getVersionEntry());
+    }
+
+    /**
+     * Test of inspect method, of class JarScanner.
+     */
+    @Test
+    public void testInspect() throws Exception {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Build-Jdk-Spec", "1.8");
+        File f = folder.newFile("sampled.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f), manifest)) {
+            for (int i = 0; i < 20; i++) {
+                addDeflated(out, "a/A" + i + ".class", classFile(52));
+            }
+            addDeflated(out, "b/B.class", classFile(55));
+        }
+        JarScanner instance = new JarScanner();
+        JarEvidence evidence = instance.inspect(f, ClassFileFormatRule.JAVA_8, 16);
+        assertFalse(evidence.getSample().isComplete());
+        assertEquals(16, evidence.getSample().getClassCount());
+        assertEquals(52, evidence.getSample().getMajorVersion());
+        assertEquals(52, evidence.getBuildJdkMajorVersion());
+        assertFalse(evidence.hasModuleInfo());
+        assertFalse(evidence.isMultiRelease());
+
+        evidence = instance.inspect(f, ClassFileFormatRule.JAVA_8, 100);
+        assertFalse(evidence.getSample().isComplete());
+        assertEquals(55, evidence.getSample().getMajorVersion());
+        assertEquals("b/B.class", evidence.getSample().getVersionEntry());
+
+        File small = folder.newFile("module.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(small))) {
+            addStored(out, "module-info.class", classFile(53));
+            addStored(out, "a/A.class", classFile(52));
+        }
+        evidence = instance.inspect(small, ClassFileFormatRule.JAVA_8, 16);
+        assertTrue(evidence.getSample().isComplete());
+        assertEquals(52, evidence.getSample().getMajorVersion());
+        assertTrue(evidence.hasModuleInfo());
+        assertNull(evidence.getManifest());
+        assertEquals(-1, evidence.getBuildJdkMajorVersion());
+    }
+
+    /**
+     * Test of scan method, of class JarScanner, with zip64 end of central
+     * directory records; a record giving an offset outside of the archive is
+     * reported as malformed and the archive is streamed instead.
+     */
+    @Test
+    public void testScanZip64() throws Exception {
+        JarScanner instance = new JarScanner();
+        File valid = zip64Jar("valid.jar", -1);
+        assertNotNull(instance.fingerprint(valid));
+        assertEquals(52, instance.scan(valid, Integer.MAX_VALUE).getMajorVersion());
+
+        File invalid = zip64Jar("invalid.jar", Long.MAX_VALUE);
+        assertNull(instance.fingerprint(invalid));
+        ScanResult result = instance.scan(invalid, Integer.MAX_VALUE);
+        assertEquals(52, result.getMajorVersion());
+        assertEquals(1, result.getClassCount());
+    }
+
+    /**
+     * Test of fingerprint method, of class JarScanner; jars with the same
+     * entries have the same fingerprint regardless of their location.
+     */
+    @Test
+    public void testFingerprint() throws Exception {
+        File a = folder.newFile("a.jar");
+        File b = folder.newFile("b.jar");
+        File c = folder.newFile("c.jar");
+        for (File f : Arrays.asList(a, b, c)) {
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f))) {
+                addDeflated(out, "a/A.class", classFile(52));
+                addStored(out, "a/B.class", classFile(f == c ? 53 : 52));
+            }
+        }
+        assertTrue(b.setLastModified(a.lastModified() - 60000));
+        JarScanner instance = new JarScanner();
+        String fingerprint = instance.fingerprint(a);
+        assertEquals(40, fingerprint.length());
+        assertEquals(fingerprint, instance.fingerprint(b));
+        assertNotEquals(fingerprint, instance.fingerprint(c));
+
+        File broken = folder.newFile("broken.jar");
+        Files.write(broken.toPath(), new byte[]{1, 2, 3});
+        assertNull(instance.fingerprint(broken));
+    }
+
+    /**
+     * Test of scan method, of class JarScanner, with a class cache; only the
+     * classes that changed between two releases are read.
+     */
+    @Test
+    public void testScanClassCache() throws Exception {
+        File a = folder.newFile("a-1.jar");
+        File b = folder.newFile("a-2.jar");
+        for (File f : Arrays.asList(a, b)) {
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f))) {
+                addDeflated(out, "a/A.class", classFile(52));
+                addStored(out, "a/B.class", classFile(52));
+                addDeflated(out, "a/C.class", classFile(f == b ? 55 : 51));
+            }
+        }
+        JarScanner instance = new JarScanner();
+        ClassVersionCache cache = new ClassVersionCache(1000);
+        instance.setClassCache(cache);
+        ScanResult result = instance.scan(a, Integer.MAX_VALUE);
+        assertEquals(52, result.getMajorVersion());
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        result = instance.scan(b, Integer.MAX_VALUE);
+        assertEquals(55, result.getMajorVersion());
+        assertEquals(3, result.getClassCount());
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+
+        result = instance.scan(b, ClassFileFormatRule.JAVA_8);
+        assertFalse(result.isComplete());
+        assertEquals("a/C.class", result.getVersionEntry());
+        assertEquals(5, cache.getHits());
+    }
+
+    /**
+     * Test of scan method, of class JarScanner; once the thread's buffers
+     * have been allocated the memory allocated by a scan must not depend on
+     * the number of entries in the jar.
+     */
+    @Test
+    public void testScanAllocation() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        File f = getResourceAsFile(this, "junit-4.13.1.jar");
+        JarScanner instance = new JarScanner();
+        for (int x = 0; x < 20; x++) {
+            instance.scan(f, Integer.MAX_VALUE);
+            instance.scanStreaming(f, Integer.MAX_VALUE);
+        }
+        long id = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(id);
+        ScanResult result = instance.scan(f, Integer.MAX_VALUE);
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+        before = threads.getThreadAllocatedBytes(id);
+        instance.scanStreaming(f, Integer.MAX_VALUE);
+        long streaming = threads.getThreadAllocatedBytes(id) - before;
+
+        assertTrue(result.getEntryCount() > 300);
+        assertTrue("allocated " + allocated + " bytes", allocated < 8 * 1024);
+        assertTrue("allocated " + allocated + " bytes, streaming " + streaming, allocated * 10 < streaming);
+    }
+
+    /**
+     * Creates a jar with a single class file whose end of central directory
+     * record is replaced by zip64 records.
+     *
+     * @param name the name of the jar
+     * @param centralOffset the central directory offset recorded; or -1 to
+     * record the actual offset
+     * @return the jar
+     * @throws IOException thrown if the jar cannot be written
+     */
+    private File zip64Jar(String name, long centralOffset) throws IOException {
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(jar)) {
+            addStored(out, "a/A.class", classFile(52));
+        }
+        byte[] data = jar.toByteArray();
+        ByteBuffer eocd = ByteBuffer.wrap(data, data.length - 22, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+        long centralSize = eocd.getInt(12) & 0xFFFFFFFFL;
+        long offset = centralOffset < 0 ? eocd.getInt(16) & 0xFFFFFFFFL : centralOffset;
+        ByteBuffer zip64 = ByteBuffer.allocate(56 + 20 + 22).order(ByteOrder.LITTLE_ENDIAN);
+        zip64.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                .putLong(1).putLong(1).putLong(centralSize).putLong(offset);
+        zip64.putInt(0x07064b50).putInt(0).putLong(data.length - 22).putInt(1);
+        zip64.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 0xFFFF)
+                .putShort((short) 0xFFFF).putInt((int) centralSize).putInt(-1).putShort((short) 0);
+        File f = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(data, 0, data.length - 22);
+            out.write(zip64.array());
+        }
+        return f;
+    }
+
+    /**
+     * Adds a stored entry to the jar.
+     *
+     * @param out the jar output stream
+     * @param name the entry name
+     * @param data the entry data
+     * @throws IOException thrown if the entry cannot be written
+     */
+    private static void addStored(JarOutputStream out, String name, byte[] data) throws IOException {
+        JarEntry entry = new JarEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    /**
+     * Adds a deflated entry to the jar.
+     *
+     * @param out the jar output stream
+     * @param name the entry name
+     * @param data the entry data
+     * @throws IOException thrown if the entry cannot be written
+     */
+    private static void addDeflated(JarOutputStream out, String name, byte[] data) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(data);
+        out.closeEntry();
+    }
+
+    /**
+     * Creates the start of a class file with the given major version.
+     *
+     * @param major the major version
+     * @return the class file bytes
+     */
+    private static byte[] classFile(int major) {
+        return new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, (byte) major, 1};
+    }
+
+    /**
+     * Returns the given resource as a File using the object's class loader. The
+     * org.junit.Assume API is used so that test cases are skipped if the
+     * resource is not available.
+     *
+     * @param o the object used to obtain a reference to the class loader
+     * @param resource the name of the resource to load
+     * @return the resource as an File
+     */
+    private static File getResourceAsFile(Object o, String resource) {
+        try {
+            File f = new File(o.getClass().getClassLoader().getResource(resource).toURI().getPath());
+            Assume.assumeTrue(String.format("%n%n[SEVERE] Unable to load resource for test case: %s%n%n", resource), f.exists());
+            return f;
+        } catch (URISyntaxException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ResultStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of put method, of class ResultStore.
+     */
+    @Test
+    public void testPut() {
+        ResultStore instance = new ResultStore();
+        for (int i = 0; i < 100000; i++) {
+            instance.put(VersionIndex.hash("g:a" + i + ":1"), i, new ScanResult(45 + i % 20, i % 4));
+        }
+        instance.put(VersionIndex.hash("g:a7:1"), 8, new ScanResult(61, 0, 3, 70000));
+        assertEquals(100000, instance.size());
+        for (int i = 0; i < 100000; i += 11) {
+            if (i != 7) {
+                ScanResult result = instance.get(VersionIndex.hash("g:a" + i + ":1"), i);
+                assertEquals(45 + i % 20, result.getMajorVersion());
+                assertEquals(i % 4, result.getMinorVersion());
+            }
+        }
+        ScanResult replaced = instance.get(VersionIndex.hash("g:a7:1"), 8);
+        assertEquals(61, replaced.getMajorVersion());
+        assertEquals(3, replaced.getInvalidClassCount());
+        assertEquals(VersionIndex.MAX_SHORT, replaced.getInvalidArchiveCount());
+        assertNull(instance.get(VersionIndex.hash("g:a7:1"), 7));
+        assertNull(instance.get(VersionIndex.hash("g:b:1"), 0));
+        try {
+            instance.put(0, 0, new ScanResult(52, 0));
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+
+    /**
+     * Test of put and get methods, of class ResultStore, with artifacts that
+     * only differ by their extension or last modified time.
+     */
+    @Test
+    public void testIdentity() {
+        ResultStore instance = new ResultStore();
+        long jar = VersionIndex.hash(VersionIndex.coordinates("g", "foo", "1.0", null, "jar"));
+        long war = VersionIndex.hash(VersionIndex.coordinates("g", "foo", "1.0", null, "war"));
+        instance.put(jar, VersionIndex.fingerprint(100, 1000), new ScanResult(52, 0));
+        instance.put(war, VersionIndex.fingerprint(100, 1000), new ScanResult(55, 0));
+        assertEquals(2, instance.size());
+        assertEquals(52, instance.get(jar, VersionIndex.fingerprint(100, 1000)).getMajorVersion());
+        assertEquals(55, instance.get(war, VersionIndex.fingerprint(100, 1000)).getMajorVersion());
+        assertNull(instance.get(jar, VersionIndex.fingerprint(100, 2000)));
+    }
+
+    /**
+     * Test of write and read methods, of class ResultStore.
+     */
+    @Test
+    public void testWriteRead() throws Exception {
+        ResultStore instance = new ResultStore();
+        for (int i = 0; i < 3000; i++) {
+            instance.put(VersionIndex.hash(VersionIndex.coordinates("g", "a" + i, "1", null, "jar")),
+                    VersionIndex.fingerprint(i, i), new ScanResult(50 + i % 5, 0));
+        }
+        File file = new File(folder.getRoot(), "store.idx");
+        instance.write(file, true);
+
+        VersionIndex index = VersionIndex.open(file);
+        assertTrue(index.isNestedArchives());
+        assertEquals(3000, index.size());
+        assertEquals(53, index.get("g", "a3", "1", null, "jar", 3, 3).getMajorVersion());
+        assertNull(index.get("g", "a3", "1", null, "jar", 3, 4));
+
+        ResultStore read = ResultStore.read(file);
+        assertEquals(3000, read.size());
+        assertEquals(54, read.get(VersionIndex.hash("g:a4:jar:1"), VersionIndex.fingerprint(4, 4)).getMajorVersion());
+        read.put(VersionIndex.hash("g:b:1"), 1, new ScanResult(61, 0));
+        assertEquals(3001, read.size());
+        assertEquals(61, read.get(VersionIndex.hash("g:b:1"), 1).getMajorVersion());
+    }
+
+    /**
+     * Test of pack and unpack methods, of class ResultStore.
+     */
+    @Test
+    public void testPack() {
+        ScanResult result = ResultStore.unpack(ResultStore.pack(new ScanResult(65, 65535, 2, 1)));
+        assertEquals(65, result.getMajorVersion());
+        assertEquals(65535, result.getMinorVersion());
+        assertEquals(2, result.getInvalidClassCount());
+        assertEquals(1, result.getInvalidArchiveCount());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ScanCommandTest {
+
+    /**
+     * Test of run method, of class ScanCommand, writing CSV.
+     */
+    @Test
+    public void testRunCsv() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        File istack = getResourceAsFile(this, "istack-commons-runtime-3.0.10.jar");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exit = ScanCommand.run(new String[]{"--max-version", "51", junit.getPath(), istack.getPath()},
+                new ByteArrayInputStream(new byte[0]), print(out), print(err));
+        assertEquals(ScanCommand.EXIT_VIOLATION, exit);
+        String[] lines = out.toString("UTF-8").split("\\R");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("path,status,majorVersion"));
+        String output = out.toString("UTF-8");
+        assertTrue(output, output.contains(junit.getPath() + ",ok,49,0,"));
+        assertTrue(output, output.contains(istack.getPath() + ",violation,52,0,"));
+        assertTrue(err.toString("UTF-8").contains("Scanned 2 archives"));
+    }
+
+    /**
+     * Test of run method, of class ScanCommand, writing JSON with the paths
+     * read from the input.
+     */
+    @Test
+    public void testRunJson() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] list = (junit.getPath() + "\n\nmissing.jar\n").getBytes(StandardCharsets.UTF_8);
+        int exit = ScanCommand.run(new String[]{"--format", "json", "--files-from", "-"},
+                new ByteArrayInputStream(list), print(out), print(new ByteArrayOutputStream()));
+        assertEquals(ScanCommand.EXIT_ERROR, exit);
+        String output = out.toString("UTF-8");
+        assertTrue(output, output.contains("\"status\": \"ok\", \"majorVersion\": 49"));
+        assertTrue(output, output.contains("{\"path\": \"missing.jar\", \"status\": \"error\""));
+    }
+
+    /**
+     * Test of run method, of class ScanCommand, with invalid arguments.
+     */
+    @Test
+    public void testRunUsage() throws Exception {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(ScanCommand.EXIT_USAGE, ScanCommand.run(new String[0], new ByteArrayInputStream(new byte[0]),
+                print(new ByteArrayOutputStream()), print(err)));
+        assertTrue(err.toString("UTF-8").contains("usage:"));
+        assertEquals(ScanCommand.EXIT_USAGE, ScanCommand.run(new String[]{"--format", "xml", "a.jar"},
+                new ByteArrayInputStream(new byte[0]), print(new ByteArrayOutputStream()), print(err)));
+    }
+
+    /**
+     * Test of csvField method, of class ScanCommand.
+     */
+    @Test
+    public void testCsvField() {
+        assertEquals("", ScanCommand.csvField(null));
+        assertEquals("a/B.class", ScanCommand.csvField("a/B.class"));
+        assertEquals("\"a,\"\"b\"\"\"", ScanCommand.csvField("a,\"b\""));
+    }
+
+    /**
+     * Creates a print stream writing UTF-8 to the given output.
+     *
+     * @param out the output
+     * @return the print stream
+     */
+    private static PrintStream print(ByteArrayOutputStream out) throws Exception {
+        return new PrintStream(out, true, "UTF-8");
+    }
+
+    /**
+     * Returns the given resource as a File using the object's class loader. The
+     * org.junit.Assume API is used so that test cases are skipped if the
+     * resource is not available.
+     *
+     * @param o the object used to obtain a reference to the class loader
+     * @param resource the name of the resource to load
+     * @return the resource as an File
+     */
+    private static File getResourceAsFile(Object o, String resource) {
+        try {
+            File f = new File(o.getClass().getClassLoader().getResource(resource).toURI().getPath());
+            Assume.assumeTrue(String.format("%n%n[SEVERE] Unable to load resource for test case: %s%n%n", resource), f.exists());
+            return f;
+        } catch (URISyntaxException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ScanDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of serve method, of class ScanDaemon; repeated requests are
+     * answered from the in-memory cache.
+     */
+    @Test(timeout = 30000)
+    public void testServe() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        File directory = folder.newFolder("daemon");
+        assertNull(DaemonClient.connect(directory));
+
+        ScanDaemon daemon = new ScanDaemon(directory, 0, 10);
+        Thread thread = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            assertTrue(new File(directory, ScanDaemon.DAEMON_FILE).isFile());
+            DaemonClient client = DaemonClient.connect(directory);
+            assertNotNull(client);
+            ScanResult result = client.scan(junit, false);
+            assertEquals(ClassFileFormatRule.JAVA_5, result.getMajorVersion());
+            assertEquals("junit/textui/TestRunner.class", result.getVersionEntry());
+            assertEquals(ClassFileFormatRule.JAVA_5, client.scan(junit, false).getMajorVersion());
+            assertEquals(1, daemon.getMisses());
+            assertEquals(1, daemon.getHits());
+            try {
+                client.scan(new File(directory, "missing.jar"), false);
+                fail("the scan of a missing jar must fail");
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage().startsWith("The daemon was unable to scan"));
+            }
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+                socket.getOutputStream().write("PING wrong\n".getBytes(StandardCharsets.UTF_8));
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("ERROR unauthorized", in.readLine());
+            }
+
+            client.stop();
+            thread.join(10000);
+            assertFalse(thread.isAlive());
+            assertFalse(new File(directory, ScanDaemon.DAEMON_FILE).exists());
+            assertNull(DaemonClient.connect(directory));
+        } finally {
+            daemon.close();
+        }
+    }
+
+    /**
+     * Test of close method, of class ScanDaemon; concurrent and repeated
+     * calls close the daemon once.
+     */
+    @Test(timeout = 30000)
+    public void testClose() throws Exception {
+        File directory = folder.newFolder("daemon");
+        ScanDaemon daemon = new ScanDaemon(directory, 0, 10);
+        Thread[] threads = new Thread[4];
+        Exception[] failures = new Exception[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    daemon.close();
+                } catch (Exception ex) {
+                    failures[index] = ex;
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull(failures[i]);
+        }
+        assertFalse(new File(directory, ScanDaemon.DAEMON_FILE).exists());
+        daemon.close();
+        daemon.serve();
+    }
+
+    /**
+     * Test of format and parse methods, of class ScanDaemon.
+     */
+    @Test
+    public void testFormatParse() throws Exception {
+        ScanResult result = new ScanResult(52, 0, 1, 2);
+        result.setVersionEntry("a b/C.class");
+        ScanResult parsed = ScanDaemon.parse(ScanDaemon.format(result));
+        assertEquals(52, parsed.getMajorVersion());
+        assertEquals(1, parsed.getInvalidClassCount());
+        assertEquals(2, parsed.getInvalidArchiveCount());
+        assertEquals("a b/C.class", parsed.getVersionEntry());
+        assertNull(ScanDaemon.parse(ScanDaemon.format(new ScanResult(50, 0))).getVersionEntry());
+    }
+
+    /**
+     * Returns the given resource as a File using the object's class loader. The
+     * org.junit.Assume API is used so that test cases are skipped if the
+     * resource is not available.
+     *
+     * @param o the object used to obtain a reference to the class loader
+     * @param resource the name of the resource to load
+     * @return the resource as an File
+     */
+    private static File getResourceAsFile(Object o, String resource) {
+        try {
+            File f = new File(o.getClass().getClassLoader().getResource(resource).toURI().getPath());
+            Assume.assumeTrue(String.format("%n%n[SEVERE] Unable to load resource for test case: %s%n%n", resource), f.exists());
+            return f;
+        } catch (URISyntaxException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+}
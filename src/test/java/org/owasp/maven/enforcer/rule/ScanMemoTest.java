@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ScanMemoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of forSession method, of class ScanMemo.
+     */
+    @Test
+    public void testForSession() {
+        Object session = new Object();
+        assertSame(ScanMemo.forSession(session), ScanMemo.forSession(session));
+        assertNotSame(ScanMemo.forSession(session), ScanMemo.forSession(new Object()));
+    }
+
+    /**
+     * Test of getContent method, of class ScanMemo; artifacts with the same
+     * content share a single scan.
+     */
+    @Test
+    public void testGetContent() throws Exception {
+        final ScanMemo instance = new ScanMemo();
+        final AtomicInteger scans = new AtomicInteger();
+        ScanResult first = instance.getContent("abc", "", () -> {
+            scans.incrementAndGet();
+            return new ScanResult(52, 0);
+        });
+        ScanResult second = instance.getContent("abc", "", () -> {
+            scans.incrementAndGet();
+            return new ScanResult(0, 0);
+        });
+        assertSame(first, second);
+        assertEquals(1, scans.get());
+        assertEquals(0, instance.getContent("abc", "nested", () -> new ScanResult(0, 0)).getMajorVersion());
+    }
+
+    /**
+     * Test of get method, of class ScanMemo; concurrent requests for the same
+     * artifact must share a single scan.
+     */
+    @Test
+    public void testGetSingleFlight() throws Exception {
+        final File artifact = folder.newFile("a.jar");
+        final ScanMemo instance = new ScanMemo();
+        final AtomicInteger scans = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ScanResult>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> instance.get(artifact, () -> {
+                scans.incrementAndGet();
+                started.countDown();
+                release.await();
+                return new ScanResult(52, 0);
+            })));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int x = 1; x < threads; x++) {
+                futures.add(executor.submit(() -> instance.get(artifact, () -> {
+                    scans.incrementAndGet();
+                    return new ScanResult(0, 0);
+                })));
+            }
+            while (instance.getCoalesced() < threads - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<ScanResult> f : futures) {
+                assertEquals(52, f.get().getMajorVersion());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, scans.get());
+        assertEquals(1, instance.getMisses());
+        assertEquals(threads - 1, instance.getCoalesced());
+        assertEquals(0, instance.getHits());
+
+        assertEquals(52, instance.get(artifact, () -> new ScanResult(0, 0)).getMajorVersion());
+        assertEquals(1, instance.getHits());
+    }
+
+    /**
+     * Test of get method, of class ScanMemo; failed scans are retried.
+     */
+    @Test
+    public void testGetFailure() throws Exception {
+        File artifact = folder.newFile("a.jar");
+        ScanMemo instance = new ScanMemo();
+        try {
+            instance.get(artifact, () -> {
+                throw new IOException("failed");
+            });
+            fail("expected an IOException");
+        } catch (IOException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+        assertEquals(51, instance.get(artifact, () -> new ScanResult(51, 0)).getMajorVersion());
+        assertEquals(2, instance.getMisses());
+    }
+
+    /**
+     * Test of get method, of class ScanMemo; when the consumer performing a
+     * shared scan is cancelled the other consumer scans the artifact again
+     * rather then failing.
+     */
+    @Test(timeout = 30000)
+    public void testGetCancelledConsumer() throws Exception {
+        final File artifact = folder.newFile("a.jar");
+        final ScanMemo instance = new ScanMemo();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger scans = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ScanResult> cancelled = executor.submit(() -> instance.get(artifact, () -> {
+                scans.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException ex) {
+                    //a file channel interrupted while reading
+                    Thread.currentThread().interrupt();
+                    throw new ClosedByInterruptException();
+                }
+                return new ScanResult(52, 0);
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<ScanResult> waiting = executor.submit(() -> instance.get(artifact, () -> {
+                scans.incrementAndGet();
+                return new ScanResult(51, 0);
+            }));
+            while (instance.getCoalesced() == 0) {
+                Thread.sleep(5);
+            }
+            cancelled.cancel(true);
+
+            assertEquals(51, waiting.get(10, TimeUnit.SECONDS).getMajorVersion());
+            assertEquals(2, scans.get());
+            assertEquals(2, instance.getMisses());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
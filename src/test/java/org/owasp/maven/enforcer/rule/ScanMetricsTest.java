@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ScanMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of getSummary method, of class ScanMetrics.
+     */
+    @Test
+    public void testGetSummary() {
+        ScanMetrics instance = createMetrics();
+        String expResult = "3 dependencies checked in 6 ms (graph 1 ms, resolution 2 ms, scan 3 ms);"
+                + " 1 scanned, 1 from the cache, 1 from the session; 1000 bytes read, 20 entries, 10 classes";
+        assertEquals(expResult, instance.getSummary());
+    }
+
+    /**
+     * Test of getArtifactLines method, of class ScanMetrics.
+     */
+    @Test
+    public void testGetArtifactLines() {
+        List<String> result = createMetrics().getArtifactLines();
+        assertEquals(2, result.size());
+        assertEquals("org.example:slow:1.0 5.000 ms (jar; 1000 bytes read, 20 entries, 10 classes)", result.get(0));
+        assertEquals("org.example:fast:1.0 0.100 ms (cache; 0 bytes read, 0 entries, 0 classes)", result.get(1));
+    }
+
+    /**
+     * Test of writeJson method, of class ScanMetrics.
+     */
+    @Test
+    public void testWriteJson() throws Exception {
+        File file = new File(folder.getRoot(), "target/metrics.json");
+        createMetrics().writeJson(file, "org.example:\"project\"");
+        String result = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(result.contains("\"project\": \"org.example:\\\"project\\\"\""));
+        assertTrue(result.contains("\"phases\": {\n    \"graphMillis\": 1,\n    \"resolutionMillis\": 2,\n    \"scanMillis\": 3\n  }"));
+        assertTrue(result.contains("\"sessionHits\": 1,"));
+        assertTrue(result.contains("{\"groupId\": \"org.example\", \"artifactId\": \"slow\", \"version\": \"1.0\","
+                + " \"file\": \"slow.jar\", \"source\": \"jar\", \"micros\": 5000, \"bytesRead\": 1000,"
+                + " \"entries\": 20, \"classes\": 10, \"majorVersion\": 52}"));
+    }
+
+    /**
+     * Test of quote method, of class ScanMetrics.
+     */
+    @Test
+    public void testQuote() {
+        assertEquals("null", ScanMetrics.quote(null));
+        assertEquals("\"a\\\\b\\\"c\\u000a\"", ScanMetrics.quote("a\\b\"c\n"));
+    }
+
+    /**
+     * Creates metrics with one scanned artifact, one cached artifact, and one
+     * dependency answered by the session.
+     *
+     * @return the metrics
+     */
+    private static ScanMetrics createMetrics() {
+        ScanMetrics metrics = new ScanMetrics();
+        metrics.setGraphNanos(1000000);
+        metrics.setResolveNanos(2000000);
+        metrics.setScanNanos(3000000);
+        ScanResult scanned = new ScanResult();
+        for (int x = 0; x < 20; x++) {
+            scanned.addEntry();
+            if (x % 2 == 0) {
+                scanned.addVersion(52, 0);
+            }
+        }
+        scanned.addBytesRead(1000);
+        for (int x = 0; x < 3; x++) {
+            metrics.recordRequest();
+        }
+        metrics.recordArtifact(new DependencyReference("org.example", "fast", "1.0", new File("fast.jar"), null, null),
+                new ScanResult(51, 0), 100000, ScanMetrics.SOURCE_CACHE);
+        metrics.recordArtifact(new DependencyReference("org.example", "slow", "1.0", new File("slow.jar"), null, null),
+                scanned, 5000000, ScanMetrics.SOURCE_JAR);
+        return metrics;
+    }
+}
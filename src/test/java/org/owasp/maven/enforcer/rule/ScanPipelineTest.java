@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class ScanPipelineTest {
+
+    /**
+     * Test of submit and finish methods, of class ScanPipeline.
+     */
+    @Test
+    public void testFinish() throws Exception {
+        for (int threads : new int[]{1, 4}) {
+            AtomicInteger checked = new AtomicInteger();
+            try (ScanPipeline instance = new ScanPipeline(threads, d -> {
+                checked.incrementAndGet();
+                return d.getVersion().endsWith("0");
+            })) {
+                for (int i = 0; i < 1000; i++) {
+                    instance.submit(new DependencyReference("g", "a", "1." + i, null, null, null));
+                }
+                List<DependencyReference> result = instance.finish();
+                assertEquals(1000, checked.get());
+                assertEquals(100, result.size());
+                Set<String> versions = new HashSet<>();
+                for (DependencyReference d : result) {
+                    versions.add(d.getVersion());
+                }
+                assertTrue(versions.contains("1.990"));
+            }
+        }
+    }
+
+    /**
+     * Test of submit method, of class ScanPipeline; dependencies are checked
+     * while more are being submitted.
+     */
+    @Test(timeout = 10000)
+    public void testSubmit() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        try (ScanPipeline instance = new ScanPipeline(2, d -> {
+            first.countDown();
+            return false;
+        })) {
+            instance.submit(new DependencyReference("g", "a", "1", null, null, null));
+            //the producer is still running when the first check completes
+            first.await();
+            instance.submit(new DependencyReference("g", "b", "1", null, null, null));
+            assertTrue(instance.finish().isEmpty());
+        }
+    }
+
+    /**
+     * Test of cancel method, of class ScanPipeline; a fail fast pipeline
+     * stops at the first invalid dependency and interrupts the checks in
+     * progress.
+     */
+    @Test(timeout = 10000)
+    public void testCancel() throws Exception {
+        AtomicInteger checked = new AtomicInteger();
+        try (ScanPipeline instance = new ScanPipeline(1, d -> checked.incrementAndGet() > 0, true)) {
+            for (int i = 0; i < 100; i++) {
+                instance.submit(new DependencyReference("g", "a", "1." + i, null, null, null));
+            }
+            assertTrue(instance.isCancelled());
+            assertEquals(1, instance.finish().size());
+            assertEquals(1, checked.get());
+        }
+
+        CountDownLatch blocked = new CountDownLatch(3);
+        try (ScanPipeline instance = new ScanPipeline(4, d -> {
+            if ("bad".equals(d.getArtifactId())) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                return true;
+            }
+            //a slow scan that only stops when interrupted
+            blocked.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException("interrupted", ex);
+            }
+            return false;
+        }, true)) {
+            for (int i = 0; i < 3; i++) {
+                instance.submit(new DependencyReference("g", "slow", "1." + i, null, null, null));
+            }
+            instance.submit(new DependencyReference("g", "bad", "1", null, null, null));
+            for (int i = 0; i < 1000; i++) {
+                instance.submit(new DependencyReference("g", "a", "1." + i, null, null, null));
+            }
+            List<DependencyReference> result = instance.finish();
+            assertTrue(instance.isCancelled());
+            assertEquals(1, result.size());
+            assertEquals("bad", result.get(0).getArtifactId());
+        }
+    }
+
+    /**
+     * Test of finish method, of class ScanPipeline; the first exception
+     * thrown by a check is rethrown without blocking the producer.
+     */
+    @Test
+    public void testFinishFailure() throws Exception {
+        try (ScanPipeline instance = new ScanPipeline(2, d -> {
+            throw new IllegalStateException("broken");
+        })) {
+            for (int i = 0; i < 500; i++) {
+                instance.submit(new DependencyReference("g", "a", "1." + i, null, null, null));
+            }
+            instance.finish();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException ex) {
+            assertEquals("broken", ex.getMessage());
+        }
+    }
+
+    /**
+     * Test of finish method, of class ScanPipeline; an error thrown by a
+     * check on a scanning thread is rethrown as is.
+     */
+    @Test(timeout = 10000)
+    public void testFinishError() throws Exception {
+        final LinkageError error = new LinkageError("broken");
+        try (ScanPipeline instance = new ScanPipeline(2, d -> {
+            if ("1.3".equals(d.getVersion())) {
+                throw error;
+            }
+            return false;
+        })) {
+            for (int i = 0; i < 10; i++) {
+                instance.submit(new DependencyReference("g", "a", "1." + i, null, null, null));
+            }
+            instance.finish();
+            fail("Expected a LinkageError");
+        } catch (LinkageError ex) {
+            assertSame(error, ex);
+        }
+    }
+
+    /**
+     * Test of submit and finish methods, of class ScanPipeline; the producer
+     * is not blocked once every scanning thread has failed with an error.
+     */
+    @Test(timeout = 10000)
+    public void testSubmitAllWorkersFailed() throws Exception {
+        final LinkageError error = new LinkageError("broken");
+        try (ScanPipeline instance = new ScanPipeline(2, d -> {
+            throw error;
+        })) {
+            //more then the queue holds, so the producer would block on a full queue
+            for (int i = 0; i < 500; i++) {
+                instance.submit(new DependencyReference("g", "a", "1." + i, null, null, null));
+            }
+            instance.finish();
+            fail("Expected a LinkageError");
+        } catch (LinkageError ex) {
+            assertSame(error, ex);
+        }
+    }
+}
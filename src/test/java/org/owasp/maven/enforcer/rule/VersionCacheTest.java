@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class VersionCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of get and put methods, of class VersionCache.
+     */
+    @Test
+    public void testGetPut() throws Exception {
+        File artifact = folder.newFile("a.jar");
+        Files.write(artifact.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+        VersionCache instance = new VersionCache(folder.newFolder("cache"), 10, true);
+        assertNull(instance.get(artifact));
+
+        ScanResult scanned = new ScanResult(52, 1);
+        scanned.setVersionEntry("lib/a.jar!/a/A.class");
+        instance.put(artifact, scanned);
+        ScanResult result = instance.get(artifact);
+        assertEquals(52, result.getMajorVersion());
+        assertEquals(1, result.getMinorVersion());
+        assertEquals("lib/a.jar!/a/A.class", result.getVersionEntry());
+
+        Files.write(artifact.toPath(), "abcd".getBytes(StandardCharsets.UTF_8));
+        assertNull(instance.get(artifact));
+    }
+
+    /**
+     * Test of getContent and putContent methods, of class VersionCache.
+     */
+    @Test
+    public void testGetPutContent() throws Exception {
+        File artifact = folder.newFile("a.jar");
+        VersionCache instance = new VersionCache(folder.newFolder("cache"), 10, false);
+        assertNull(instance.getContent("abc"));
+        instance.putContent("abc", new ScanResult(53, 0));
+        assertEquals(53, instance.getContent("abc").getMajorVersion());
+        assertNull(instance.getContent("abd"));
+        assertNull(instance.get(artifact));
+    }
+
+    /**
+     * Test of put method, of class VersionCache; incomplete results are not
+     * cached.
+     */
+    @Test
+    public void testPutIncomplete() throws Exception {
+        File artifact = folder.newFile("a.jar");
+        VersionCache instance = new VersionCache(folder.newFolder("cache"), 10, false);
+        ScanResult partial = new ScanResult();
+        partial.addVersion(55, 0);
+        partial.stop();
+        instance.put(artifact, partial);
+        assertNull(instance.get(artifact));
+    }
+
+    /**
+     * Test of prune method, of class VersionCache.
+     */
+    @Test
+    public void testPrune() throws Exception {
+        File directory = folder.newFolder("cache");
+        VersionCache instance = new VersionCache(directory, 10, false);
+        for (int x = 0; x < 25; x++) {
+            instance.put(folder.newFile(x + ".jar"), new ScanResult(50, 0));
+        }
+        assertEquals(16, instance.prune());
+        assertEquals(0, instance.prune());
+    }
+
+    /**
+     * Test of prune method, of class VersionCache; once pruned the cache
+     * directory is only listed again after enough entries were written.
+     */
+    @Test
+    public void testPruneAfterWrites() throws Exception {
+        File directory = folder.newFolder("cache");
+        VersionCache instance = new VersionCache(directory, 10, false);
+        for (int x = 0; x < 9; x++) {
+            instance.put(folder.newFile(x + ".jar"), new ScanResult(50, 0));
+        }
+        assertEquals(0, instance.prune());
+        //entries written by another process are not seen until this process writes enough entries
+        File shard = new File(directory, "00");
+        assertTrue(shard.mkdir());
+        for (int x = 0; x < 5; x++) {
+            Files.write(new File(shard, x + ".properties").toPath(), new byte[0]);
+        }
+        VersionCache other = new VersionCache(directory, 10, false);
+        assertEquals(0, other.prune());
+        other.put(folder.newFile("9.jar"), new ScanResult(50, 0));
+        assertEquals(6, other.prune());
+    }
+
+    /**
+     * Test of put method, of class VersionCache, from multiple threads
+     * writing to the same entries.
+     */
+    @Test
+    public void testConcurrentPut() throws Exception {
+        final File artifact = folder.newFile("a.jar");
+        final File directory = folder.newFolder("cache");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int x = 0; x < 100; x++) {
+                futures.add(executor.submit(() -> {
+                    VersionCache instance = new VersionCache(directory, 10, false);
+                    instance.put(artifact, new ScanResult(51, 0));
+                    assertEquals(51, instance.get(artifact).getMajorVersion());
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class VersionIndexBuilderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of build method, of class VersionIndexBuilder.
+     */
+    @Test
+    public void testBuild() throws Exception {
+        File junit = getResourceAsFile(this, "junit-4.13.1.jar");
+        File istack = getResourceAsFile(this, "istack-commons-runtime-3.0.10.jar");
+        Path repository = folder.newFolder("repository").toPath();
+        Path junitDir = Files.createDirectories(repository.resolve("junit/junit/4.13.1"));
+        File junitCopy = Files.copy(junit.toPath(), junitDir.resolve("junit-4.13.1.jar")).toFile();
+        Path istackDir = Files.createDirectories(repository.resolve("com/sun/istack/istack-commons-runtime/3.0.10"));
+        File istackCopy = Files.copy(istack.toPath(), istackDir.resolve("istack-commons-runtime-3.0.10-tests.jar"))
+                .toFile();
+        Path snapshotDir = Files.createDirectories(repository.resolve("org/example/a/1.0-SNAPSHOT"));
+        Files.copy(junit.toPath(), snapshotDir.resolve("a-1.0-20210101.120000-1.jar"));
+
+        File index = new File(folder.getRoot(), "versions.idx");
+        ClassFileFormatScanner scanner = new ClassFileFormatScanner();
+        scanner.setThreads(2);
+        assertEquals(2, VersionIndexBuilder.build(repository, index, scanner));
+
+        VersionIndex instance = VersionIndex.open(index);
+        assertEquals(ClassFileFormatRule.JAVA_5,
+                instance.get("junit", "junit", "4.13.1", null, "jar", junitCopy.length(),
+                        junitCopy.lastModified()).getMajorVersion());
+        assertEquals(ClassFileFormatRule.JAVA_8, instance.get("com.sun.istack", "istack-commons-runtime", "3.0.10",
+                "tests", "jar", istackCopy.length(), istackCopy.lastModified()).getMajorVersion());
+        assertNull(instance.get("com.sun.istack", "istack-commons-runtime", "3.0.10", null, "jar",
+                istackCopy.length(), istackCopy.lastModified()));
+        assertNull(instance.get("org.example", "a", "1.0-SNAPSHOT", null, "jar", junitCopy.length(),
+                junitCopy.lastModified()));
+        assertNull(instance.get("junit", "junit", "4.13.1", null, "jar", junitCopy.length(),
+                junitCopy.lastModified() + 1000));
+    }
+
+    /**
+     * Test of coordinates method, of class VersionIndexBuilder.
+     */
+    @Test
+    public void testCoordinates() {
+        Path repository = Paths.get("repo");
+        assertArrayEquals(new String[]{"org.example", "a", "1.0", null, "jar"},
+                VersionIndexBuilder.coordinates(repository, repository.resolve("org/example/a/1.0/a-1.0.jar")));
+        assertArrayEquals(new String[]{"org.example", "a", "1.0", null, "war"},
+                VersionIndexBuilder.coordinates(repository, repository.resolve("org/example/a/1.0/a-1.0.war")));
+        assertArrayEquals(new String[]{"org.example", "a", "1.0", "sources", "jar"},
+                VersionIndexBuilder.coordinates(repository, repository.resolve("org/example/a/1.0/a-1.0-sources.jar")));
+        assertNull(VersionIndexBuilder.coordinates(repository, repository.resolve("a/1.0/a-1.0.jar")));
+        assertNull(VersionIndexBuilder.coordinates(repository, repository.resolve("org/example/a/1.0/b-1.0.jar")));
+        assertNull(VersionIndexBuilder.coordinates(repository, repository.resolve("org/example/a/1.0/a-1.0.1.jar")));
+        assertNull(VersionIndexBuilder.coordinates(repository,
+                repository.resolve("org/example/a/1.0-SNAPSHOT/a-1.0-SNAPSHOT.jar")));
+    }
+
+    /**
+     * Returns the given resource as a File using the object's class loader. The
+     * org.junit.Assume API is used so that test cases are skipped if the
+     * resource is not available.
+     *
+     * @param o the object used to obtain a reference to the class loader
+     * @param resource the name of the resource to load
+     * @return the resource as an File
+     */
+    private static File getResourceAsFile(Object o, String resource) {
+        try {
+            File f = new File(o.getClass().getClassLoader().getResource(resource).toURI().getPath());
+            Assume.assumeTrue(String.format("%n%n[SEVERE] Unable to load resource for test case: %s%n%n", resource), f.exists());
+            return f;
+        } catch (URISyntaxException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class VersionIndexTest {
+
+    /**
+     * The last modified time of the indexed files.
+     */
+    private static final long MODIFIED = 1600000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of get method, of class VersionIndex.
+     */
+    @Test
+    public void testGet() throws Exception {
+        VersionIndexBuilder builder = new VersionIndexBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.add("org.example", "a" + i, "1." + i, null, "jar", 1000 + i, MODIFIED,
+                    new ScanResult(45 + i % 20, i % 3));
+        }
+        builder.add("org.example", "a1", "1.1", "tests", "jar", 42, MODIFIED, new ScanResult(55, 0, 2, 1));
+        //the last entry added for the same coordinates is kept
+        builder.add("org.example", "a2", "1.2", null, "jar", 7, MODIFIED, new ScanResult(61, 0));
+        //the war of the same artifact is kept apart from its jar
+        builder.add("org.example", "a3", "1.3", null, "war", 1003, MODIFIED, new ScanResult(49, 0));
+        File file = new File(folder.getRoot(), "index/versions.idx");
+        builder.write(file, false);
+
+        VersionIndex instance = VersionIndex.open(file);
+        assertEquals(5002, instance.size());
+        assertFalse(instance.isNestedArchives());
+        for (int i = 0; i < 5000; i += 7) {
+            ScanResult result = instance.get("org.example", "a" + i, "1." + i, null, "jar", 1000 + i, MODIFIED);
+            assertNotNull(result);
+            assertEquals(45 + i % 20, result.getMajorVersion());
+            assertEquals(i % 3, result.getMinorVersion());
+            assertTrue(result.isComplete());
+        }
+        ScanResult tests = instance.get("org.example", "a1", "1.1", "tests", "jar", 42, MODIFIED);
+        assertEquals(55, tests.getMajorVersion());
+        assertEquals(2, tests.getInvalidClassCount());
+        assertEquals(1, tests.getInvalidArchiveCount());
+        assertEquals(61, instance.get("org.example", "a2", "1.2", "", "jar", 7, MODIFIED).getMajorVersion());
+        assertNull(instance.get("org.example", "a3", "1.3", null, "jar", 1004, MODIFIED));
+        assertNull(instance.get("org.example", "a3", "1.4", null, "jar", 1003, MODIFIED));
+        assertNull(instance.get("org.example", "b", "1.0", null, "jar", 1000, MODIFIED));
+        assertEquals(48, instance.get("org.example", "a3", "1.3", null, "jar", 1003, MODIFIED).getMajorVersion());
+        assertEquals(49, instance.get("org.example", "a3", "1.3", null, "war", 1003, MODIFIED).getMajorVersion());
+        assertNull(instance.get("org.example", "a4", "1.4", null, "war", 1004, MODIFIED));
+        //a file replaced with one of the same length is not matched
+        assertNull(instance.get("org.example", "a7", "1.7", null, "jar", 1007, MODIFIED + 1000));
+    }
+
+    /**
+     * Test of get method, of class VersionIndex, with a corrupt index that has
+     * no empty slot.
+     */
+    @Test(timeout = 10000)
+    public void testGetFull() throws Exception {
+        final int capacity = 8;
+        ByteBuffer buffer = ByteBuffer.allocate(VersionIndex.HEADER_SIZE + capacity * VersionIndex.SLOT_SIZE);
+        buffer.putInt(VersionIndex.MAGIC).putInt(VersionIndex.FORMAT_VERSION).putInt(0).putInt(capacity).putLong(1);
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(VersionIndex.hash("g:other" + slot + ":1")).putLong(0)
+                    .putLong(ResultStore.pack(new ScanResult(52, 0)));
+        }
+        VersionIndex instance = new VersionIndex(buffer);
+        assertNull(instance.get("g", "a", "1", null, "jar", 1, MODIFIED));
+
+        ResultStore store = ResultStore.read(writeTo(buffer, "full.idx"));
+        assertEquals(capacity, store.size());
+        store.put(VersionIndex.hash("g:a:1"), 1, new ScanResult(61, 0));
+        assertEquals(61, store.get(VersionIndex.hash("g:a:1"), 1).getMajorVersion());
+    }
+
+    /**
+     * Writes the contents of the buffer to a file.
+     *
+     * @param buffer the buffer
+     * @param name the name of the file
+     * @return the file
+     * @throws IOException thrown if the file cannot be written
+     */
+    private File writeTo(ByteBuffer buffer, String name) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), buffer.array());
+        return file;
+    }
+
+    /**
+     * Test of fingerprint method, of class VersionIndex.
+     */
+    @Test
+    public void testFingerprint() {
+        assertEquals(VersionIndex.fingerprint(1000, MODIFIED), VersionIndex.fingerprint(1000, MODIFIED));
+        assertNotEquals(VersionIndex.fingerprint(1000, MODIFIED), VersionIndex.fingerprint(1001, MODIFIED));
+        assertNotEquals(VersionIndex.fingerprint(1000, MODIFIED), VersionIndex.fingerprint(1000, MODIFIED + 1));
+    }
+
+    /**
+     * Test of open method, of class VersionIndex.
+     */
+    @Test
+    public void testOpen() throws Exception {
+        File file = new File(folder.getRoot(), "nested.idx");
+        new VersionIndexBuilder().write(file, true);
+        VersionIndex instance = VersionIndex.open(file);
+        assertTrue(instance.isNestedArchives());
+        assertEquals(0, instance.size());
+        assertNull(instance.get("g", "a", "1", null, "jar", 1, MODIFIED));
+
+        try {
+            new VersionIndex(ByteBuffer.allocate(VersionIndex.HEADER_SIZE));
+            fail("Expected an IOException");
+        } catch (IOException ex) {
+            //expected
+        }
+    }
+
+    /**
+     * Test of hash method, of class VersionIndex.
+     */
+    @Test
+    public void testHash() {
+        assertEquals("g:a:jar:1", VersionIndex.coordinates("g", "a", "1", null, "jar"));
+        assertEquals("g:a:jar:tests:1", VersionIndex.coordinates("g", "a", "1", "tests", "jar"));
+        assertNotEquals(VersionIndex.hash(VersionIndex.coordinates("g", "a", "1", null, "jar")),
+                VersionIndex.hash(VersionIndex.coordinates("g", "a", "1", null, "war")));
+        assertNotEquals(VersionIndex.hash("g:a:1"), VersionIndex.hash("g:a:2"));
+        assertNotEquals(0, VersionIndex.hash(""));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copyright (c) 2017 Jeremy Long. All Rights Reserved.
+ */
+package org.owasp.maven.enforcer.rule;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jeremy Long
+ */
+public class RecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of the events emitted by the recorder returned by the get method,
+     * of class Recorder.
+     */
+    @Test
+    public void testEvents() throws Exception {
+        Recorder instance = Recorder.get();
+        Assume.assumeTrue(instance.isEnabled() && FlightRecorder.isAvailable());
+        File jar = folder.newFile("a.jar");
+        DependencyReference dependency = new DependencyReference("org.example", "a", "1.0", jar, null, null);
+        ScanResult result = new ScanResult();
+        result.addEntry();
+        result.addVersion(52, 0);
+        result.addBytesRead(10);
+
+        Path dump = folder.getRoot().toPath().resolve("rule.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.owasp.classfileformat.GraphBuild");
+            recording.enable("org.owasp.classfileformat.Resolution");
+            recording.enable("org.owasp.classfileformat.Scan");
+            recording.start();
+            instance.startGraphBuild("org.example:project:jar:1.0").end("built");
+            instance.startResolution("org.example:a:jar::1.0").end("resolved");
+            instance.startScan(dependency).end(result, ScanMetrics.SOURCE_JAR, "valid");
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Map<String, RecordedEvent> byName = new HashMap<>();
+        for (RecordedEvent e : events) {
+            byName.put(e.getEventType().getName(), e);
+        }
+        assertEquals("org.example:project:jar:1.0", byName.get("org.owasp.classfileformat.GraphBuild").getString("project"));
+        assertEquals("resolved", byName.get("org.owasp.classfileformat.Resolution").getString("outcome"));
+        RecordedEvent scan = byName.get("org.owasp.classfileformat.Scan");
+        assertEquals("a", scan.getString("artifactId"));
+        assertEquals(52, scan.getInt("majorVersion"));
+        assertEquals(1, scan.getInt("entryCount"));
+        assertEquals(10, scan.getLong("bytesRead"));
+        assertEquals("valid", scan.getString("outcome"));
+    }
+}